@@ -5,10 +5,14 @@ import android.os.Handler;
 import android.os.Message;
 import android.util.Log;
 
+import java.nio.ByteBuffer;
+
+import cn.simonlee.xcodescanner.core.FrameBufferPool;
+import cn.simonlee.xcodescanner.core.ScannerMetrics;
 import cn.simonlee.xcodescanner.core.ZBarDecoder;
 
 /**
- * debug模式，只是加入了一个FPS的Log
+ * debug模式，加入了FPS及流水线各阶段耗时的Log
  *
  * @author Simon Lee
  * @e-mail jmlixiaomeng@163.com
@@ -23,13 +27,20 @@ public class DebugZBarDecoder extends ZBarDecoder {
     public DebugZBarDecoder(DecodeListener listener, int[] symbolTypeArray) {
         super(listener, symbolTypeArray);
         this.mHandler = new Handler(this);
+        ScannerMetrics.getInstance().setEnabled(true);
         mHandler.sendEmptyMessageDelayed(1991, 1000);
     }
 
     @Override
-    public synchronized void decode(byte[] frameData, int width, int height, RectF clipRectRatio) {
+    public void decode(byte[] frameData, int width, int height, RectF clipRectRatio, FrameBufferPool bufferPool) {
         FPS_Preview++;
-        super.decode(frameData, width, height, clipRectRatio);
+        super.decode(frameData, width, height, clipRectRatio, bufferPool);
+    }
+
+    @Override
+    public void decode(ByteBuffer frameData, int width, int height, RectF clipRectRatio, BufferReleaseListener releaseListener) {
+        FPS_Preview++;//Camera2经GPU读取的帧
+        super.decode(frameData, width, height, clipRectRatio, releaseListener);
     }
 
     @Override
@@ -42,6 +53,8 @@ public class DebugZBarDecoder extends ZBarDecoder {
             case 1991: {
                 Log.d(TAG, getClass().getName() + ".handleMessage() 预览FPS：" + FPS_Preview + " , 解码FPS：" + FPS_Decode);
                 FPS_Preview = FPS_Decode = 0;
+                Log.d(TAG, getClass().getName() + ".handleMessage() " + ScannerMetrics.getInstance().snapshot());
+                ScannerMetrics.getInstance().reset();
                 mHandler.sendEmptyMessageDelayed(1991, 1000);
                 break;
             }
@@ -52,6 +65,7 @@ public class DebugZBarDecoder extends ZBarDecoder {
     @Override
     public void detach() {
         super.detach();
+        ScannerMetrics.getInstance().setEnabled(false);
         if (mHandler != null) {
             mHandler.removeCallbacksAndMessages(null);
             mHandler = null;
@@ -16,7 +16,8 @@ import android.view.View;
 import java.util.ArrayList;
 import java.util.List;
 
-import cn.simonlee.xcodescanner.core.GraphicDecoder;
+import cn.simonlee.xcodescanner.core.DecodeFuture;
+import cn.simonlee.xcodescanner.core.ScanResult;
 import cn.simonlee.xcodescanner.core.ZBarDecoder;
 
 /**
@@ -26,12 +27,17 @@ import cn.simonlee.xcodescanner.core.ZBarDecoder;
  * @e-mail jmlixiaomeng@163.com
  * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
  */
-public class MainActivity extends BaseActivity implements View.OnClickListener, GraphicDecoder.DecodeListener {
+public class MainActivity extends BaseActivity implements View.OnClickListener, DecodeFuture.Callback {
 
     private final int API_OLD = 0;
     private final int API_NEW = 1;
 
-    private GraphicDecoder mGraphicDecoder;
+    private ZBarDecoder mZBarDecoder;
+
+    /**
+     * 正在解码的本地图片，重新选择图片时取消
+     */
+    private DecodeFuture mDecodeFuture;
     private List<RadioButton> mTypeRadioList = new ArrayList<>();
     private int[] mCodeTypeArray;
 
@@ -131,12 +137,15 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == 999 && resultCode == Activity.RESULT_OK && data != null) {
-            if (mGraphicDecoder == null) {
-                mGraphicDecoder = new ZBarDecoder(this, getCodeType());//使用带参构造方法可指定条码识别的类型
+            if (mZBarDecoder == null) {
+                mZBarDecoder = new ZBarDecoder(null, getCodeType());//使用带参构造方法可指定条码识别的类型
             } else {
-                mGraphicDecoder.setCodeTypes(getCodeType());//指定条码识别的类型
+                mZBarDecoder.setCodeTypes(getCodeType());//指定条码识别的类型
+            }
+            if (mDecodeFuture != null) {//取消上一张尚未解码完成的图片
+                mDecodeFuture.cancel(false);
             }
-            mGraphicDecoder.decodeForResult(this, data.getData(), 999);
+            mDecodeFuture = mZBarDecoder.decodeForResult(this, data.getData(), null, this);
         }
     }
 
@@ -152,18 +161,25 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
 
     @Override
     public void onDestroy() {
-        if (mGraphicDecoder != null) {
-            mGraphicDecoder.setDecodeListener(null);
-            mGraphicDecoder.detach();
+        if (mDecodeFuture != null) {
+            mDecodeFuture.cancel(false);
+        }
+        if (mZBarDecoder != null) {
+            mZBarDecoder.detach();
         }
         super.onDestroy();
     }
 
     @Override
-    public void decodeComplete(String result, int type, int quality, int requestCode) {
-        if (result == null) {
+    public void onDecodeComplete(ScanResult scanResult) {
+        mDecodeFuture = null;
+        int index = scanResult.getFirstValidIndex();
+        if (index < 0) {
             ToastHelper.showToast(this, "未识别到指定类型条码", ToastHelper.LENGTH_SHORT);
         } else {
+            String result = scanResult.getData(index);
+            int type = scanResult.getType(index);
+            int quality = scanResult.getQuality(index);
             if (quality < 10) {
                 ToastHelper.showToast(this, "[类型" + type + "/精度00" + quality + "]" + result, ToastHelper.LENGTH_SHORT);
             } else if (quality < 100) {
@@ -174,6 +190,12 @@ public class MainActivity extends BaseActivity implements View.OnClickListener,
         }
     }
 
+    @Override
+    public void onDecodeFailed(Throwable throwable) {
+        mDecodeFuture = null;
+        ToastHelper.showToast(this, "图片解码失败：" + throwable.getMessage(), ToastHelper.LENGTH_SHORT);
+    }
+
     private int[] getCodeType() {
         int count = 0;
         for (RadioButton radioButton : mTypeRadioList) {
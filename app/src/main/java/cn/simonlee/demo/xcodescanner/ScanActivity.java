@@ -10,10 +10,13 @@ import android.view.TextureView;
 import android.view.View;
 import android.widget.Button;
 
+import cn.simonlee.xcodescanner.core.AutoExposureController;
 import cn.simonlee.xcodescanner.core.CameraScanner;
+import cn.simonlee.xcodescanner.core.ConsensusFilter;
 import cn.simonlee.xcodescanner.core.GraphicDecoder;
 import cn.simonlee.xcodescanner.core.NewCameraScanner;
 import cn.simonlee.xcodescanner.core.OldCameraScanner;
+import cn.simonlee.xcodescanner.core.SharpnessGate;
 import cn.simonlee.xcodescanner.view.AdjustTextureView;
 
 /**
@@ -30,6 +33,7 @@ public class ScanActivity extends BaseActivity implements CameraScanner.CameraLi
 
     private CameraScanner mCameraScanner;
     protected GraphicDecoder mGraphicDecoder;
+    private AutoExposureController mAutoExposureController;
 
     protected String TAG = "XCodeScanner";
     private Button mButton_Flash;
@@ -64,8 +68,12 @@ public class ScanActivity extends BaseActivity implements CameraScanner.CameraLi
         if (intent.getBooleanExtra("newAPI", false) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
             mCameraScanner = new NewCameraScanner(this);
         } else {
-            mCameraScanner = new OldCameraScanner(this);
+            OldCameraScanner oldCameraScanner = new OldCameraScanner(this);
+            oldCameraScanner.enableFrameBufferPool(true);//复用图像帧数组，减少GC
+            mCameraScanner = oldCameraScanner;
         }
+        mAutoExposureController = new AutoExposureController();
+        mCameraScanner.setAutoExposureController(mAutoExposureController);//光线不足时自动打开闪光灯并调节曝光补偿
     }
 
     @Override
@@ -88,6 +96,7 @@ public class ScanActivity extends BaseActivity implements CameraScanner.CameraLi
 
     @Override
     public void onDestroy() {
+        mCameraScanner.setAutoExposureController(null);
         mCameraScanner.setGraphicDecoder(null);
         if (mGraphicDecoder != null) {
             mGraphicDecoder.setDecodeListener(null);
@@ -129,7 +138,10 @@ public class ScanActivity extends BaseActivity implements CameraScanner.CameraLi
         Log.e(TAG, getClass().getName() + ".openCameraSuccess() frameWidth = " + frameWidth + " , frameHeight = " + frameHeight + " , frameDegree = " + frameDegree);
         mTextureView.setImageFrameMatrix(frameWidth, frameHeight, frameDegree);
         if (mGraphicDecoder == null) {
-            mGraphicDecoder = new DebugZBarDecoder(this, mCodeType);//使用带参构造方法可指定条码识别的格式
+            DebugZBarDecoder zBarDecoder = new DebugZBarDecoder(this, mCodeType);//使用带参构造方法可指定条码识别的格式
+            zBarDecoder.setConsensusFilter(new ConsensusFilter());//过滤脏数据，只回调已确认的条码，也可以根据条码类型自定义规则
+            zBarDecoder.setSharpnessGate(new SharpnessGate());//跳过对焦中或晃动导致的模糊帧
+            mGraphicDecoder = zBarDecoder;
         }
         //该区域坐标为相对于父容器的左上角顶点。
         //TODO 应考虑TextureView与ScannerFrameView的Margin与padding的情况
@@ -152,51 +164,30 @@ public class ScanActivity extends BaseActivity implements CameraScanner.CameraLi
         ToastHelper.showToast(this, "断开了连接", ToastHelper.LENGTH_SHORT);
     }
 
-    int mBrightnessCount = 0;
-
     @Override
     public void cameraBrightnessChanged(int brightness) {
-        if (brightness <= 50) {
-            if (mBrightnessCount < 0) {
-                mBrightnessCount = 1;
-            } else {
-                mBrightnessCount++;
-            }
-        } else {
-            if (mBrightnessCount > 0) {
-                mBrightnessCount = -1;
-            } else {
-                mBrightnessCount--;
-            }
-        }
-        if (mBrightnessCount > 4) {//连续5帧亮度低于50，显示闪光灯开关
+        //闪光灯由AutoExposureController自动开关，此处只同步按钮状态
+        boolean isFlashOpened = mCameraScanner.isFlashOpened();
+        mButton_Flash.setSelected(isFlashOpened);
+        mButton_Flash.setText(isFlashOpened ? R.string.flash_close : R.string.flash_open);
+        if (isFlashOpened || brightness <= 50) {//亮度低于50或闪光灯已开启，显示闪光灯开关
             mButton_Flash.setVisibility(View.VISIBLE);
-        } else if(mBrightnessCount < -4 && !mCameraScanner.isFlashOpened()){//连续5帧亮度不低于50，且闪光灯未开启，隐藏闪光灯开关
+        } else {
             mButton_Flash.setVisibility(View.GONE);
         }
     }
 
-    int mCount = 0;
-    String mResult = null;
-
     @Override
     public void decodeComplete(String result, int type, int quality, int requestCode) {
         if (result == null) return;
-        if (result.equals(mResult)) {
-            if (++mCount > 3) {//连续四次相同则显示结果（主要过滤脏数据，也可以根据条码类型自定义规则）
-                if (quality < 10) {
-                    ToastHelper.showToast(this, "[类型" + type + "/精度00" + quality + "]" + result, ToastHelper.LENGTH_SHORT);
-                } else if (quality < 100) {
-                    ToastHelper.showToast(this, "[类型" + type + "/精度0" + quality + "]" + result, ToastHelper.LENGTH_SHORT);
-                } else {
-                    ToastHelper.showToast(this, "[类型" + type + "/精度" + quality + "]" + result, ToastHelper.LENGTH_SHORT);
-                }
-            }
+        if (quality < 10) {
+            ToastHelper.showToast(this, "[类型" + type + "/精度00" + quality + "]" + result, ToastHelper.LENGTH_SHORT);
+        } else if (quality < 100) {
+            ToastHelper.showToast(this, "[类型" + type + "/精度0" + quality + "]" + result, ToastHelper.LENGTH_SHORT);
         } else {
-            mCount = 1;
-            mResult = result;
+            ToastHelper.showToast(this, "[类型" + type + "/精度" + quality + "]" + result, ToastHelper.LENGTH_SHORT);
         }
-        Log.d(TAG, getClass().getName() + ".decodeComplete() -> " + mResult);
+        Log.d(TAG, getClass().getName() + ".decodeComplete() -> " + result);
     }
 
     @Override
@@ -207,6 +198,7 @@ public class ScanActivity extends BaseActivity implements CameraScanner.CameraLi
                 break;
             }
             case R.id.btn_flash: {
+                mAutoExposureController.setAutoFlashEnabled(false);//用户手动控制闪光灯后不再自动开关
                 if (v.isSelected()) {
                     ((Button) v).setText(R.string.flash_open);
                     v.setSelected(false);
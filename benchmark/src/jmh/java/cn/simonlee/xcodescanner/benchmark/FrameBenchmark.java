@@ -0,0 +1,136 @@
+package cn.simonlee.xcodescanner.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import cn.simonlee.xcodescanner.core.FrameStatistics;
+import cn.simonlee.xcodescanner.core.FrameUtils;
+
+/**
+ * 解码流水线中Java侧热点的基准测试，使用合成图像帧，分辨率从640x480到4K
+ * 运行：gradlew :benchmark:jmh
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    private int mWidth;
+    private int mHeight;
+
+    /**
+     * 合成的ARGB图像
+     */
+    private int[] mPixels;
+
+    /**
+     * 合成的Y800图像
+     */
+    private byte[] mFrameData;
+
+    /**
+     * 复用的输出数组
+     */
+    private byte[] mLumaOutput;
+    private int[] mCropRect;
+
+    @Setup
+    public void setup() {
+        String[] size = resolution.split("x");
+        mWidth = Integer.parseInt(size[0]);
+        mHeight = Integer.parseInt(size[1]);
+        Random random = new Random(mWidth * 31 + mHeight);
+        mPixels = new int[mWidth * mHeight];
+        mFrameData = new byte[mWidth * mHeight * 3 / 2];
+        //模拟条码：竖条纹叠加噪声
+        for (int j = 0; j < mHeight; j++) {
+            for (int i = 0; i < mWidth; i++) {
+                int gray = ((i / 4) % 2 == 0 ? 32 : 224) + random.nextInt(17) - 8;
+                mPixels[j * mWidth + i] = 0xff000000 | gray << 16 | gray << 8 | gray;
+                mFrameData[j * mWidth + i] = (byte) gray;
+            }
+        }
+        mLumaOutput = new byte[mWidth * mHeight];
+        mCropRect = new int[4];
+    }
+
+    /**
+     * ARGB转Y800，与DecodeRunnable.getYUVFrameData()相同，每次新建输出数组
+     */
+    @Benchmark
+    public byte[] argbToLuma() {
+        return FrameUtils.argbToLuma(mPixels, mWidth, mHeight, null);
+    }
+
+    /**
+     * ARGB转Y800，复用输出数组
+     */
+    @Benchmark
+    public byte[] argbToLumaReuse() {
+        return FrameUtils.argbToLuma(mPixels, mWidth, mHeight, mLumaOutput);
+    }
+
+    /**
+     * 分块并行ARGB转Y800，复用输出数组
+     */
+    @Benchmark
+    public byte[] argbToLumaParallel() {
+        FrameUtils.argbToLumaParallel(mPixels, mWidth, 0, mHeight, mLumaOutput);
+        return mLumaOutput;
+    }
+
+    /**
+     * 分块并行ARGB转Y800，只转换中间一半的行，对应设置了剪裁比例的情况
+     */
+    @Benchmark
+    public byte[] argbToLumaParallelClip() {
+        FrameUtils.argbToLumaParallel(mPixels, mWidth, mHeight / 4, mHeight * 3 / 4, mLumaOutput);
+        return mLumaOutput;
+    }
+
+    /**
+     * 模拟DecodeRunnable.getBitmapPixels()：Bitmap.getPixels()为native逐行拷贝，此处以新建数组并逐行拷贝代替
+     */
+    @Benchmark
+    public int[] bitmapPixels() {
+        int[] pixels = new int[mWidth * mHeight];
+        for (int j = 0; j < mHeight; j++) {
+            System.arraycopy(mPixels, j * mWidth, pixels, j * mWidth, mWidth);
+        }
+        return pixels;
+    }
+
+    /**
+     * 剪裁比例换算识别区域
+     */
+    @Benchmark
+    public int[] cropRect() {
+        return FrameUtils.getCropRect(mWidth, mHeight, 0.1F, 0.25F, 0.9F, 0.75F, mCropRect);
+    }
+
+    /**
+     * 相机预览帧的亮度统计，识别区域为中间一半
+     */
+    @Benchmark
+    public FrameStatistics frameStatistics() {
+        return FrameStatistics.compute(mFrameData, mWidth, mWidth / 4, mHeight / 4, mWidth / 2, mHeight / 2);
+    }
+
+}
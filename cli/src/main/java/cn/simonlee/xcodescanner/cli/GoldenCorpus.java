@@ -0,0 +1,630 @@
+package cn.simonlee.xcodescanner.cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 金样本语料，每帧为Y800数据及其期望识别出的条码
+ * 1.合成样本：以固定种子生成EAN-13、EAN-8、UPC-A、UPC-E、CODE128、CODE39、I25条码，覆盖模块宽度（密度）、旋转、模糊、暗光及多码，
+ * 另有噪点、随机条纹、只露出一半的EAN-13/UPC-A等不含完整条码的帧，用于统计误读（半个EAN-13最容易被误读为UPC-E）；区域样本与预览帧相同，只识别帧中的一块区域，区域外放置干扰条码
+ * 2.实拍样本：目录下的expected.tsv清单，每行为"文件\t宽x高\t类型:数据\t类型:数据..."，PGM文件的宽高可写为"-"，无期望条码时为误读样本
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+class GoldenCorpus {
+
+    static final String MANIFEST_NAME = "expected.tsv";
+
+    private static final long SEED = 20261018L;
+
+    /**
+     * 条码两侧的空白区，单位为模块
+     */
+    private static final int QUIET_ZONE = 10;
+
+    private static final int BAR_HEIGHT = 80;
+    private static final int MARGIN = 12;
+
+    /**
+     * 区域样本中识别区域四周的留白
+     */
+    private static final int REGION_PADDING = 24;
+
+    private static final String[] EAN_L_CODES = {"0001101", "0011001", "0010011", "0111101", "0100011", "0110001", "0101111", "0111011", "0110111", "0001011"};
+    private static final String[] EAN_PARITIES = {"LLLLLL", "LLGLGG", "LLGGLG", "LLGGGL", "LGLLGG", "LGGLLG", "LGGGLL", "LGLGLG", "LGLGGL", "LGGLGL"};
+
+    /**
+     * 数制为0的UPC-E由校验位决定的奇偶性
+     */
+    private static final String[] UPCE_PARITIES = {"GGGLLL", "GGLGLL", "GGLLGL", "GGLLLG", "GLGGLL", "GLLGGL", "GLLLGG", "GLGLGL", "GLGLLG", "GLLGLG"};
+
+    /**
+     * 半个EAN-13的模块数：起始符、6个字符、中间分隔符及右半部分的第一个模块，与UPC-E的起始符、6个字符、终止符结构相同
+     */
+    private static final int EAN13_HALF_MODULES = 3 + 6 * 7 + 6;
+
+    /**
+     * CODE128各符号的条空宽度，最后一个为终止符
+     */
+    private static final String[] CODE128_PATTERNS = {"212222", "222122", "222221", "121223", "121322", "131222", "122213", "122312", "132212", "221213",
+            "221312", "231212", "112232", "122132", "122231", "113222", "123122", "123221", "223211", "221132", "221231", "213212", "223112", "312131",
+            "311222", "321122", "321221", "312212", "322112", "322211", "212123", "212321", "232121", "111323", "131123", "131321", "112313", "132113",
+            "132311", "211313", "231113", "231311", "112133", "112331", "132131", "113123", "113321", "133121", "313121", "211331", "231131", "213113",
+            "213311", "213131", "311123", "311321", "331121", "312113", "312311", "332111", "314111", "221411", "431111", "111224", "111422", "121124",
+            "121421", "141122", "141221", "112214", "112412", "122114", "122411", "142112", "142211", "241211", "221114", "413111", "241112", "134111",
+            "111242", "121142", "121241", "114212", "124112", "124211", "411212", "421112", "421211", "212141", "214121", "412121", "111143", "111341",
+            "131141", "114113", "114311", "411113", "411311", "113141", "114131", "311141", "411131", "211412", "211214", "211232", "2331112"};
+
+    /**
+     * CODE39字符及其条空宽窄，1为宽
+     */
+    private static final String CODE39_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-. *";
+    private static final String[] CODE39_PATTERNS = {"000110100", "100100001", "001100001", "101100000", "000110001", "100110000", "001110000",
+            "000100101", "100100100", "001100100", "100001001", "001001001", "101001000", "000011001", "100011000", "001011000", "000001101",
+            "100001100", "001001100", "000011100", "100000011", "001000011", "101000010", "000010011", "100010010", "001010010", "000000111",
+            "100000110", "001000110", "000010110", "110000001", "011000001", "111000000", "010010001", "110010000", "011010000", "010000101",
+            "110000100", "011000100", "010010100"};
+
+    /**
+     * I25各数字的宽窄，W为宽
+     */
+    private static final String[] I25_PATTERNS = {"NNWWN", "WNNNW", "NWNNW", "WWNNN", "NNWNW", "WNWNN", "NWWNN", "NNNWW", "WNNWN", "NWNWN"};
+
+    static class Case {
+
+        final String mName;
+        final byte[] mData;
+        final int mWidth;
+        final int mHeight;
+
+        /**
+         * 期望的条码，格式为"类型:数据"，误读样本为空
+         */
+        final List<String> mExpected;
+
+        /**
+         * 识别区域{left, top, width, height}，为null时识别整帧
+         */
+        final int[] mCropRect;
+
+        Case(String name, byte[] data, int width, int height, List<String> expected) {
+            this(name, data, width, height, expected, null);
+        }
+
+        Case(String name, byte[] data, int width, int height, List<String> expected, int[] cropRect) {
+            this.mName = name;
+            this.mData = data;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mExpected = expected;
+            this.mCropRect = cropRect;
+        }
+    }
+
+    /**
+     * 帧数据
+     */
+    private static class Frame {
+
+        final byte[] mData;
+        final int mWidth;
+        final int mHeight;
+
+        Frame(byte[] data, int width, int height) {
+            this.mData = data;
+            this.mWidth = width;
+            this.mHeight = height;
+        }
+    }
+
+    /**
+     * 条码的模块序列，true为条
+     */
+    private static class Symbol {
+
+        final String mExpected;
+        final boolean[] mModules;
+
+        Symbol(String expected, boolean[] modules) {
+            this.mExpected = expected;
+            this.mModules = modules;
+        }
+    }
+
+    private final Random mRandom = new Random(SEED);
+
+    /**
+     * 生成合成样本，相同版本的代码每次生成的语料完全相同
+     */
+    List<Case> createSyntheticCases() {
+        List<Symbol> symbolList = new ArrayList<>();
+        symbolList.add(ean13("590123412345"));
+        symbolList.add(ean13("400638133393"));
+        symbolList.add(ean13("692058622139"));//ZBarDecoder中记录的易误读条码
+        symbolList.add(ean13("978030640615"));
+        symbolList.add(ean13("979100000009"));
+        symbolList.add(ean8("9638507"));
+        symbolList.add(upca("03600029145"));
+        symbolList.add(code128("XCodeScanner-2026"));
+        symbolList.add(code39("ZBAR-39 TEST"));
+        symbolList.add(i25("1234567895"));
+        symbolList.add(upce("425261"));
+        symbolList.add(upce("123456"));
+
+        List<Case> caseList = new ArrayList<>();
+        for (Symbol symbol : symbolList) {
+            String name = symbol.mExpected.replace(':', '-').replace(' ', '_');
+            List<String> expected = Arrays.asList(symbol.mExpected);
+            for (int moduleWidth = 1; moduleWidth <= 4; moduleWidth++) {
+                addCase(caseList, name + "/module" + moduleWidth, render(symbol.mModules, moduleWidth), expected);
+            }
+            Frame frame = render(symbol.mModules, 2);
+            addCase(caseList, name + "/rotate90", rotate90(frame), expected);
+            addCase(caseList, name + "/rotate180", rotate90(rotate90(frame)), expected);
+            addCase(caseList, name + "/rotate270", rotate90(rotate90(rotate90(frame))), expected);
+            addCase(caseList, name + "/rotate15", rotate(frame, 15), expected);
+            addCase(caseList, name + "/rotate40", rotate(frame, 40), expected);
+            addCase(caseList, name + "/blur1", blur(render(symbol.mModules, 3), 1), expected);
+            addCase(caseList, name + "/blur2", blur(render(symbol.mModules, 3), 2), expected);
+            addCase(caseList, name + "/lowlight", lowLight(frame, 8, 48, 4), expected);
+            addCase(caseList, name + "/lowlight-blur", blur(lowLight(render(symbol.mModules, 3), 8, 56, 3), 1), expected);
+        }
+        for (int i = 0; i < symbolList.size(); i++) {
+            Symbol first = symbolList.get(i);
+            Symbol second = symbolList.get((i + 4) % symbolList.size());
+            Frame frame = stack(render(first.mModules, 2), rotate90(render(second.mModules, 2)));
+            addCase(caseList, "multi/" + i, frame, Arrays.asList(first.mExpected, second.mExpected));
+        }
+        for (int i = 0; i < symbolList.size(); i++) {
+            Symbol symbol = symbolList.get(i);
+            Symbol decoy = symbolList.get((i + 1) % symbolList.size());
+            addRegionCase(caseList, "region/" + i, render(symbol.mModules, 2), render(decoy.mModules, 2), Arrays.asList(symbol.mExpected));
+        }
+        List<String> none = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            addCase(caseList, "negative/noise" + i, noise(640, 240), none);
+            addCase(caseList, "negative/stripes" + i, stripes(640, 240, 1 + i % 4), none);
+            addCase(caseList, "negative/blocks" + i, blocks(640, 240), none);
+        }
+        for (Symbol symbol : symbolList) {
+            if (symbol.mModules.length != 95) continue;//EAN-13及UPC-A
+            String name = symbol.mExpected.replace(':', '-');
+            boolean[] modules = symbol.mModules;
+            addCase(caseList, "negative/left-half/" + name, render(Arrays.copyOfRange(modules, 0, EAN13_HALF_MODULES), 2), none);
+            addCase(caseList, "negative/right-half/" + name, render(Arrays.copyOfRange(modules, modules.length - EAN13_HALF_MODULES, modules.length), 2), none);
+        }
+        return caseList;
+    }
+
+    /**
+     * 读取目录下expected.tsv清单中的实拍样本，清单不存在时返回空
+     */
+    static List<Case> loadManifestCases(File directory) throws IOException {
+        List<Case> caseList = new ArrayList<>();
+        File manifest = new File(directory, MANIFEST_NAME);
+        if (!manifest.isFile()) {
+            return caseList;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().length() == 0 || line.startsWith("#")) continue;
+                String[] columns = line.split("\t");
+                if (columns.length < 2) {
+                    throw new IOException(MANIFEST_NAME + ":" + lineNumber + ": expected <file>\\t<WxH|->[\\t<TYPE:data>...]");
+                }
+                File file = new File(directory, columns[0]);
+                ZBarCli.Frame frame;
+                if ("-".equals(columns[1])) {
+                    frame = ZBarCli.readPgm(file);
+                } else {
+                    String[] size = columns[1].toLowerCase(Locale.US).split("x");
+                    try {
+                        frame = ZBarCli.readRaw(file, Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        throw new IOException(MANIFEST_NAME + ":" + lineNumber + ": invalid size " + columns[1]);
+                    }
+                }
+                List<String> expected = new ArrayList<>(Arrays.asList(columns).subList(2, columns.length));
+                caseList.add(new Case(columns[0], frame.mData, frame.mWidth, frame.mHeight, expected));
+            }
+        } finally {
+            reader.close();
+        }
+        return caseList;
+    }
+
+    private static void addCase(List<Case> caseList, String name, Frame frame, List<String> expected) {
+        caseList.add(new Case(name, frame.mData, frame.mWidth, frame.mHeight, expected));
+    }
+
+    /**
+     * 将帧放入更大的画布作为识别区域，区域上方放置干扰条码，识别区域外的条码即为误读
+     */
+    private static void addRegionCase(List<Case> caseList, String name, Frame frame, Frame decoy, List<String> expected) {
+        int width = Math.max(frame.mWidth, decoy.mWidth) + 2 * REGION_PADDING;
+        int height = decoy.mHeight + frame.mHeight + 2 * REGION_PADDING;
+        byte[] data = whiteData(width, height);
+        for (int y = 0; y < decoy.mHeight; y++) {
+            System.arraycopy(decoy.mData, y * decoy.mWidth, data, y * width, decoy.mWidth);
+        }
+        int left = REGION_PADDING;
+        int top = decoy.mHeight + REGION_PADDING;
+        for (int y = 0; y < frame.mHeight; y++) {
+            System.arraycopy(frame.mData, y * frame.mWidth, data, (top + y) * width + left, frame.mWidth);
+        }
+        caseList.add(new Case(name, data, width, height, expected, new int[]{left, top, frame.mWidth, frame.mHeight}));
+    }
+
+    /*------------------------------------ 编码 ------------------------------------*/
+
+    private static Symbol ean13(String digits) {
+        digits = digits + eanCheckDigit(digits);
+        StringBuilder builder = new StringBuilder("101");
+        String parity = EAN_PARITIES[digits.charAt(0) - '0'];
+        for (int i = 1; i < 7; i++) {
+            String code = EAN_L_CODES[digits.charAt(i) - '0'];
+            builder.append(parity.charAt(i - 1) == 'G' ? reverse(invert(code)) : code);
+        }
+        builder.append("01010");
+        for (int i = 7; i < 13; i++) {
+            builder.append(invert(EAN_L_CODES[digits.charAt(i) - '0']));
+        }
+        builder.append("101");
+        if (digits.startsWith("978")) {//ZBarScanner启用了ISBN10，zbar此时将978开头的条码报告为ISBN10
+            return new Symbol("ISBN10:" + digits.substring(3, 12) + isbn10CheckDigit(digits.substring(3, 12)), toModules(builder));
+        }
+        return new Symbol((digits.startsWith("979") ? "ISBN13:" : "EAN13:") + digits, toModules(builder));
+    }
+
+    private static Symbol ean8(String digits) {
+        digits = digits + eanCheckDigit(digits);
+        StringBuilder builder = new StringBuilder("101");
+        for (int i = 0; i < 4; i++) {
+            builder.append(EAN_L_CODES[digits.charAt(i) - '0']);
+        }
+        builder.append("01010");
+        for (int i = 4; i < 8; i++) {
+            builder.append(invert(EAN_L_CODES[digits.charAt(i) - '0']));
+        }
+        builder.append("101");
+        return new Symbol("EAN8:" + digits, toModules(builder));
+    }
+
+    /**
+     * UPC-A即首位为0的EAN-13，zbar启用UPCA时以12位数字报告
+     */
+    private static Symbol upca(String digits) {
+        Symbol symbol = ean13("0" + digits);
+        return new Symbol("UPCA:" + symbol.mExpected.substring("EAN13:0".length()), symbol.mModules);
+    }
+
+    /**
+     * 数制为0的UPC-E，传入6位数字，校验位按展开后的UPC-A计算，zbar以"0"+6位数字+校验位报告
+     */
+    private static Symbol upce(String digits) {
+        char last = digits.charAt(5);
+        String upca;
+        if (last <= '2') {
+            upca = digits.substring(0, 2) + last + "0000" + digits.substring(2, 5);
+        } else if (last == '3') {
+            upca = digits.substring(0, 3) + "00000" + digits.substring(3, 5);
+        } else if (last == '4') {
+            upca = digits.substring(0, 4) + "00000" + digits.charAt(4);
+        } else {
+            upca = digits.substring(0, 5) + "0000" + last;
+        }
+        int check = eanCheckDigit("0" + upca);
+        StringBuilder builder = new StringBuilder("101");
+        String parity = UPCE_PARITIES[check];
+        for (int i = 0; i < 6; i++) {
+            String code = EAN_L_CODES[digits.charAt(i) - '0'];
+            builder.append(parity.charAt(i) == 'G' ? reverse(invert(code)) : code);
+        }
+        builder.append("010101");
+        return new Symbol("UPCE:0" + digits + check, toModules(builder));
+    }
+
+    /**
+     * 从左起奇数位权重为1、偶数位权重为3（EAN-13），EAN-8与之相反，统一从右起计算
+     */
+    private static int eanCheckDigit(String digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(digits.length() - 1 - i) - '0';
+            sum += i % 2 == 0 ? digit * 3 : digit;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    private static char isbn10CheckDigit(String digits) {
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            sum += (10 - i) * (digits.charAt(i) - '0');
+        }
+        int check = (11 - sum % 11) % 11;
+        return check == 10 ? 'X' : (char) ('0' + check);
+    }
+
+    /**
+     * CODE128 B字符集
+     */
+    private static Symbol code128(String text) {
+        StringBuilder builder = new StringBuilder();
+        int checksum = 104;
+        appendWidths(builder, CODE128_PATTERNS[104]);
+        for (int i = 0; i < text.length(); i++) {
+            int value = text.charAt(i) - 32;
+            checksum += value * (i + 1);
+            appendWidths(builder, CODE128_PATTERNS[value]);
+        }
+        appendWidths(builder, CODE128_PATTERNS[checksum % 103]);
+        appendWidths(builder, CODE128_PATTERNS[106]);
+        return new Symbol("CODE128:" + text, toModules(builder));
+    }
+
+    /**
+     * CODE39，宽窄比3:1，不含校验位
+     */
+    private static Symbol code39(String text) {
+        StringBuilder builder = new StringBuilder();
+        String content = "*" + text + "*";
+        for (int i = 0; i < content.length(); i++) {
+            String pattern = CODE39_PATTERNS[CODE39_CHARS.indexOf(content.charAt(i))];
+            for (int j = 0; j < pattern.length(); j++) {
+                appendRun(builder, j % 2 == 0, pattern.charAt(j) == '1' ? 3 : 1);
+            }
+            appendRun(builder, false, 1);//字符间隔
+        }
+        builder.setLength(builder.length() - 1);
+        return new Symbol("CODE39:" + text, toModules(builder));
+    }
+
+    /**
+     * I25，宽窄比3:1，数字个数须为偶数
+     */
+    private static Symbol i25(String digits) {
+        StringBuilder builder = new StringBuilder("1010");
+        for (int i = 0; i < digits.length(); i += 2) {
+            String bars = I25_PATTERNS[digits.charAt(i) - '0'];
+            String spaces = I25_PATTERNS[digits.charAt(i + 1) - '0'];
+            for (int j = 0; j < 5; j++) {
+                appendRun(builder, true, bars.charAt(j) == 'W' ? 3 : 1);
+                appendRun(builder, false, spaces.charAt(j) == 'W' ? 3 : 1);
+            }
+        }
+        appendRun(builder, true, 3);
+        appendRun(builder, false, 1);
+        appendRun(builder, true, 1);
+        return new Symbol("I25:" + digits, toModules(builder));
+    }
+
+    /**
+     * 条空交替的宽度序列，以条开始
+     */
+    private static void appendWidths(StringBuilder builder, String widths) {
+        for (int i = 0; i < widths.length(); i++) {
+            appendRun(builder, i % 2 == 0, widths.charAt(i) - '0');
+        }
+    }
+
+    private static void appendRun(StringBuilder builder, boolean bar, int width) {
+        for (int i = 0; i < width; i++) {
+            builder.append(bar ? '1' : '0');
+        }
+    }
+
+    private static String invert(String code) {
+        return code.replace('0', '2').replace('1', '0').replace('2', '1');
+    }
+
+    private static String reverse(String code) {
+        return new StringBuilder(code).reverse().toString();
+    }
+
+    private static boolean[] toModules(CharSequence bits) {
+        boolean[] modules = new boolean[bits.length()];
+        for (int i = 0; i < modules.length; i++) {
+            modules[i] = bits.charAt(i) == '1';
+        }
+        return modules;
+    }
+
+    /*------------------------------------ 图像 ------------------------------------*/
+
+    /**
+     * 绘制一维码，白底黑条，四周留空白区
+     */
+    private static Frame render(boolean[] modules, int moduleWidth) {
+        int width = (modules.length + 2 * QUIET_ZONE) * moduleWidth;
+        int height = BAR_HEIGHT + 2 * MARGIN;
+        byte[] data = new byte[width * height];
+        Arrays.fill(data, (byte) 255);
+        for (int row = MARGIN; row < MARGIN + BAR_HEIGHT; row++) {
+            for (int i = 0; i < modules.length; i++) {
+                if (!modules[i]) continue;
+                int start = row * width + (QUIET_ZONE + i) * moduleWidth;
+                Arrays.fill(data, start, start + moduleWidth, (byte) 0);
+            }
+        }
+        return new Frame(data, width, height);
+    }
+
+    /**
+     * 顺时针旋转90度
+     */
+    private static Frame rotate90(Frame frame) {
+        int width = frame.mHeight;
+        int height = frame.mWidth;
+        byte[] data = new byte[width * height];
+        for (int y = 0; y < frame.mHeight; y++) {
+            for (int x = 0; x < frame.mWidth; x++) {
+                data[x * width + (width - 1 - y)] = frame.mData[y * frame.mWidth + x];
+            }
+        }
+        return new Frame(data, width, height);
+    }
+
+    /**
+     * 任意角度旋转，双线性插值，画布扩大至外接矩形并以白色填充
+     */
+    private static Frame rotate(Frame frame, double degrees) {
+        double radians = Math.toRadians(degrees);
+        double cos = Math.cos(radians);
+        double sin = Math.sin(radians);
+        int width = (int) Math.ceil(Math.abs(frame.mWidth * cos) + Math.abs(frame.mHeight * sin));
+        int height = (int) Math.ceil(Math.abs(frame.mWidth * sin) + Math.abs(frame.mHeight * cos));
+        byte[] data = new byte[width * height];
+        double centerX = width / 2.0;
+        double centerY = height / 2.0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double dx = x - centerX;
+                double dy = y - centerY;
+                double sourceX = dx * cos + dy * sin + frame.mWidth / 2.0;
+                double sourceY = -dx * sin + dy * cos + frame.mHeight / 2.0;
+                data[y * width + x] = (byte) sample(frame, sourceX, sourceY);
+            }
+        }
+        return new Frame(data, width, height);
+    }
+
+    private static int sample(Frame frame, double x, double y) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        double fx = x - x0;
+        double fy = y - y0;
+        double top = pixel(frame, x0, y0) * (1 - fx) + pixel(frame, x0 + 1, y0) * fx;
+        double bottom = pixel(frame, x0, y0 + 1) * (1 - fx) + pixel(frame, x0 + 1, y0 + 1) * fx;
+        return (int) Math.round(top * (1 - fy) + bottom * fy);
+    }
+
+    private static int pixel(Frame frame, int x, int y) {
+        if (x < 0 || y < 0 || x >= frame.mWidth || y >= frame.mHeight) {
+            return 255;
+        }
+        return frame.mData[y * frame.mWidth + x] & 0xff;
+    }
+
+    /**
+     * 可分离的方框模糊
+     */
+    private static Frame blur(Frame frame, int radius) {
+        int width = frame.mWidth;
+        int height = frame.mHeight;
+        int[] horizontal = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int k = -radius; k <= radius; k++) {
+                    sum += pixel(frame, Math.max(0, Math.min(width - 1, x + k)), y);
+                }
+                horizontal[y * width + x] = sum;
+            }
+        }
+        int area = (2 * radius + 1) * (2 * radius + 1);
+        byte[] data = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int k = -radius; k <= radius; k++) {
+                    sum += horizontal[Math.max(0, Math.min(height - 1, y + k)) * width + x];
+                }
+                data[y * width + x] = (byte) (sum / area);
+            }
+        }
+        return new Frame(data, width, height);
+    }
+
+    /**
+     * 将亮度压缩至[black, white]并叠加高斯噪声，模拟暗光
+     */
+    private Frame lowLight(Frame frame, int black, int white, double noiseSigma) {
+        byte[] data = new byte[frame.mData.length];
+        for (int i = 0; i < data.length; i++) {
+            int value = black + (frame.mData[i] & 0xff) * (white - black) / 255 + (int) Math.round(mRandom.nextGaussian() * noiseSigma);
+            data[i] = (byte) Math.max(0, Math.min(255, value));
+        }
+        return new Frame(data, frame.mWidth, frame.mHeight);
+    }
+
+    /**
+     * 上下拼接两帧，宽度取较大者
+     */
+    private static Frame stack(Frame top, Frame bottom) {
+        int width = Math.max(top.mWidth, bottom.mWidth);
+        int height = top.mHeight + bottom.mHeight;
+        byte[] data = new byte[width * height];
+        Arrays.fill(data, (byte) 255);
+        for (int y = 0; y < top.mHeight; y++) {
+            System.arraycopy(top.mData, y * top.mWidth, data, y * width, top.mWidth);
+        }
+        for (int y = 0; y < bottom.mHeight; y++) {
+            System.arraycopy(bottom.mData, y * bottom.mWidth, data, (top.mHeight + y) * width, bottom.mWidth);
+        }
+        return new Frame(data, width, height);
+    }
+
+    private Frame noise(int width, int height) {
+        byte[] data = new byte[width * height];
+        mRandom.nextBytes(data);
+        return new Frame(data, width, height);
+    }
+
+    /**
+     * 随机宽度的竖直条纹，最容易被误读为DataBar、UPC-E等一维码
+     */
+    private Frame stripes(int width, int height, int moduleWidth) {
+        boolean[] modules = new boolean[width / moduleWidth - 2 * QUIET_ZONE];
+        int index = 0;
+        boolean bar = true;
+        while (index < modules.length) {
+            int run = 1 + mRandom.nextInt(4);
+            for (int i = 0; i < run && index < modules.length; i++) {
+                modules[index++] = bar;
+            }
+            bar = !bar;
+        }
+        Frame frame = render(modules, moduleWidth);
+        return frame.mHeight >= height ? frame : stack(frame, new Frame(whiteData(frame.mWidth, height - frame.mHeight), frame.mWidth, height - frame.mHeight));
+    }
+
+    /**
+     * 随机的深色矩形，模拟文字及包装图案
+     */
+    private Frame blocks(int width, int height) {
+        byte[] data = whiteData(width, height);
+        for (int i = 0; i < 120; i++) {
+            int blockWidth = 2 + mRandom.nextInt(24);
+            int blockHeight = 4 + mRandom.nextInt(24);
+            int left = mRandom.nextInt(width - blockWidth);
+            int top = mRandom.nextInt(height - blockHeight);
+            byte value = (byte) mRandom.nextInt(96);
+            for (int y = top; y < top + blockHeight; y++) {
+                Arrays.fill(data, y * width + left, y * width + left + blockWidth, value);
+            }
+        }
+        return new Frame(data, width, height);
+    }
+
+    private static byte[] whiteData(int width, int height) {
+        byte[] data = new byte[width * height];
+        Arrays.fill(data, (byte) 255);
+        return data;
+    }
+
+}
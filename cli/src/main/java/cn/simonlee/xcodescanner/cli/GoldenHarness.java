@@ -0,0 +1,327 @@
+package cn.simonlee.xcodescanner.cli;
+
+import cn.simonlee.xcodescanner.core.ZBarScanner;
+
+import net.sourceforge.zbar.ImageScanner;
+import net.sourceforge.zbar.Symbol;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * 金样本回归：通过与ZBarDecoder相同的ZBarScanner.scanFrame()解码全部样本（含识别区域裁剪、紧凑拷贝及坐标换算），
+ * 统计准确率、误读率及帧率，并与记录的基线比较
+ * 准确率 = 识别正确的期望条码数 / 期望条码总数
+ * 误读率 = 出现非期望条码的帧数 / 总帧数，条码坐标超出识别区域同样视为误读
+ * 除默认类型外还启用了最容易误读的UPC-E及DataBar（见ZBarDecoder类注释），使误读率能够反映这两种类型的误读
+ * 帧率取多轮解码中最快的一轮，只在指定--throughput时检查：与机器相关，不写入提交的基线，
+ * 而是与同一台机器上记录的帧率文件比较，文件不存在时以本次结果作为该机器的基线
+ * 低于基线（扣除容差）时退出码为1
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class GoldenHarness {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String KEY_ACCURACY = "accuracy";
+    private static final String KEY_FALSE_POSITIVE_RATE = "falsePositiveRate";
+    private static final String KEY_FRAMES_PER_SECOND = "framesPerSecond";
+    private static final String KEY_ACCURACY_TOLERANCE = "accuracyTolerance";
+    private static final String KEY_FALSE_POSITIVE_TOLERANCE = "falsePositiveTolerance";
+    private static final String KEY_THROUGHPUT_TOLERANCE = "throughputTolerance";
+
+    /**
+     * 默认容差：准确率及误读率为绝对值，帧率为相对值
+     */
+    private static final String DEFAULT_ACCURACY_TOLERANCE = "0.005";
+    private static final String DEFAULT_FALSE_POSITIVE_TOLERANCE = "0.005";
+    private static final String DEFAULT_THROUGHPUT_TOLERANCE = "0.3";
+
+    private File mBaselineFile;
+    private File mThroughputFile;
+    private File mFramesDirectory;
+    private boolean isRecord;
+    private boolean isVerbose;
+    private int mPasses = 5;
+
+    public static void main(String[] args) {
+        GoldenHarness harness = new GoldenHarness();
+        try {
+            harness.parseArgs(args);
+            System.exit(harness.run());
+        } catch (IllegalArgumentException e) {
+            System.err.println("error: " + e.getMessage());
+            System.err.println("usage: golden [--baseline file] [--frames dir] [--passes n] [--throughput file] [--record] [--verbose]");
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--baseline".equals(arg) && i + 1 < args.length) {
+                mBaselineFile = new File(args[++i]);
+            } else if ("--throughput".equals(arg) && i + 1 < args.length) {
+                mThroughputFile = new File(args[++i]);
+            } else if ("--frames".equals(arg) && i + 1 < args.length) {
+                mFramesDirectory = new File(args[++i]);
+            } else if ("--passes".equals(arg) && i + 1 < args.length) {
+                try {
+                    mPasses = Math.max(1, Integer.parseInt(args[++i]));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid value for --passes");
+                }
+            } else if ("--record".equals(arg)) {
+                isRecord = true;
+            } else if ("--verbose".equals(arg)) {
+                isVerbose = true;
+            } else {
+                throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        if (isRecord && mBaselineFile == null && mThroughputFile == null) {
+            throw new IllegalArgumentException("--record requires --baseline or --throughput");
+        }
+    }
+
+    private int run() throws IOException {
+        List<GoldenCorpus.Case> caseList = new GoldenCorpus().createSyntheticCases();
+        if (mFramesDirectory != null) {
+            caseList.addAll(GoldenCorpus.loadManifestCases(mFramesDirectory));
+        }
+        ZBarScanner scanner = new ZBarScanner(getSymbolTypes());
+        int expectedCount = 0;
+        int correctCount = 0;
+        int misreadCount = 0;
+        int falsePositiveFrames = 0;
+        long bestPassTime = Long.MAX_VALUE;
+        try {
+            for (int pass = 0; pass < mPasses; pass++) {
+                long passTime = 0;
+                for (GoldenCorpus.Case scanCase : caseList) {
+                    int[] scanParams = getScanParams(scanCase);
+                    long startTime = System.nanoTime();
+                    int count = scanner.scanFrame(scanCase.mData, scanCase.mWidth, scanCase.mHeight, scanParams, true, null);
+                    passTime += System.nanoTime() - startTime;
+                    if (pass > 0) continue;
+                    //首轮统计准确率，其余各轮只计时
+                    List<String> actual = readResults(scanner, count, scanCase.mCropRect);
+                    List<String> missing = new ArrayList<>(scanCase.mExpected);
+                    List<String> unexpected = new ArrayList<>();
+                    for (String symbol : actual) {
+                        if (!missing.remove(symbol)) {
+                            unexpected.add(symbol);
+                        }
+                    }
+                    expectedCount += scanCase.mExpected.size();
+                    correctCount += scanCase.mExpected.size() - missing.size();
+                    misreadCount += unexpected.size();
+                    if (!unexpected.isEmpty()) {
+                        falsePositiveFrames++;
+                    }
+                    String status = !unexpected.isEmpty() ? "MISREAD" : !missing.isEmpty() ? "MISS" : "PASS";
+                    if (isVerbose || !"PASS".equals(status)) {
+                        System.out.println(status + "\t" + scanCase.mName + "\texpected=" + scanCase.mExpected + "\tactual=" + actual);
+                    }
+                }
+                bestPassTime = Math.min(bestPassTime, passTime);
+            }
+        } finally {
+            scanner.destroy();
+        }
+        double accuracy = expectedCount == 0 ? 1 : (double) correctCount / expectedCount;
+        double falsePositiveRate = (double) falsePositiveFrames / caseList.size();
+        double framesPerSecond = caseList.size() * 1e9 / Math.max(1, bestPassTime);
+        System.out.println(String.format(Locale.US, "frames=%d symbols=%d correct=%d misreads=%d",
+                caseList.size(), expectedCount, correctCount, misreadCount));
+        System.out.println(String.format(Locale.US, "%s=%.4f %s=%.4f %s=%.1f", KEY_ACCURACY, accuracy,
+                KEY_FALSE_POSITIVE_RATE, falsePositiveRate, KEY_FRAMES_PER_SECOND, framesPerSecond));
+
+        boolean passed = true;
+        if (mBaselineFile != null) {
+            passed = checkAccuracy(accuracy, falsePositiveRate);
+        }
+        if (mThroughputFile != null) {
+            passed &= checkThroughput(framesPerSecond);
+        }
+        return passed ? 0 : 1;
+    }
+
+    private boolean checkAccuracy(double accuracy, double falsePositiveRate) throws IOException {
+        Properties baseline = load(mBaselineFile);
+        if (isRecord) {
+            baseline = baseline == null ? new Properties() : baseline;
+            //帧率与机器相关，只记录在--throughput指定的文件中
+            baseline.remove(KEY_FRAMES_PER_SECOND);
+            baseline.remove(KEY_THROUGHPUT_TOLERANCE);
+            baseline.setProperty(KEY_ACCURACY, String.format(Locale.US, "%.4f", accuracy));
+            baseline.setProperty(KEY_FALSE_POSITIVE_RATE, String.format(Locale.US, "%.4f", falsePositiveRate));
+            setDefault(baseline, KEY_ACCURACY_TOLERANCE, DEFAULT_ACCURACY_TOLERANCE);
+            setDefault(baseline, KEY_FALSE_POSITIVE_TOLERANCE, DEFAULT_FALSE_POSITIVE_TOLERANCE);
+            store(baseline, mBaselineFile, "golden corpus baseline, update with gradlew :cli:goldenRecord");
+            return true;
+        }
+        if (baseline == null) {
+            System.err.println("baseline " + mBaselineFile + " not found, record it with --record");
+            return false;
+        }
+        boolean passed = true;
+        double minAccuracy = getDouble(baseline, KEY_ACCURACY, "0") - getDouble(baseline, KEY_ACCURACY_TOLERANCE, DEFAULT_ACCURACY_TOLERANCE);
+        if (accuracy < minAccuracy) {
+            System.err.println(String.format(Locale.US, "FAILED: accuracy %.4f is below baseline %.4f", accuracy, minAccuracy));
+            passed = false;
+        }
+        double maxFalsePositiveRate = getDouble(baseline, KEY_FALSE_POSITIVE_RATE, "0") + getDouble(baseline, KEY_FALSE_POSITIVE_TOLERANCE, DEFAULT_FALSE_POSITIVE_TOLERANCE);
+        if (falsePositiveRate > maxFalsePositiveRate) {
+            System.err.println(String.format(Locale.US, "FAILED: false positive rate %.4f is above baseline %.4f", falsePositiveRate, maxFalsePositiveRate));
+            passed = false;
+        }
+        return passed;
+    }
+
+    /**
+     * 与同一台机器上记录的帧率比较，未记录过时以本次结果作为基线
+     */
+    private boolean checkThroughput(double framesPerSecond) throws IOException {
+        Properties baseline = load(mThroughputFile);
+        if (isRecord || baseline == null) {
+            baseline = baseline == null ? new Properties() : baseline;
+            baseline.setProperty(KEY_FRAMES_PER_SECOND, String.format(Locale.US, "%.1f", framesPerSecond));
+            setDefault(baseline, KEY_THROUGHPUT_TOLERANCE, DEFAULT_THROUGHPUT_TOLERANCE);
+            store(baseline, mThroughputFile, "golden corpus throughput on this machine, update with --record");
+            return true;
+        }
+        double minFramesPerSecond = getDouble(baseline, KEY_FRAMES_PER_SECOND, "0") * (1 - getDouble(baseline, KEY_THROUGHPUT_TOLERANCE, DEFAULT_THROUGHPUT_TOLERANCE));
+        if (framesPerSecond < minFramesPerSecond) {
+            System.err.println(String.format(Locale.US, "FAILED: throughput %.1f frames/s is below baseline %.1f", framesPerSecond, minFramesPerSecond));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 默认类型加上UPC-E及DataBar
+     */
+    private static int[] getSymbolTypes() {
+        int[] defaultTypes = ZBarScanner.getDefaultSymbolTypes();
+        int[] symbolTypes = new int[defaultTypes.length + 2];
+        System.arraycopy(defaultTypes, 0, symbolTypes, 0, defaultTypes.length);
+        symbolTypes[defaultTypes.length] = Symbol.UPCE;
+        symbolTypes[defaultTypes.length + 1] = Symbol.DATABAR;
+        return symbolTypes;
+    }
+
+    /**
+     * 扫描参数，与ZBarDecoder相同使用默认密度，识别区域取自样本
+     */
+    private static int[] getScanParams(GoldenCorpus.Case scanCase) {
+        int[] scanParams = {ZBarScanner.DEFAULT_DENSITY, ZBarScanner.DEFAULT_DENSITY, 0, 0, 0, 0};
+        if (scanCase.mCropRect != null) {
+            System.arraycopy(scanCase.mCropRect, 0, scanParams, 2, 4);
+        }
+        return scanParams;
+    }
+
+    /**
+     * 读取解码结果，格式为"类型:数据"，坐标超出识别区域的条码追加"@outside"，使其计为误读
+     */
+    private static List<String> readResults(ZBarScanner scanner, int count, int[] cropRect) {
+        List<String> resultList = new ArrayList<>(count);
+        int[] resultArray = scanner.getResultArray();
+        byte[] resultData = scanner.getResultData();
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int dataLength = resultArray[offset + ImageScanner.RESULT_DATA_LENGTH];
+            int locationSize = resultArray[offset + ImageScanner.RESULT_LOCATION_SIZE];
+            if (dataLength > 0) {
+                String result = SymbolTypes.getTypeName(resultArray[offset + ImageScanner.RESULT_TYPE]) + ":"
+                        + new String(resultData, resultArray[offset + ImageScanner.RESULT_DATA_OFFSET], dataLength, UTF_8);
+                if (cropRect != null && !isInside(resultArray, offset + ImageScanner.RESULT_HEADER_SIZE, locationSize, cropRect)) {
+                    result += "@outside";
+                }
+                resultList.add(result);
+            }
+            offset += ImageScanner.RESULT_HEADER_SIZE + 2 * locationSize;
+        }
+        return resultList;
+    }
+
+    /**
+     * 条码的全部坐标是否位于识别区域内
+     */
+    private static boolean isInside(int[] resultArray, int offset, int locationSize, int[] cropRect) {
+        for (int i = 0; i < locationSize; i++) {
+            int x = resultArray[offset + 2 * i];
+            int y = resultArray[offset + 2 * i + 1];
+            if (x < cropRect[0] || y < cropRect[1] || x >= cropRect[0] + cropRect[2] || y >= cropRect[1] + cropRect[3]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 读取基线文件，不存在时返回null
+     */
+    private static Properties load(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            properties.load(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        return properties;
+    }
+
+    /**
+     * 写入基线文件，保留已有的容差配置
+     */
+    private static void store(Properties properties, File file, String comments) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("cannot create directory " + parent);
+        }
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            properties.store(outputStream, comments);
+        } finally {
+            outputStream.close();
+        }
+        System.out.println("baseline recorded to " + file);
+    }
+
+    private static void setDefault(Properties properties, String key, String value) {
+        if (properties.getProperty(key) == null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private static double getDouble(Properties properties, String key, String defaultValue) {
+        try {
+            return Double.parseDouble(properties.getProperty(key, defaultValue));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid baseline value for " + key);
+        }
+    }
+
+}
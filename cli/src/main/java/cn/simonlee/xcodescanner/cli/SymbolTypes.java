@@ -0,0 +1,54 @@
+package cn.simonlee.xcodescanner.cli;
+
+import net.sourceforge.zbar.Symbol;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 条码类型名称，用于命令行参数及输出，默认识别的类型见ZBarScanner.getDefaultSymbolTypes()
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+class SymbolTypes {
+
+    /**
+     * 条码类型名称
+     */
+    static final Map<String, Integer> SYMBOL_TYPES = new LinkedHashMap<>();
+
+    static {
+        SYMBOL_TYPES.put("EAN8", Symbol.EAN8);
+        SYMBOL_TYPES.put("UPCE", Symbol.UPCE);
+        SYMBOL_TYPES.put("ISBN10", Symbol.ISBN10);
+        SYMBOL_TYPES.put("UPCA", Symbol.UPCA);
+        SYMBOL_TYPES.put("EAN13", Symbol.EAN13);
+        SYMBOL_TYPES.put("ISBN13", Symbol.ISBN13);
+        SYMBOL_TYPES.put("I25", Symbol.I25);
+        SYMBOL_TYPES.put("DATABAR", Symbol.DATABAR);
+        SYMBOL_TYPES.put("DATABAR_EXP", Symbol.DATABAR_EXP);
+        SYMBOL_TYPES.put("CODABAR", Symbol.CODABAR);
+        SYMBOL_TYPES.put("CODE39", Symbol.CODE39);
+        SYMBOL_TYPES.put("PDF417", Symbol.PDF417);
+        SYMBOL_TYPES.put("QRCODE", Symbol.QRCODE);
+        SYMBOL_TYPES.put("CODE93", Symbol.CODE93);
+        SYMBOL_TYPES.put("CODE128", Symbol.CODE128);
+    }
+
+    private SymbolTypes() {
+    }
+
+    /**
+     * 条码类型的名称，未知类型返回其数值
+     */
+    static String getTypeName(int type) {
+        for (Map.Entry<String, Integer> entry : SYMBOL_TYPES.entrySet()) {
+            if (entry.getValue() == type) return entry.getKey();
+        }
+        return String.valueOf(type);
+    }
+
+}
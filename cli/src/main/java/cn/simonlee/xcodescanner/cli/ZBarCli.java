@@ -0,0 +1,421 @@
+package cn.simonlee.xcodescanner.cli;
+
+import net.sourceforge.zbar.ImageScanner;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import cn.simonlee.xcodescanner.core.FrameUtils;
+import cn.simonlee.xcodescanner.core.ZBarScanner;
+
+/**
+ * 命令行批量解码，在Linux服务器上使用zbar重新处理图片归档
+ * 支持PGM(P5/P2)、raw Y800（须通过-s指定尺寸）及ImageIO可读取的格式（PNG/JPEG/BMP/GIF）
+ * 每张图片输出一行，以Tab分隔：路径、状态(OK/NONE/ERROR)、总耗时ms、解码耗时ms、条码(类型:精度:数据)...
+ * 汇总信息输出到标准错误
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class ZBarCli {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * 目录中会被解码的文件扩展名
+     */
+    private static final List<String> IMAGE_EXTENSIONS = Arrays.asList("pgm", "png", "jpg", "jpeg", "bmp", "gif", "y800", "raw", "yuv");
+
+    /**
+     * raw Y800文件的扩展名
+     */
+    private static final List<String> RAW_EXTENSIONS = Arrays.asList("y800", "raw", "yuv");
+
+    private int mThreadCount = Runtime.getRuntime().availableProcessors();
+    private int mRawWidth;
+    private int mRawHeight;
+    private int mDensity = ZBarScanner.DEFAULT_DENSITY;
+    private int[] mSymbolTypes = ZBarScanner.getDefaultSymbolTypes();
+    private final List<File> mInputList = new ArrayList<>();
+
+    private final PrintStream mOut = new PrintStream(System.out, false);
+
+    /**
+     * 各线程的解码工作单元，结束时统一释放
+     */
+    private final List<ZBarScanner> mWorkerList = new ArrayList<>();
+    private final ThreadLocal<ZBarScanner> mWorker = new ThreadLocal<ZBarScanner>() {
+        @Override
+        protected ZBarScanner initialValue() {
+            ZBarScanner worker = new ZBarScanner(mSymbolTypes);
+            synchronized (mWorkerList) {
+                mWorkerList.add(worker);
+            }
+            return worker;
+        }
+    };
+
+    private final AtomicInteger mDecodedCount = new AtomicInteger();
+    private final AtomicInteger mNoneCount = new AtomicInteger();
+    private final AtomicInteger mErrorCount = new AtomicInteger();
+
+    /**
+     * 各文件的总耗时，单位纳秒
+     */
+    private long[] mLatencyArray = new long[1024];
+    private int mLatencyCount;
+
+    public static void main(String[] args) {
+        ZBarCli cli = new ZBarCli();
+        try {
+            cli.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("error: " + e.getMessage());
+            printUsage();
+            System.exit(1);
+            return;
+        }
+        System.exit(cli.run());
+    }
+
+    private static void printUsage() {
+        System.err.println("usage: zbar-cli [-j threads] [-s WIDTHxHEIGHT] [-d density] [-t TYPE,TYPE...] <file|dir>...");
+        System.err.println("  -j  decode threads, default is the number of CPUs");
+        System.err.println("  -s  size of raw Y800 files (.y800/.raw/.yuv), extra bytes such as NV21 chroma are ignored");
+        System.err.println("  -d  zbar scan density, default 3");
+        System.err.println("  -t  symbol types, default all except UPCE and DATABAR: " + SymbolTypes.SYMBOL_TYPES.keySet());
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-h".equals(arg) || "--help".equals(arg)) {
+                printUsage();
+                System.exit(0);
+            } else if ("-j".equals(arg)) {
+                mThreadCount = parsePositive(nextArg(args, ++i, arg), arg);
+            } else if ("-d".equals(arg)) {
+                mDensity = parsePositive(nextArg(args, ++i, arg), arg);
+            } else if ("-s".equals(arg)) {
+                String[] size = nextArg(args, ++i, arg).toLowerCase(Locale.US).split("x");
+                if (size.length != 2) {
+                    throw new IllegalArgumentException("invalid size for -s");
+                }
+                mRawWidth = parsePositive(size[0], arg);
+                mRawHeight = parsePositive(size[1], arg);
+            } else if ("-t".equals(arg)) {
+                String[] names = nextArg(args, ++i, arg).split(",");
+                mSymbolTypes = new int[names.length];
+                for (int j = 0; j < names.length; j++) {
+                    Integer type = SymbolTypes.SYMBOL_TYPES.get(names[j].trim().toUpperCase(Locale.US));
+                    if (type == null) {
+                        throw new IllegalArgumentException("unknown symbol type " + names[j]);
+                    }
+                    mSymbolTypes[j] = type;
+                }
+            } else if (arg.startsWith("-") && arg.length() > 1) {
+                throw new IllegalArgumentException("unknown option " + arg);
+            } else {
+                mInputList.add(new File(arg));
+            }
+        }
+        if (mInputList.isEmpty()) {
+            throw new IllegalArgumentException("no input");
+        }
+    }
+
+    private static String nextArg(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static int parsePositive(String value, String option) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) return result;
+        } catch (NumberFormatException e) {
+            //下方统一抛出
+        }
+        throw new IllegalArgumentException("invalid value for " + option + ": " + value);
+    }
+
+    /**
+     * 遍历输入并行解码，进行中的文件数不超过线程数的2倍，返回退出码
+     */
+    private int run() {
+        long startTime = System.nanoTime();
+        ExecutorService executorService = Executors.newFixedThreadPool(mThreadCount);
+        final Semaphore semaphore = new Semaphore(mThreadCount * 2);
+        Deque<File> fileDeque = new ArrayDeque<>();
+        for (int i = mInputList.size() - 1; i >= 0; i--) {
+            fileDeque.push(mInputList.get(i));
+        }
+        int fileCount = 0;
+        while (!fileDeque.isEmpty()) {
+            File file = fileDeque.pop();
+            if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                if (children != null) {
+                    Arrays.sort(children);
+                    for (int i = children.length - 1; i >= 0; i--) {
+                        if (children[i].isDirectory() || IMAGE_EXTENSIONS.contains(getExtension(children[i]))) {
+                            fileDeque.push(children[i]);
+                        }
+                    }
+                }
+                continue;
+            }
+            fileCount++;
+            semaphore.acquireUninterruptibly();
+            final File imageFile = file;
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        decodeFile(imageFile);
+                    } finally {
+                        semaphore.release();
+                    }
+                }
+            });
+        }
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mOut.flush();
+        synchronized (mWorkerList) {
+            for (ZBarScanner worker : mWorkerList) {
+                worker.destroy();
+            }
+        }
+        printSummary(fileCount, System.nanoTime() - startTime);
+        return mErrorCount.get() > 0 ? 2 : 0;
+    }
+
+    private void decodeFile(File file) {
+        long startTime = System.nanoTime();
+        StringBuilder builder = new StringBuilder();
+        builder.append(escape(file.getPath()));
+        try {
+            Frame frame = readFrame(file);
+            ZBarScanner worker = mWorker.get();
+            int[] scanParams = {mDensity, mDensity, 0, 0, 0, 0};
+            long scanStartTime = System.nanoTime();
+            int count = worker.scanFrame(frame.mData, frame.mWidth, frame.mHeight, scanParams, false, null);
+            long scanTime = System.nanoTime() - scanStartTime;
+            long totalTime = System.nanoTime() - startTime;
+            builder.append('\t').append(count > 0 ? "OK" : "NONE");
+            builder.append('\t').append(formatMillis(totalTime)).append('\t').append(formatMillis(scanTime));
+            int[] resultArray = worker.getResultArray();
+            byte[] resultData = worker.getResultData();
+            int offset = 0;
+            for (int i = 0; i < count; i++) {
+                builder.append('\t').append(SymbolTypes.getTypeName(resultArray[offset + ImageScanner.RESULT_TYPE]))
+                        .append(':').append(resultArray[offset + ImageScanner.RESULT_QUALITY]).append(':')
+                        .append(escape(new String(resultData, resultArray[offset + ImageScanner.RESULT_DATA_OFFSET],
+                                resultArray[offset + ImageScanner.RESULT_DATA_LENGTH], UTF_8)));
+                offset += ImageScanner.RESULT_HEADER_SIZE + 2 * resultArray[offset + ImageScanner.RESULT_LOCATION_SIZE];
+            }
+            (count > 0 ? mDecodedCount : mNoneCount).incrementAndGet();
+            recordLatency(totalTime);
+        } catch (IOException | RuntimeException e) {
+            long totalTime = System.nanoTime() - startTime;
+            builder.append("\tERROR\t").append(formatMillis(totalTime)).append("\t-\t").append(escape(String.valueOf(e.getMessage())));
+            mErrorCount.incrementAndGet();
+            recordLatency(totalTime);
+        }
+        synchronized (mOut) {
+            mOut.println(builder);
+        }
+    }
+
+    /**
+     * 读取图片并转换为Y800数据
+     */
+    private Frame readFrame(File file) throws IOException {
+        String extension = getExtension(file);
+        if (RAW_EXTENSIONS.contains(extension)) {
+            if (mRawWidth <= 0 || mRawHeight <= 0) {
+                throw new IOException("raw Y800 requires -s WIDTHxHEIGHT");
+            }
+            return readRaw(file, mRawWidth, mRawHeight);
+        }
+        if ("pgm".equals(extension)) {
+            return readPgm(file);
+        }
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("unsupported image format");
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        return new Frame(FrameUtils.argbToLuma(pixels, width, height, null), width, height);
+    }
+
+    /**
+     * 读取raw Y800图片，只读取前width*height字节，其余数据（如NV21的色度）忽略
+     */
+    static Frame readRaw(File file, int width, int height) throws IOException {
+        byte[] data = new byte[width * height];
+        DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            inputStream.readFully(data);
+        } finally {
+            inputStream.close();
+        }
+        return new Frame(data, width, height);
+    }
+
+    /**
+     * 读取PGM图片，支持P5（二进制，8位或16位）及P2（文本）
+     */
+    static Frame readPgm(File file) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
+        try {
+            String magic = readPgmToken(inputStream);
+            boolean isBinary = "P5".equals(magic);
+            if (!isBinary && !"P2".equals(magic)) {
+                throw new IOException("not a PGM file");
+            }
+            int width = Integer.parseInt(readPgmToken(inputStream));
+            int height = Integer.parseInt(readPgmToken(inputStream));
+            int maxValue = Integer.parseInt(readPgmToken(inputStream));
+            if (width <= 0 || height <= 0 || maxValue <= 0 || maxValue > 65535) {
+                throw new IOException("invalid PGM header");
+            }
+            byte[] data = new byte[width * height];
+            for (int i = 0; i < data.length; i++) {
+                int value;
+                if (!isBinary) {
+                    value = Integer.parseInt(readPgmToken(inputStream));
+                } else if (maxValue < 256) {
+                    value = inputStream.read();
+                } else {
+                    int high = inputStream.read();
+                    value = high < 0 ? -1 : (high << 8) | inputStream.read();
+                }
+                if (value < 0) {
+                    throw new IOException("unexpected end of PGM data");
+                }
+                data[i] = (byte) (maxValue == 255 ? value : value * 255 / maxValue);
+            }
+            return new Frame(data, width, height);
+        } catch (NumberFormatException e) {
+            throw new IOException("invalid PGM header");
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * 读取PGM头部（或P2数据）中以空白分隔的下一个字段，跳过#开头的注释
+     */
+    private static String readPgmToken(InputStream inputStream) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        int c;
+        while ((c = inputStream.read()) >= 0) {
+            if (c == '#' && builder.length() == 0) {
+                while ((c = inputStream.read()) >= 0 && c != '\n') ;
+            } else if (Character.isWhitespace(c)) {
+                if (builder.length() > 0) break;
+            } else {
+                builder.append((char) c);
+            }
+        }
+        if (builder.length() == 0) {
+            throw new IOException("unexpected end of PGM file");
+        }
+        return builder.toString();
+    }
+
+    private synchronized void recordLatency(long latency) {
+        if (mLatencyCount == mLatencyArray.length) {
+            mLatencyArray = Arrays.copyOf(mLatencyArray, mLatencyCount * 2);
+        }
+        mLatencyArray[mLatencyCount++] = latency;
+    }
+
+    private synchronized void printSummary(int fileCount, long totalTime) {
+        long[] latencyArray = Arrays.copyOf(mLatencyArray, mLatencyCount);
+        Arrays.sort(latencyArray);
+        long latencySum = 0;
+        for (long latency : latencyArray) {
+            latencySum += latency;
+        }
+        System.err.println(String.format(Locale.US, "files=%d decoded=%d none=%d errors=%d threads=%d time=%.2fs rate=%.1f files/s",
+                fileCount, mDecodedCount.get(), mNoneCount.get(), mErrorCount.get(), mThreadCount,
+                totalTime / 1e9, totalTime > 0 ? fileCount * 1e9 / totalTime : 0));
+        if (latencyArray.length > 0) {
+            System.err.println(String.format(Locale.US, "latency avg=%sms p50=%sms p95=%sms max=%sms",
+                    formatMillis(latencySum / latencyArray.length), formatMillis(percentile(latencyArray, 50)),
+                    formatMillis(percentile(latencyArray, 95)), formatMillis(latencyArray[latencyArray.length - 1])));
+        }
+    }
+
+    private static long percentile(long[] sortedArray, int percentile) {
+        int index = (int) Math.ceil(sortedArray.length * percentile / 100.0) - 1;
+        return sortedArray[Math.max(0, Math.min(sortedArray.length - 1, index))];
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.US, "%.2f", nanos / 1e6);
+    }
+
+    private static String getExtension(File file) {
+        String name = file.getName();
+        int index = name.lastIndexOf('.');
+        return index < 0 ? "" : name.substring(index + 1).toLowerCase(Locale.US);
+    }
+
+    /**
+     * 转义Tab、换行及反斜杠，保证每个文件只输出一行
+     */
+    private static String escape(String text) {
+        if (text.indexOf('\t') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0 && text.indexOf('\\') < 0) {
+            return text;
+        }
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static class Frame {
+
+        final byte[] mData;
+        final int mWidth;
+        final int mHeight;
+
+        Frame(byte[] data, int width, int height) {
+            this.mData = data;
+            this.mWidth = width;
+            this.mHeight = height;
+        }
+    }
+
+}
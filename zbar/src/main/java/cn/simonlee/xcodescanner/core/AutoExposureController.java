@@ -0,0 +1,295 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.os.SystemClock;
+
+/**
+ * 自动闪光灯及曝光补偿控制器，以解码成功为目标而非预览画面的观感，由CameraScanner.setAutoExposureController()设置
+ * 根据解码线程回调的识别区域亮度统计及解码结果进行闭环调节，只在连续解码失败时调节，解码成功时保持当前设置：
+ * 1.闪光灯：识别区域持续偏暗时打开；打开后在持续过曝（如反光）或持续明亮且没有过曝（如移到了光线充足处）时关闭，
+ * 开关之间至少间隔MIN_FLASH_DWELL，防止闪烁
+ * 2.曝光补偿：偏暗且没有过曝时逐级提高，过曝时逐级降低，每次调节后等待ADJUST_INTERVAL让相机自动曝光收敛，闪光灯开关后恢复为0
+ * 被清晰度门限或画面变化检测跳过的帧按解码失败记录
+ * 通过CameraScanner.openFlash()/closeFlash()手动开关闪光灯时会调用notifyFlashChanged()同步状态；
+ * 不希望控制器再改变用户的选择时应调用setAutoFlashEnabled(false)，已发出但尚未执行的自动开关也随之取消
+ * 线程安全，可同时被多个解码线程使用
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class AutoExposureController {
+
+    /**
+     * 平均亮度低于该值视为偏暗
+     */
+    private static final int DARK_LUMA = 50;
+
+    /**
+     * 平均亮度低于该值时提高曝光补偿
+     */
+    private static final int TARGET_LOW_LUMA = 80;
+
+    /**
+     * 平均亮度高于该值且没有过曝视为明亮，远高于TARGET_LOW_LUMA，闪光灯已无必要
+     */
+    private static final int BRIGHT_LUMA = 160;
+
+    /**
+     * 过暗像素比例超过该值视为偏暗
+     */
+    private static final float DARK_CLIPPED_RATIO = 0.5F;
+
+    /**
+     * 过曝像素比例超过该值视为过曝
+     */
+    private static final float GLARE_RATIO = 0.2F;
+
+    /**
+     * 过曝像素比例低于该值时才提高曝光补偿
+     */
+    private static final float HIGHLIGHT_HEADROOM = 0.02F;
+
+    /**
+     * 连续偏暗且解码失败多少帧后打开闪光灯
+     */
+    private static final int FLASH_ON_FRAMES = 5;
+
+    /**
+     * 连续过曝或明亮且解码失败多少帧后关闭闪光灯，大于FLASH_ON_FRAMES形成迟滞
+     */
+    private static final int FLASH_OFF_FRAMES = 15;
+
+    /**
+     * 连续解码失败多少帧后开始调节曝光补偿
+     */
+    private static final int EXPOSURE_FRAMES = 4;
+
+    /**
+     * 闪光灯两次开关的最小间隔，单位毫秒
+     */
+    private static final long MIN_FLASH_DWELL = 3000;
+
+    /**
+     * 两次调节曝光补偿的最小间隔，单位毫秒
+     */
+    private static final long ADJUST_INTERVAL = 500;
+
+    /**
+     * 曝光补偿的调节步长及范围，单位EV，超出相机支持的范围时由CameraScanner取最近的支持值
+     */
+    private static final float EXPOSURE_STEP = 0.5F;
+    private static final float MAX_EXPOSURE = 2F;
+
+    /**
+     * 平均亮度的平滑系数
+     */
+    private static final float EMA_ALPHA = 0.3F;
+
+    private boolean isAutoFlashEnabled = true;
+    private boolean isAutoExposureEnabled = true;
+
+    private Actuator mActuator;
+
+    private boolean isFlashOpened;
+    private float mExposureCompensation;
+    private float mSmoothedLuma = -1;
+    private int mFailureCount;
+    private int mDarkCount;
+    private int mGlareCount;
+    private int mBrightCount;
+    private long mFlashChangedTime;
+    private long mExposureChangedTime;
+
+    /**
+     * 设置是否自动开关闪光灯，默认为true
+     */
+    public synchronized void setAutoFlashEnabled(boolean enabled) {
+        this.isAutoFlashEnabled = enabled;
+        mDarkCount = mGlareCount = mBrightCount = 0;
+    }
+
+    public synchronized boolean isAutoFlashEnabled() {
+        return isAutoFlashEnabled;
+    }
+
+    /**
+     * 设置是否自动调节曝光补偿，默认为true，关闭时恢复为0
+     */
+    public void setAutoExposureEnabled(boolean enabled) {
+        Actuator actuator;
+        synchronized (this) {
+            this.isAutoExposureEnabled = enabled;
+            if (enabled || mExposureCompensation == 0) {
+                return;
+            }
+            mExposureCompensation = 0;
+            actuator = mActuator;
+        }
+        if (actuator != null) {
+            actuator.requestExposureCompensation(0);
+        }
+    }
+
+    public synchronized boolean isAutoExposureEnabled() {
+        return isAutoExposureEnabled;
+    }
+
+    /**
+     * 设置执行调节的相机，由CameraScanner调用
+     */
+    public synchronized void attach(Actuator actuator) {
+        this.mActuator = actuator;
+    }
+
+    /**
+     * 清空调节状态，相机关闭后闪光灯及曝光补偿均已恢复默认，由CameraScanner在关闭相机时调用
+     */
+    public synchronized void reset() {
+        isFlashOpened = false;
+        mExposureCompensation = 0;
+        mSmoothedLuma = -1;
+        mFailureCount = mDarkCount = mGlareCount = mBrightCount = 0;
+        mFlashChangedTime = mExposureChangedTime = 0;
+    }
+
+    /**
+     * 控制器记录的闪光灯状态，包括手动开关
+     */
+    public synchronized boolean isFlashOpened() {
+        return isFlashOpened;
+    }
+
+    /**
+     * 当前的曝光补偿，单位EV
+     */
+    public synchronized float getExposureCompensation() {
+        return mExposureCompensation;
+    }
+
+    /**
+     * 闪光灯被手动开关，由CameraScanner.openFlash()/closeFlash()调用
+     * 以此作为闪光灯的当前状态，开关间隔及亮度统计重新开始计算，曝光补偿恢复为0
+     */
+    public void notifyFlashChanged(boolean opened) {
+        Actuator actuator;
+        synchronized (this) {
+            isFlashOpened = opened;
+            mFlashChangedTime = SystemClock.uptimeMillis();
+            mDarkCount = mGlareCount = mBrightCount = 0;
+            mSmoothedLuma = -1;
+            if (mExposureCompensation == 0) {
+                return;
+            }
+            mExposureCompensation = 0;
+            mExposureChangedTime = mFlashChangedTime;
+            actuator = mActuator;
+        }
+        if (actuator != null) {
+            actuator.requestExposureCompensation(0);
+        }
+    }
+
+    /**
+     * 记录一帧预览图像的解码结果，在解码线程调用
+     *
+     * @param statistics 该帧识别区域的亮度统计
+     * @param decoded    是否识别到条码，被跳过的帧为false
+     */
+    public void onFrameDecoded(FrameStatistics statistics, boolean decoded) {
+        Actuator actuator;
+        int flashAction;
+        float exposure;
+        synchronized (this) {
+            actuator = mActuator;
+            float mean = statistics.getMean();
+            mSmoothedLuma = mSmoothedLuma < 0 ? mean : mSmoothedLuma + EMA_ALPHA * (mean - mSmoothedLuma);
+            if (decoded) {//解码成功，保持当前设置
+                mFailureCount = mDarkCount = mGlareCount = mBrightCount = 0;
+                return;
+            }
+            mFailureCount++;
+            boolean isDark = mSmoothedLuma < DARK_LUMA || statistics.getDarkClippedRatio() > DARK_CLIPPED_RATIO;
+            boolean isGlare = statistics.getBrightClippedRatio() > GLARE_RATIO;
+            boolean isBright = mSmoothedLuma > BRIGHT_LUMA && statistics.getBrightClippedRatio() < HIGHLIGHT_HEADROOM;
+            mDarkCount = isDark ? mDarkCount + 1 : 0;
+            mGlareCount = isGlare ? mGlareCount + 1 : 0;
+            mBrightCount = isBright ? mBrightCount + 1 : 0;
+            long now = SystemClock.uptimeMillis();
+            flashAction = getFlashAction(now);
+            exposure = flashAction != 0 ? 0 : getExposureAction(now, statistics);
+            if (flashAction == 0 && exposure == mExposureCompensation) {
+                return;
+            }
+            if (flashAction != 0) {//闪光灯改变了画面亮度，曝光补偿重新开始调节
+                isFlashOpened = flashAction > 0;
+                mFlashChangedTime = now;
+                mDarkCount = mGlareCount = mBrightCount = 0;
+                mSmoothedLuma = -1;
+            }
+            if (exposure != mExposureCompensation) {
+                mExposureCompensation = exposure;
+                mExposureChangedTime = now;
+            } else {
+                exposure = Float.NaN;
+            }
+        }
+        if (actuator == null) {
+            return;
+        }
+        if (flashAction != 0) {
+            actuator.requestFlash(flashAction > 0);
+        }
+        if (!Float.isNaN(exposure)) {
+            actuator.requestExposureCompensation(exposure);
+        }
+    }
+
+    /**
+     * 返回闪光灯的调节方向，1为打开，-1为关闭，0为不变
+     */
+    private int getFlashAction(long now) {
+        if (!isAutoFlashEnabled || now - mFlashChangedTime < MIN_FLASH_DWELL) {
+            return 0;
+        }
+        if (!isFlashOpened && mDarkCount >= FLASH_ON_FRAMES) {
+            return 1;
+        }
+        if (isFlashOpened && (mGlareCount >= FLASH_OFF_FRAMES || mBrightCount >= FLASH_OFF_FRAMES)) {
+            return -1;
+        }
+        return 0;
+    }
+
+    /**
+     * 返回调节后的曝光补偿
+     */
+    private float getExposureAction(long now, FrameStatistics statistics) {
+        if (!isAutoExposureEnabled || mFailureCount < EXPOSURE_FRAMES || now - mExposureChangedTime < ADJUST_INTERVAL) {
+            return mExposureCompensation;
+        }
+        if (statistics.getBrightClippedRatio() > GLARE_RATIO) {
+            return Math.max(-MAX_EXPOSURE, mExposureCompensation - EXPOSURE_STEP);
+        }
+        if (mSmoothedLuma < TARGET_LOW_LUMA && statistics.getBrightClippedRatio() < HIGHLIGHT_HEADROOM) {
+            return Math.min(MAX_EXPOSURE, mExposureCompensation + EXPOSURE_STEP);
+        }
+        return mExposureCompensation;
+    }
+
+    /**
+     * 执行调节的相机，回调在解码线程，应转到相机所在线程执行
+     */
+    public interface Actuator {
+        /**
+         * 打开或关闭闪光灯
+         */
+        void requestFlash(boolean open);
+
+        /**
+         * 设置曝光补偿，单位EV
+         */
+        void requestExposureCompensation(float exposureCompensation);
+    }
+
+}
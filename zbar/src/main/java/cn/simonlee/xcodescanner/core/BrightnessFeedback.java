@@ -0,0 +1,213 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.graphics.RectF;
+import android.os.Handler;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 亮度回馈，由OldCameraScanner与NewCameraScanner共用
+ * 相机每输出FEEDBACK_INTERVAL帧，向相机所在线程发送一次期间采样的平均亮度，与是否解码无关：
+ * 1.被解码器放行的帧，直接使用解码线程回调的亮度统计
+ * 2.未被放行的帧（无解码器、已stopDecode或被调节器限速），每隔SAMPLE_INTERVAL帧在采样线程中统计一帧，不占用相机线程
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+class BrightnessFeedback {
+
+    /**
+     * 回馈间隔帧数
+     */
+    static final int FEEDBACK_INTERVAL = 20;
+
+    /**
+     * 未被解码器放行的帧的采样间隔帧数
+     */
+    static final int SAMPLE_INTERVAL = 4;
+
+    private float mBrightnessTotal;
+    private int mSampleCount;
+    private int mFrameCount;
+    private int mUnsampledFrameCount;
+
+    /**
+     * 采样线程是否正在统计，同一时间只统计一帧
+     */
+    private boolean isSampling;
+
+    private ThreadPoolExecutor mSampleExecutor;
+
+    /**
+     * 记录相机输出了一帧，在相机线程调用，满FEEDBACK_INTERVAL帧且已有采样时发送消息
+     *
+     * @param handler 相机所在线程的Handler，为null时只记录
+     */
+    synchronized void countFrame(Handler handler) {
+        mFrameCount++;
+        mUnsampledFrameCount++;
+        dispatchBrightness(handler);
+    }
+
+    /**
+     * 记录一帧的亮度统计，在解码线程或采样线程调用
+     *
+     * @param handler 相机所在线程的Handler，为null时只记录
+     */
+    synchronized void record(FrameStatistics statistics, Handler handler) {
+        mBrightnessTotal += statistics.getMean();
+        mSampleCount++;
+        dispatchBrightness(handler);
+    }
+
+    /**
+     * 满FEEDBACK_INTERVAL帧时发送HANDLER_CHANGED_BRIGHTNESS消息，arg1为平均亮度
+     */
+    private void dispatchBrightness(Handler handler) {
+        if (mFrameCount < FEEDBACK_INTERVAL || mSampleCount == 0) {
+            return;
+        }
+        int brightness = Math.round(mBrightnessTotal / mSampleCount);
+        mBrightnessTotal = 0;
+        mSampleCount = 0;
+        mFrameCount = 0;
+        if (handler != null) {
+            handler.sendMessage(handler.obtainMessage(CameraScanner.HANDLER_CHANGED_BRIGHTNESS, brightness, 0));
+        }
+    }
+
+    /**
+     * 未被解码器放行的当前帧是否需要采样，NewCameraScanner据此决定是否读取GPU
+     */
+    synchronized boolean isSampleRequired() {
+        return !isSampling && mUnsampledFrameCount >= SAMPLE_INTERVAL;
+    }
+
+    /**
+     * 在采样线程中统计未被解码器放行的帧
+     *
+     * @param bufferPool frameData所属的缓冲池，统计完成后归还，可为null
+     * @return 未采样时返回false，由调用方自行处理frameData
+     */
+    boolean trySample(final byte[] frameData, final int width, final int height, final RectF clipRectRatio,
+                      final Handler handler, final FrameBufferPool bufferPool) {
+        if (!startSample()) {
+            return false;
+        }
+        getSampleExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int[] rect = getStatisticsRect(width, height, clipRectRatio);
+                    if (rect != null) {
+                        record(FrameStatistics.compute(frameData, width, rect[0], rect[1], rect[2], rect[3]), handler);
+                    }
+                } finally {
+                    if (bufferPool != null) {
+                        bufferPool.recycle(frameData);
+                    }
+                    finishSample();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 在采样线程中统计未被解码器放行的帧
+     *
+     * @param releaseListener 统计完成后回调，可为null
+     * @return 未采样时返回false，由调用方自行处理frameData
+     */
+    boolean trySample(final ByteBuffer frameData, final int width, final int height, final RectF clipRectRatio,
+                      final Handler handler, final GraphicDecoder.BufferReleaseListener releaseListener) {
+        if (!startSample()) {
+            return false;
+        }
+        getSampleExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int[] rect = getStatisticsRect(width, height, clipRectRatio);
+                    if (rect != null) {
+                        record(FrameStatistics.compute(frameData, width, rect[0], rect[1], rect[2], rect[3]), handler);
+                    }
+                } finally {
+                    if (releaseListener != null) {
+                        releaseListener.onBufferReleased(frameData);
+                    }
+                    finishSample();
+                }
+            }
+        });
+        return true;
+    }
+
+    private synchronized boolean startSample() {
+        if (!isSampleRequired()) {
+            return false;
+        }
+        isSampling = true;
+        mUnsampledFrameCount = 0;
+        return true;
+    }
+
+    private synchronized void finishSample() {
+        isSampling = false;
+    }
+
+    /**
+     * 识别区域{left, top, width, height}，与解码器统计的区域一致，宽或高小于2时返回null
+     */
+    private static int[] getStatisticsRect(int width, int height, RectF clipRectRatio) {
+        int[] cropRect = clipRectRatio == null ? new int[4]
+                : FrameUtils.getCropRect(width, height, clipRectRatio.left, clipRectRatio.top, clipRectRatio.right, clipRectRatio.bottom, null);
+        int left = Math.max(0, cropRect[0]);
+        int top = Math.max(0, cropRect[1]);
+        int right = cropRect[2] > 0 ? Math.min(width, cropRect[0] + cropRect[2]) : width;
+        int bottom = cropRect[3] > 0 ? Math.min(height, cropRect[1] + cropRect[3]) : height;
+        if (right - left < 2 || bottom - top < 2) {
+            return null;
+        }
+        cropRect[0] = left;
+        cropRect[1] = top;
+        cropRect[2] = right - left;
+        cropRect[3] = bottom - top;
+        return cropRect;
+    }
+
+    /**
+     * 获取采样线程，空闲时线程自动退出
+     */
+    private synchronized ThreadPoolExecutor getSampleExecutor() {
+        if (mSampleExecutor == null) {
+            mSampleExecutor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "BrightnessFeedback-sample");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            mSampleExecutor.allowCoreThreadTimeOut(true);
+        }
+        return mSampleExecutor;
+    }
+
+    /**
+     * 清空未满一个间隔的记录
+     */
+    synchronized void reset() {
+        mBrightnessTotal = 0;
+        mSampleCount = 0;
+        mFrameCount = 0;
+        mUnsampledFrameCount = 0;
+    }
+
+}
@@ -50,6 +50,16 @@ public interface CameraScanner {
      */
     int HANDLER_CHANGED_BRIGHTNESS = 90001;
 
+    /**
+     * 自动开关闪光灯
+     */
+    int HANDLER_AUTO_FLASH = 90002;
+
+    /**
+     * 自动调节曝光补偿
+     */
+    int HANDLER_AUTO_EXPOSURE = 90003;
+
     /**
      * 开启相机
      */
@@ -61,12 +71,12 @@ public interface CameraScanner {
     void closeCamera();
 
     /**
-     * 打开闪光灯
+     * 打开闪光灯，设置了AutoExposureController时同步通知控制器
      */
     void openFlash();
 
     /**
-     * 关闭闪光灯
+     * 关闭闪光灯，设置了AutoExposureController时同步通知控制器
      */
     void closeFlash();
 
@@ -75,6 +85,17 @@ public interface CameraScanner {
      */
     boolean isFlashOpened();
 
+    /**
+     * 设置曝光补偿，单位EV，超出相机支持的范围时取最近的支持值，0为不补偿
+     * 注意：关闭相机后恢复为0
+     */
+    void setExposureCompensation(float exposureCompensation);
+
+    /**
+     * 设置自动闪光灯及曝光补偿控制器，为null时不自动调节，调节依据图像解码器回调的亮度统计及解码结果
+     */
+    void setAutoExposureController(AutoExposureController controller);
+
     void detach();
 
     /**
@@ -98,7 +119,7 @@ public interface CameraScanner {
     void setGraphicDecoder(GraphicDecoder graphicDecoder);
 
     /**
-     * 设置是否启用亮度回馈
+     * 设置是否启用亮度回馈，亮度优先取自解码器对预览帧的亮度统计，未交给解码器的帧在后台线程抽样统计，无需设置图像解码器
      */
     void enableBrightnessFeedback(boolean enable);
 
@@ -136,9 +157,9 @@ public interface CameraScanner {
         void cameraDisconnected();
 
         /**
-         * 亮度变化，每20帧更新一次
+         * 亮度变化，相机每输出20帧更新一次，与是否解码无关
          *
-         * @param brightness 20帧图像的平均亮度值，取值范围0-255
+         * @param brightness 20帧中采样帧的识别区域平均亮度值，取值范围0-255
          */
         void cameraBrightnessChanged(int brightness);
     }
@@ -0,0 +1,217 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多帧共识过滤器，用于过滤预览帧中的误读（如EAN-13解析出错误条码）
+ * 1.校验码：EAN-13/ISBN-13/UPC-A/EAN-8重新计算模10校验位，ISBN-10计算模11校验位，不通过的直接丢弃
+ * 2.精度：精度不低于该类型的即时确认精度时立即确认
+ * 3.多帧一致：精度不足时，同一条码在时间窗口内被识别到指定帧数后确认
+ * 默认规则：QRCODE、PDF417、CODE128、CODE93、DATABAR自带纠错或校验，单帧即确认；EAN/UPC系列精度较高时单帧确认，否则需2帧一致；
+ * I25、CODABAR、CODE39校验较弱，需3帧一致
+ * 注意：非线程安全，应在主线程中使用
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class ConsensusFilter {
+
+    /**
+     * 默认的时间窗口，单位毫秒
+     */
+    public static final long DEFAULT_WINDOW = 1000;
+
+    /**
+     * 未设置规则的条码类型所用的规则
+     */
+    private static final int[] DEFAULT_RULE = {10, 3};
+
+    /**
+     * 各条码类型的规则{即时确认精度, 确认所需帧数}
+     */
+    private final SparseArray<int[]> mRuleArray = new SparseArray<>();
+
+    /**
+     * 等待确认的条码
+     */
+    private final List<Candidate> mCandidateList = new ArrayList<>();
+
+    private long mWindow = DEFAULT_WINDOW;
+
+    public ConsensusFilter() {
+        setRule(ZBarDecoder.QRCODE, 1, 1);
+        setRule(ZBarDecoder.PDF417, 1, 1);
+        setRule(ZBarDecoder.CODE128, 1, 1);
+        setRule(ZBarDecoder.CODE93, 1, 1);
+        setRule(ZBarDecoder.DATABAR, 1, 1);
+        setRule(ZBarDecoder.DATABAR_EXP, 1, 1);
+        setRule(ZBarDecoder.EAN13, 10, 2);
+        setRule(ZBarDecoder.ISBN13, 10, 2);
+        setRule(ZBarDecoder.UPCA, 10, 2);
+        setRule(ZBarDecoder.EAN8, 10, 2);
+        setRule(ZBarDecoder.ISBN10, 10, 2);
+        setRule(ZBarDecoder.UPCE, 20, 3);
+        setRule(ZBarDecoder.I25, 20, 3);
+        setRule(ZBarDecoder.CODABAR, 20, 3);
+        setRule(ZBarDecoder.CODE39, 20, 3);
+    }
+
+    /**
+     * 设置指定条码类型的确认规则
+     *
+     * @param symbolType     条码类型，取值见ZBarDecoder中的常量
+     * @param minQuality     即时确认精度，单帧精度不低于该值时立即确认，不大于0表示不进行即时确认
+     * @param requiredFrames 精度不足时确认所需的帧数，不小于1
+     */
+    public void setRule(int symbolType, int minQuality, int requiredFrames) {
+        mRuleArray.put(symbolType, new int[]{minQuality <= 0 ? Integer.MAX_VALUE : minQuality, Math.max(1, requiredFrames)});
+    }
+
+    /**
+     * 设置多帧一致的时间窗口，超过该时间未再次识别到的条码重新计数，默认为1000毫秒
+     */
+    public void setWindow(long window) {
+        this.mWindow = Math.max(0, window);
+    }
+
+    /**
+     * 清空等待确认的条码，如重新开始扫码时
+     */
+    public void reset() {
+        mCandidateList.clear();
+    }
+
+    /**
+     * 过滤一帧的解码结果，返回已确认的条码索引，没有则返回-1
+     * 同一帧中有多个条码时，返回第一个已确认的条码，其余条码同样参与计数
+     */
+    public int filter(ScanResult scanResult) {
+        int confirmedIndex = -1;
+        int symbolCount = scanResult.getSymbolCount();
+        for (int index = 0; index < symbolCount; index++) {
+            if (accept(scanResult, index) && confirmedIndex < 0) {
+                confirmedIndex = index;
+            }
+        }
+        return confirmedIndex;
+    }
+
+    /**
+     * 判断一帧中的指定条码是否已确认，精度不足时计入多帧一致的计数
+     * 注意：同一帧中的每个条码只能调用一次
+     */
+    public boolean accept(ScanResult scanResult, int index) {
+        if (scanResult.getDataLength(index) <= 0) return false;
+        int type = scanResult.getType(index);
+        if (!isChecksumValid(scanResult, index, type)) return false;
+        long now = SystemClock.uptimeMillis();
+        //移除超出时间窗口的条码
+        for (int i = mCandidateList.size() - 1; i >= 0; i--) {
+            if (now - mCandidateList.get(i).mLastTime > mWindow) {
+                mCandidateList.remove(i);
+            }
+        }
+        int[] rule = mRuleArray.get(type, DEFAULT_RULE);
+        Candidate candidate = findCandidate(scanResult, index, type);
+        if (scanResult.getQuality(index) < rule[0]) {
+            if (candidate == null) {
+                candidate = new Candidate(type, scanResult.getDataBytes(index));
+                mCandidateList.add(candidate);
+            }
+            candidate.mFrameCount++;
+            candidate.mLastTime = now;
+            if (candidate.mFrameCount < rule[1]) return false;
+        }
+        if (candidate != null) {
+            mCandidateList.remove(candidate);
+        }
+        return true;
+    }
+
+    private Candidate findCandidate(ScanResult scanResult, int index, int type) {
+        for (Candidate candidate : mCandidateList) {
+            if (candidate.mType == type && scanResult.dataEquals(index, candidate.mData)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 校验条码数据，没有校验位或无法校验的类型返回true
+     */
+    static boolean isChecksumValid(ScanResult scanResult, int index, int type) {
+        int dataLength = scanResult.getDataLength(index);
+        switch (type) {
+            case ZBarDecoder.EAN13:
+            case ZBarDecoder.ISBN13: {
+                return dataLength == 13 && isMod10Valid(scanResult, index, dataLength);
+            }
+            case ZBarDecoder.UPCA: {
+                return dataLength == 12 && isMod10Valid(scanResult, index, dataLength);
+            }
+            case ZBarDecoder.EAN8: {
+                return dataLength == 8 && isMod10Valid(scanResult, index, dataLength);
+            }
+            case ZBarDecoder.ISBN10: {
+                return dataLength == 10 && isMod11Valid(scanResult, index);
+            }
+            default: {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * EAN/UPC模10校验：自右向左，校验位权重为1，其余位依次为3、1交替
+     */
+    private static boolean isMod10Valid(ScanResult scanResult, int index, int dataLength) {
+        int sum = 0;
+        for (int i = 0; i < dataLength; i++) {
+            int digit = scanResult.getDataByte(index, dataLength - 1 - i) - '0';
+            if (digit < 0 || digit > 9) return false;
+            sum += (i & 1) == 0 ? digit : digit * 3;
+        }
+        return sum % 10 == 0;
+    }
+
+    /**
+     * ISBN-10模11校验：第i位（从1开始）权重为i，校验位可为X
+     */
+    private static boolean isMod11Valid(ScanResult scanResult, int index) {
+        int sum = 0;
+        for (int i = 0; i < 10; i++) {
+            int data = scanResult.getDataByte(index, i);
+            int digit;
+            if (data >= '0' && data <= '9') {
+                digit = data - '0';
+            } else if (i == 9 && (data == 'X' || data == 'x')) {
+                digit = 10;
+            } else {
+                return false;
+            }
+            sum += digit * (i + 1);
+        }
+        return sum % 11 == 0;
+    }
+
+    private static class Candidate {
+
+        private final int mType;
+        private final byte[] mData;
+        private int mFrameCount;
+        private long mLastTime;
+
+        Candidate(int type, byte[] data) {
+            this.mType = type;
+            this.mData = data;
+        }
+    }
+
+}
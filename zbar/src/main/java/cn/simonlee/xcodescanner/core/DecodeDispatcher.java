@@ -0,0 +1,408 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.os.Handler;
+import android.os.Message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ZBarDecoder的解码调度，负责把任务交给解码线程并把结果按顺序送回主线程
+ * 1.解码线程池及解码工作单元：每个解码线程使用各自的ZBarScanner，数量不超过解码线程数，在子线程中延迟创建
+ * 2.预览帧信箱：只保存最新的一帧，新帧直接覆盖尚未被取走的旧帧，解码线程总是取到最新的帧
+ * 3.重排缓冲：回调DecodeListener的任务按提交顺序分配帧序号，多线程解码时结果仍按帧序号顺序发送到主线程
+ * DecodeFuture任务不分配帧序号，直接提交到线程池，耗时的图片解码不会阻塞其后预览帧结果的回调
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+class DecodeDispatcher {
+
+    /**
+     * 全部解码工作单元，数量不超过mWorkerCount
+     */
+    private final List<ZBarScanner> mScannerList = new ArrayList<>();
+
+    /**
+     * 空闲的解码工作单元
+     */
+    private final ConcurrentLinkedQueue<ZBarScanner> mIdleScannerQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 是否已detach，由mScannerList同步
+     */
+    private boolean isDetached;
+
+    /**
+     * 解码线程数，每个线程持有各自的ImageScanner&Image
+     */
+    private final int mWorkerCount;
+
+    /**
+     * 指定识别的条码类型
+     */
+    private volatile int[] mSymbolTypeArray;
+
+    /**
+     * 帧序号，按任务提交顺序递增
+     */
+    private long mSubmitSequence;
+
+    /**
+     * 下一个待回调的帧序号
+     */
+    private long mDeliverSequence;
+
+    /**
+     * 已解码完成但尚未轮到回调的结果，保证多线程解码时按帧顺序回调。value为null表示该帧无需回调
+     */
+    private final Map<Long, Message> mPendingResultMap = new HashMap<>();
+
+    /**
+     * 预览帧信箱，只保存最新的一帧
+     */
+    private final AtomicReference<Task> mFrameMailbox = new AtomicReference<>();
+
+    /**
+     * 丢弃的帧数，即解码关闭或解码器已detach时传入的帧
+     */
+    private final AtomicLong mDroppedFrameCount = new AtomicLong();
+
+    /**
+     * 被覆盖的帧数，即在信箱中等待时被更新的帧替换的帧
+     */
+    private final AtomicLong mSupersededFrameCount = new AtomicLong();
+
+    /**
+     * 从信箱中取出最新的帧进行解码，信箱由空变满时提交一次
+     */
+    private final Runnable mMailboxRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Task task;
+            synchronized (mPendingResultMap) {//取帧与分配帧序号须同步，保证帧序号与帧的先后顺序一致
+                task = mFrameMailbox.getAndSet(null);
+                if (task == null) {//已被其他线程取走或被清空
+                    return;
+                }
+                task.mSequence = mSubmitSequence++;
+            }
+            task.run();
+        }
+    };
+
+    private Handler mHandler;
+
+    /**
+     * 在主线程执行，用于未指定Executor的DecodeFuture回调，detach后不再执行
+     */
+    private final Executor mMainExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            synchronized (mPendingResultMap) {
+                if (mHandler != null) {
+                    mHandler.post(command);
+                }
+            }
+        }
+    };
+
+    private volatile ThreadPoolExecutor mExecutorService;
+    private ArrayBlockingQueue<Runnable> mArrayBlockingQueue;
+
+    /**
+     * @param workerCount     解码线程数
+     * @param symbolTypeArray 指定识别的条码类型，为null时使用默认类型
+     * @param callback        主线程消息的处理，解码结果以HANDLER_DECODE_COMPLETE发送
+     */
+    DecodeDispatcher(int workerCount, int[] symbolTypeArray, Handler.Callback callback) {
+        this.mWorkerCount = workerCount;
+        this.mSymbolTypeArray = symbolTypeArray;
+        this.mHandler = new Handler(callback);
+        mArrayBlockingQueue = new ArrayBlockingQueue<>(5);//等待队列最多插入5条任务
+        mExecutorService = new ThreadPoolExecutor(mWorkerCount, mWorkerCount, 0L, TimeUnit.MILLISECONDS, mArrayBlockingQueue);
+        //ImageScanner的构造方法中含有System.loadLibrary()，要避免在主线程中进行IO操作
+        mExecutorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                ZBarScanner scanner = obtainScanner();
+                if (scanner != null) {
+                    mIdleScannerQueue.offer(scanner);
+                }
+            }
+        });
+    }
+
+    /**
+     * 获取一个空闲的解码工作单元，不足mWorkerCount时创建新实例，已detach时返回null
+     * 注意：须在子线程中调用，使用完毕后通过recycleScanner()归还
+     */
+    ZBarScanner obtainScanner() {
+        ZBarScanner scanner = mIdleScannerQueue.poll();
+        if (scanner == null) {
+            synchronized (mScannerList) {
+                if (!isDetached && mScannerList.size() < mWorkerCount) {
+                    scanner = new ZBarScanner(mSymbolTypeArray);
+                    mScannerList.add(scanner);
+                }
+            }
+        }
+        return scanner;
+    }
+
+    /**
+     * 归还解码工作单元
+     */
+    void recycleScanner(ZBarScanner scanner) {
+        if (scanner != null) {
+            mIdleScannerQueue.offer(scanner);
+        }
+    }
+
+    /**
+     * 指定解码类型，已创建的解码工作单元同步更新
+     */
+    void setCodeTypes(int[] symbolTypeArray) {
+        this.mSymbolTypeArray = symbolTypeArray;
+        synchronized (mScannerList) {
+            for (ZBarScanner scanner : mScannerList) {
+                scanner.setCodeTypes(symbolTypeArray);
+            }
+        }
+    }
+
+    /**
+     * 是否尚未detach
+     */
+    boolean isAttached() {
+        return mExecutorService != null;
+    }
+
+    /**
+     * 主线程的Handler，已detach时为null
+     */
+    Handler getHandler() {
+        return mHandler;
+    }
+
+    /**
+     * 在主线程执行的Executor，detach后不再执行
+     */
+    Executor getMainExecutor() {
+        return mMainExecutor;
+    }
+
+    /**
+     * 将预览帧放入信箱，无锁操作，可在相机线程直接调用
+     * 信箱中尚有未被取走的旧帧时直接覆盖，否则提交一次取帧任务
+     */
+    void postFrame(Task task) {
+        task.mQueuedTime = System.nanoTime();
+        Task staleTask = mFrameMailbox.getAndSet(task);
+        if (staleTask != null) {//旧帧尚未开始解码，已有取帧任务在等待，无需重复提交
+            mSupersededFrameCount.incrementAndGet();
+            ScannerMetrics.getInstance().increment(ScannerMetrics.COUNTER_SUPERSEDED_FRAME);
+            staleTask.recycleFrameBuffer();
+            return;
+        }
+        ThreadPoolExecutor executorService = mExecutorService;
+        try {
+            if (executorService == null) {
+                throw new RejectedExecutionException();
+            }
+            executorService.execute(mMailboxRunnable);
+        } catch (RejectedExecutionException e) {//已detach或等待队列已满
+            Task rejectedTask = mFrameMailbox.getAndSet(null);
+            if (rejectedTask != null) {
+                countDroppedFrame();
+                rejectedTask.recycleFrameBuffer();
+            }
+        }
+    }
+
+    void countDroppedFrame() {
+        mDroppedFrameCount.incrementAndGet();
+        ScannerMetrics.getInstance().increment(ScannerMetrics.COUNTER_DROPPED_FRAME);
+    }
+
+    long getDroppedFrameCount() {
+        return mDroppedFrameCount.get();
+    }
+
+    long getSupersededFrameCount() {
+        return mSupersededFrameCount.get();
+    }
+
+    /**
+     * 为回调DecodeListener的任务分配帧序号并提交到线程池，被拒绝时释放帧序号并返回false
+     */
+    synchronized boolean submitTask(Task task) {
+        synchronized (mPendingResultMap) {
+            task.mSequence = mSubmitSequence++;
+        }
+        task.mQueuedTime = System.nanoTime();
+        try {
+            if (mExecutorService == null) {
+                throw new RejectedExecutionException();
+            }
+            mExecutorService.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {//已detach或等待队列已满，释放帧序号，防止后续结果无法回调
+            deliverResult(task.mSequence, null);
+            return false;
+        }
+    }
+
+    /**
+     * 直接提交DecodeFuture任务，不分配帧序号，已detach时放弃该任务，等待队列已满时该任务失败
+     */
+    synchronized void submitFuture(Task task) {
+        if (mExecutorService == null) {//已detach
+            task.mFuture.abandon();
+            return;
+        }
+        task.mQueuedTime = System.nanoTime();
+        try {
+            mExecutorService.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.mFuture.fail(new RejectedExecutionException("decode queue is full"));
+        }
+    }
+
+    /**
+     * 将被取消的DecodeFuture任务移出等待队列，任务已开始解码时由其在安全点自行放弃
+     */
+    synchronized void removeTask(Runnable task) {
+        ThreadPoolExecutor executorService = mExecutorService;
+        if (executorService != null && executorService.remove(task)) {
+            ((Task) task).recycleFrameBuffer();
+        }
+    }
+
+    /**
+     * 清空等待队列及信箱，被移除的任务不再回调，DecodeFuture任务保留在队列中
+     * 注意：须先清空等待队列再清空信箱，否则信箱中可能残留没有取帧任务的帧
+     */
+    synchronized void clearPendingTask() {
+        if (mArrayBlockingQueue != null) {
+            List<Runnable> runnableList = new ArrayList<>();
+            mArrayBlockingQueue.drainTo(runnableList);
+            for (Runnable runnable : runnableList) {
+                if (runnable instanceof Task) {
+                    Task task = (Task) runnable;
+                    if (task.mFuture != null) {//由调用方自行取消，按原顺序放回
+                        mArrayBlockingQueue.offer(task);
+                        continue;
+                    }
+                    task.recycleFrameBuffer();
+                    deliverResult(task.mSequence, null);
+                }
+            }
+        }
+        clearFrameMailbox();
+    }
+
+    /**
+     * 清空信箱，信箱中的帧尚未分配帧序号，无需回调
+     */
+    private void clearFrameMailbox() {
+        Task task = mFrameMailbox.getAndSet(null);
+        if (task != null) {
+            countDroppedFrame();
+            task.recycleFrameBuffer();
+        }
+    }
+
+    /**
+     * 按帧序号顺序发送解码结果，序号靠后的结果会等待前面的帧解码完成
+     *
+     * @param sequence 帧序号
+     * @param message  解码结果，为null表示该帧无需回调
+     */
+    void deliverResult(long sequence, Message message) {
+        synchronized (mPendingResultMap) {
+            mPendingResultMap.put(sequence, message);
+            while (mPendingResultMap.containsKey(mDeliverSequence)) {
+                Message pendingMessage = mPendingResultMap.remove(mDeliverSequence++);
+                if (pendingMessage != null && mHandler != null) {
+                    mHandler.sendMessage(pendingMessage);
+                }
+            }
+        }
+    }
+
+    /**
+     * 关闭线程池并释放解码工作单元，等待中的DecodeFuture任务被放弃，尚未回调的结果不再回调
+     */
+    void detach() {
+        synchronized (this) {
+            if (mExecutorService != null) {
+                for (Runnable runnable : mExecutorService.shutdownNow()) {
+                    if (runnable instanceof Task && ((Task) runnable).mFuture != null) {
+                        ((Task) runnable).mFuture.abandon();
+                    }
+                }
+                mExecutorService = null;
+            }
+            if (mArrayBlockingQueue != null) {
+                mArrayBlockingQueue.clear();
+                mArrayBlockingQueue = null;
+            }
+            clearFrameMailbox();
+        }
+        synchronized (mPendingResultMap) {
+            if (mHandler != null) {
+                mHandler.removeCallbacksAndMessages(null);
+                mHandler = null;
+            }
+            mPendingResultMap.clear();
+        }
+        synchronized (mScannerList) {
+            isDetached = true;
+            for (ZBarScanner scanner : mScannerList) {
+                scanner.destroy();
+            }
+            mScannerList.clear();
+            mIdleScannerQueue.clear();
+        }
+    }
+
+    /**
+     * 解码任务，run()结束前须通过deliverResult()释放帧序号，DecodeFuture任务须结束该DecodeFuture
+     */
+    abstract static class Task implements Runnable {
+
+        /**
+         * 帧序号，DecodeFuture任务不分配
+         */
+        long mSequence;
+
+        /**
+         * 进入等待的时间，单位纳秒
+         */
+        long mQueuedTime;
+
+        /**
+         * 不为null时解码结果交给该任务，不回调DecodeListener
+         */
+        DecodeFuture mFuture;
+
+        /**
+         * 将帧数据归还缓冲池，或通知调用方释放直接缓冲区
+         */
+        abstract void recycleFrameBuffer();
+    }
+
+}
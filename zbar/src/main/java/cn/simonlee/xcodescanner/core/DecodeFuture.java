@@ -0,0 +1,184 @@
+package cn.simonlee.xcodescanner.core;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 图片解码任务，由ZBarDecoder.decodeForResult()返回，可取消、限时等待或通过回调获取结果
+ * 1.取消等待中的任务会将其移出任务队列；取消解码中的任务会在下一个安全点（分辨率级别、分块、区域之间）放弃解码，不会中断线程
+ * 2.解码结果不会被回收复用，可长期持有；未识别到条码时getSymbolCount()为0
+ * 3.被解码器取消（如detach()）时get()抛出CancellationException，回调onDecodeFailed()
+ * 注意：get()会阻塞调用线程，不要在主线程中调用
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class DecodeFuture implements Future<ScanResult> {
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_COMPLETED = 1;
+    private static final int STATE_FAILED = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private final ZBarDecoder mDecoder;
+    private final Runnable mTask;
+    private final Executor mExecutor;
+    private final Callback mCallback;
+
+    private int mState = STATE_PENDING;
+    private ScanResult mScanResult;
+    private Throwable mThrowable;
+
+    /**
+     * @param task     解码任务，取消时从解码器的任务队列中移除
+     * @param executor 回调所在的线程，callback为null时不使用
+     */
+    DecodeFuture(ZBarDecoder decoder, Runnable task, Executor executor, Callback callback) {
+        this.mDecoder = decoder;
+        this.mTask = task;
+        this.mExecutor = executor;
+        this.mCallback = callback;
+    }
+
+    /**
+     * 取消解码，任务已结束时返回false
+     * 取消后不再回调，已识别出的结果会被回收
+     *
+     * @param mayInterruptIfRunning 不使用，解码中的任务总是在下一个安全点放弃
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (mState != STATE_PENDING) {
+                return false;
+            }
+            mState = STATE_CANCELLED;
+            notifyAll();
+        }
+        mDecoder.removeTask(mTask);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mState == STATE_CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mState != STATE_PENDING;
+    }
+
+    @Override
+    public synchronized ScanResult get() throws InterruptedException, ExecutionException {
+        while (mState == STATE_PENDING) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized ScanResult get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while (mState == STATE_PENDING) {
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return getResult();
+    }
+
+    private ScanResult getResult() throws ExecutionException {
+        if (mState == STATE_CANCELLED) {
+            throw mThrowable instanceof CancellationException ? (CancellationException) mThrowable : new CancellationException();
+        }
+        if (mState == STATE_FAILED) {
+            throw new ExecutionException(mThrowable);
+        }
+        return mScanResult;
+    }
+
+    /**
+     * 解码完成，已取消时回收该结果
+     */
+    void complete(ScanResult scanResult) {
+        synchronized (this) {
+            if (mState != STATE_PENDING) {
+                scanResult.recycle();
+                return;
+            }
+            mState = STATE_COMPLETED;
+            mScanResult = scanResult;
+            notifyAll();
+        }
+        dispatchCallback();
+    }
+
+    /**
+     * 解码失败，如任务被线程池拒绝
+     */
+    void fail(Throwable throwable) {
+        finish(STATE_FAILED, throwable);
+    }
+
+    /**
+     * 被解码器取消，如detach()或解码器已不可用，与调用方主动取消不同，会回调onDecodeFailed()
+     */
+    void abandon() {
+        finish(STATE_CANCELLED, new CancellationException("decoder detached"));
+    }
+
+    private void finish(int state, Throwable throwable) {
+        synchronized (this) {
+            if (mState != STATE_PENDING) {
+                return;
+            }
+            mState = state;
+            mThrowable = throwable;
+            notifyAll();
+        }
+        dispatchCallback();
+    }
+
+    private void dispatchCallback() {
+        if (mCallback == null || mExecutor == null) return;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ScanResult scanResult;
+                Throwable throwable;
+                synchronized (DecodeFuture.this) {
+                    scanResult = mScanResult;
+                    throwable = mThrowable;
+                }
+                if (throwable == null) {
+                    mCallback.onDecodeComplete(scanResult);
+                } else {
+                    mCallback.onDecodeFailed(throwable);
+                }
+            }
+        });
+    }
+
+    public interface Callback {
+        /**
+         * 解码完成，无论是否识别到条码
+         */
+        void onDecodeComplete(ScanResult scanResult);
+
+        /**
+         * 解码失败或被解码器取消，调用方主动取消时不会回调
+         */
+        void onDecodeFailed(Throwable throwable);
+    }
+
+}
@@ -0,0 +1,230 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 解码频率调节器，根据实测的解码耗时决定预览帧的放行间隔
+ * 1.统计解码耗时的滑动平均值及P95，放行间隔与解码能力相匹配，避免相机送入无法及时处理的帧
+ * 2.设备温度升高时成倍拉长放行间隔
+ * 3.最近识别到条码时临时恢复全速，尽快完成识别
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class DecodeGovernor {
+
+    /**
+     * 温度状态，取值与PowerManager.THERMAL_STATUS_*一致
+     */
+    public static final int THERMAL_STATUS_NONE = 0;
+    public static final int THERMAL_STATUS_LIGHT = 1;
+    public static final int THERMAL_STATUS_MODERATE = 2;
+    public static final int THERMAL_STATUS_SEVERE = 3;
+    public static final int THERMAL_STATUS_CRITICAL = 4;
+    public static final int THERMAL_STATUS_EMERGENCY = 5;
+    public static final int THERMAL_STATUS_SHUTDOWN = 6;
+
+    /**
+     * 统计P95所用的样本个数
+     */
+    private static final int SAMPLE_SIZE = 32;
+
+    /**
+     * 滑动平均的平滑系数
+     */
+    private static final float EMA_ALPHA = 0.2F;
+
+    /**
+     * 识别到条码后全速解码的持续时间，单位毫秒
+     */
+    private static final long BOOST_DURATION = 1500;
+
+    /**
+     * 最大放行间隔，单位毫秒，防止异常耗时导致长时间不解码
+     */
+    private static final long MAX_FRAME_INTERVAL = 1000;
+
+    /**
+     * 解码线程数，多线程时放行间隔相应缩短
+     */
+    private final int mWorkerCount;
+
+    /**
+     * 最近的解码耗时样本，循环写入，单位微秒
+     */
+    private final long[] mSampleArray = new long[SAMPLE_SIZE];
+    private final long[] mSortArray = new long[SAMPLE_SIZE];
+    private int mSampleIndex;
+    private int mSampleCount;
+
+    /**
+     * 解码耗时的滑动平均值，单位微秒
+     */
+    private float mAverageTime;
+
+    /**
+     * 解码耗时的P95，单位微秒
+     */
+    private long mPercentileTime;
+
+    /**
+     * 预览帧的放行间隔，单位毫秒
+     */
+    private volatile long mFrameInterval;
+
+    /**
+     * 上一次放行的时间
+     */
+    private volatile long mLastAdmitTime;
+
+    /**
+     * 全速解码的截止时间
+     */
+    private volatile long mBoostDeadline;
+
+    private volatile int mThermalStatus = THERMAL_STATUS_NONE;
+
+    private volatile boolean isEnabled = true;
+
+    /**
+     * 被跳过的帧数
+     */
+    private final AtomicLong mSkippedFrameCount = new AtomicLong();
+
+    /**
+     * @param workerCount 解码线程数
+     */
+    public DecodeGovernor(int workerCount) {
+        this.mWorkerCount = Math.max(1, workerCount);
+    }
+
+    /**
+     * 是否放行当前预览帧，在相机线程调用
+     */
+    public boolean shouldDecode() {
+        if (!isEnabled) {
+            return true;
+        }
+        long curTime = SystemClock.uptimeMillis();
+        if (curTime < mBoostDeadline || curTime - mLastAdmitTime >= mFrameInterval) {
+            mLastAdmitTime = curTime;
+            return true;
+        }
+        mSkippedFrameCount.incrementAndGet();
+        ScannerMetrics.getInstance().increment(ScannerMetrics.COUNTER_SKIPPED_FRAME);
+        return false;
+    }
+
+    /**
+     * 记录一次解码耗时，在解码线程调用
+     *
+     * @param decodeTime 解码耗时，单位纳秒
+     */
+    public synchronized void recordDecodeTime(long decodeTime) {
+        long sample = Math.max(0, decodeTime / 1000);
+        mAverageTime = mSampleCount == 0 ? sample : mAverageTime + EMA_ALPHA * (sample - mAverageTime);
+        mSampleArray[mSampleIndex] = sample;
+        mSampleIndex = (mSampleIndex + 1) % SAMPLE_SIZE;
+        if (mSampleCount < SAMPLE_SIZE) {
+            mSampleCount++;
+        }
+        System.arraycopy(mSampleArray, 0, mSortArray, 0, mSampleCount);
+        Arrays.sort(mSortArray, 0, mSampleCount);
+        mPercentileTime = mSortArray[Math.min(mSampleCount - 1, mSampleCount * 95 / 100)];
+        updateFrameInterval();
+    }
+
+    /**
+     * 通知已接近识别成功（如识别到条码但尚未确认），此后一段时间内全速放行预览帧
+     */
+    public void notifyCandidate() {
+        mBoostDeadline = SystemClock.uptimeMillis() + BOOST_DURATION;
+    }
+
+    /**
+     * 设置设备温度状态，可通过PowerManager.OnThermalStatusChangedListener(API29)或电池温度获得
+     *
+     * @param thermalStatus 取值见THERMAL_STATUS_*
+     */
+    public synchronized void setThermalStatus(int thermalStatus) {
+        this.mThermalStatus = Math.max(THERMAL_STATUS_NONE, Math.min(thermalStatus, THERMAL_STATUS_SHUTDOWN));
+        updateFrameInterval();
+    }
+
+    public int getThermalStatus() {
+        return mThermalStatus;
+    }
+
+    /**
+     * 启用或关闭频率调节，关闭后放行全部预览帧，默认启用
+     */
+    public void setEnabled(boolean enabled) {
+        this.isEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * 根据解码耗时及温度状态计算放行间隔
+     * 样本不足时P95不可靠，使用滑动平均值
+     */
+    private void updateFrameInterval() {
+        long decodeTime = mSampleCount < SAMPLE_SIZE ? (long) mAverageTime : mPercentileTime;
+        long frameInterval = decodeTime / mWorkerCount / 1000;
+        switch (mThermalStatus) {
+            case THERMAL_STATUS_NONE:
+            case THERMAL_STATUS_LIGHT: {
+                break;
+            }
+            case THERMAL_STATUS_MODERATE: {
+                frameInterval = Math.max(frameInterval * 2, 100);
+                break;
+            }
+            case THERMAL_STATUS_SEVERE: {
+                frameInterval = Math.max(frameInterval * 4, 250);
+                break;
+            }
+            default: {
+                frameInterval = MAX_FRAME_INTERVAL;
+                break;
+            }
+        }
+        mFrameInterval = Math.min(frameInterval, MAX_FRAME_INTERVAL);
+    }
+
+    /**
+     * 当前放行间隔，单位毫秒
+     */
+    public long getFrameInterval() {
+        return mFrameInterval;
+    }
+
+    /**
+     * 解码耗时的滑动平均值，单位毫秒
+     */
+    public synchronized float getAverageDecodeTime() {
+        return mAverageTime / 1000F;
+    }
+
+    /**
+     * 解码耗时的P95，单位毫秒
+     */
+    public synchronized float getPercentileDecodeTime() {
+        return mPercentileTime / 1000F;
+    }
+
+    /**
+     * 被跳过的帧数
+     */
+    public long getSkippedFrameCount() {
+        return mSkippedFrameCount.get();
+    }
+
+}
@@ -0,0 +1,182 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+
+/**
+ * 预览帧的自适应扫描密度，密度即zbar扫描线的间隔像素数，数值越大扫描的行列越少
+ * 1.空闲：一段时间内未发现条码时，识别区域内使用粗密度扫描
+ * 2.跟踪：发现条码（包括未能解码的条码）后，只扫描其周围的区域，并按条码方向加密对应轴向的扫描线
+ * 3.丢失：跟踪区域连续多帧未发现条码时，识别区域内使用默认密度扫描，直到超时回到空闲
+ * 注意：zbar中Y_DENSITY为水平扫描线的行间隔，用于识别竖直条纹（方向为UP/DOWN）的一维码；X_DENSITY为竖直扫描线的列间隔
+ * 线程安全，可同时被多个解码线程使用
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class DensityController {
+
+    /**
+     * zbar的默认扫描密度
+     */
+    public static final int DEFAULT_DENSITY = ZBarScanner.DEFAULT_DENSITY;
+
+    /**
+     * 空闲时的默认密度
+     */
+    public static final int DEFAULT_COARSE_DENSITY = 8;
+
+    /**
+     * 跟踪时的默认密度
+     */
+    public static final int DEFAULT_FINE_DENSITY = 2;
+
+    /**
+     * 跟踪的默认超时时间，单位毫秒
+     */
+    public static final long DEFAULT_TRACK_TIMEOUT = 1000;
+
+    /**
+     * 跟踪区域连续未发现条码的最大帧数，超过后扫描整个识别区域
+     */
+    private static final int MAX_REGION_MISSES = 2;
+
+    /**
+     * 扫描参数{xDensity, yDensity, cropLeft, cropTop, cropWidth, cropHeight}的长度
+     */
+    static final int PARAMS_LENGTH = 6;
+
+    /**
+     * zbar条码方向
+     */
+    private static final int ORIENTATION_UP = 0;
+    private static final int ORIENTATION_RIGHT = 1;
+    private static final int ORIENTATION_DOWN = 2;
+    private static final int ORIENTATION_LEFT = 3;
+
+    private int mCoarseDensity = DEFAULT_COARSE_DENSITY;
+    private int mFineDensity = DEFAULT_FINE_DENSITY;
+    private long mTrackTimeout = DEFAULT_TRACK_TIMEOUT;
+
+    /**
+     * 最近一次发现条码的时间，及条码周围的区域、方向
+     */
+    private long mLastHitTime = Long.MIN_VALUE / 2;
+    private final Rect mRegion = new Rect();
+    private boolean hasRegion;
+    private int mOrientation = -1;
+    private boolean isMatrixCode;
+    private int mRegionMissCount;
+
+    private final Rect mBounds = new Rect();
+
+    /**
+     * 设置空闲时及跟踪时的密度，取值不小于1
+     */
+    public synchronized void setDensity(int coarseDensity, int fineDensity) {
+        this.mCoarseDensity = Math.max(1, coarseDensity);
+        this.mFineDensity = Math.max(1, fineDensity);
+    }
+
+    /**
+     * 设置跟踪的超时时间，超过该时间未发现条码时回到空闲，默认为1000毫秒
+     */
+    public synchronized void setTrackTimeout(long trackTimeout) {
+        this.mTrackTimeout = Math.max(0, trackTimeout);
+    }
+
+    /**
+     * 清空跟踪状态
+     */
+    public synchronized void reset() {
+        mLastHitTime = Long.MIN_VALUE / 2;
+        hasRegion = false;
+        mRegionMissCount = 0;
+    }
+
+    /**
+     * 计算本帧的扫描参数
+     *
+     * @param width    图像的宽
+     * @param height   图像的高
+     * @param cropRect 识别区域{left, top, width, height}，宽高为0时为整张图像
+     * @param params   用于接收结果{xDensity, yDensity, cropLeft, cropTop, cropWidth, cropHeight}
+     * @return 是否只扫描跟踪区域
+     */
+    synchronized boolean obtainScanParams(int width, int height, int[] cropRect, int[] params) {
+        int left = 0;
+        int top = 0;
+        int right = width;
+        int bottom = height;
+        if (cropRect[2] > 0 && cropRect[3] > 0) {
+            left = Math.max(0, cropRect[0]);
+            top = Math.max(0, cropRect[1]);
+            right = Math.min(width, cropRect[0] + cropRect[2]);
+            bottom = Math.min(height, cropRect[1] + cropRect[3]);
+        }
+        params[2] = cropRect[0];
+        params[3] = cropRect[1];
+        params[4] = cropRect[2];
+        params[5] = cropRect[3];
+        if (SystemClock.uptimeMillis() - mLastHitTime > mTrackTimeout) {//空闲
+            params[0] = params[1] = mCoarseDensity;
+            return false;
+        }
+        if (!hasRegion || mRegionMissCount >= MAX_REGION_MISSES
+                || mRegion.right <= left || mRegion.left >= right || mRegion.bottom <= top || mRegion.top >= bottom) {//丢失
+            params[0] = params[1] = Math.min(DEFAULT_DENSITY, mCoarseDensity);
+            return false;
+        }
+        //跟踪：一维码只加密与条纹垂直的扫描线，另一轴使用粗密度
+        params[0] = params[1] = mFineDensity;
+        if (!isMatrixCode) {
+            if (mOrientation == ORIENTATION_UP || mOrientation == ORIENTATION_DOWN) {
+                params[0] = mCoarseDensity;
+            } else if (mOrientation == ORIENTATION_RIGHT || mOrientation == ORIENTATION_LEFT) {
+                params[1] = mCoarseDensity;
+            }
+        }
+        params[2] = Math.max(left, mRegion.left);
+        params[3] = Math.max(top, mRegion.top);
+        params[4] = Math.min(right, mRegion.right) - params[2];
+        params[5] = Math.min(bottom, mRegion.bottom) - params[3];
+        return true;
+    }
+
+    /**
+     * 记录本帧的解码结果，包含数据为空的条码
+     *
+     * @param regionScan 本帧是否只扫描了跟踪区域
+     */
+    synchronized void recordResult(ScanResult scanResult, boolean regionScan) {
+        int symbolCount = scanResult.getSymbolCount();
+        boolean hasBounds = false;
+        for (int index = 0; index < symbolCount; index++) {
+            if (!scanResult.getBounds(index, mBounds)) continue;
+            if (!hasBounds) {
+                hasBounds = true;
+                mRegion.set(mBounds);
+                mOrientation = scanResult.getOrientation(index);
+                int type = scanResult.getType(index);
+                isMatrixCode = type == ZBarDecoder.QRCODE || type == ZBarDecoder.PDF417;
+            } else {
+                mRegion.union(mBounds);
+            }
+        }
+        if (hasBounds) {
+            //向四周扩展条码尺寸的一半，以容纳条码的移动及未被扫描到的部分
+            int margin = Math.max(mRegion.width(), mRegion.height()) / 2 + 16;
+            mRegion.set(mRegion.left - margin, mRegion.top - margin, mRegion.right + margin, mRegion.bottom + margin);
+            hasRegion = true;
+            mRegionMissCount = 0;
+            mLastHitTime = SystemClock.uptimeMillis();
+        } else if (symbolCount > 0) {
+            mLastHitTime = SystemClock.uptimeMillis();
+        } else if (regionScan) {
+            mRegionMissCount++;
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.os.SystemClock;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连续扫码的去重集合，以（条码类型, 条码数据）为键，容量有限，按最近识别时间淘汰
+ * 条码在冷却时间内再次被识别时视为重复并刷新识别时间，即条码持续处于画面中时只回调一次，离开画面超过冷却时间后可再次回调
+ * 同时统计每秒回调的不重复条码个数
+ * 注意：线程安全，解码线程用于提前剔除重复条码，主线程用于最终确认
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class DuplicateFilter {
+
+    /**
+     * 默认的冷却时间，单位毫秒
+     */
+    public static final long DEFAULT_COOLDOWN = 3000;
+
+    /**
+     * 默认的最大容量
+     */
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    /**
+     * 按访问顺序排列，最久未被识别的条码在最前
+     */
+    private final LinkedHashMap<Key, Key> mKeyMap = new LinkedHashMap<Key, Key>(16, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Key> eldest) {
+            return size() > mMaxSize;
+        }
+    };
+
+    /**
+     * 查询时复用的键，由this同步
+     */
+    private final ProbeKey mProbeKey = new ProbeKey();
+
+    private long mCooldown = DEFAULT_COOLDOWN;
+    private int mMaxSize = DEFAULT_MAX_SIZE;
+
+    /**
+     * 当前一秒内回调的不重复条码个数及该秒的起始时间
+     */
+    private int mSecondCount;
+    private long mSecondStartTime;
+
+    /**
+     * 上一个完整的一秒内回调的不重复条码个数
+     */
+    private int mUniqueCodeRate;
+
+    private long mUniqueCodeCount;
+
+    /**
+     * 设置冷却时间，默认为3000毫秒
+     */
+    public synchronized void setCooldown(long cooldown) {
+        this.mCooldown = Math.max(0, cooldown);
+    }
+
+    /**
+     * 设置最大容量，超出时淘汰最久未被识别的条码，默认为256
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.mMaxSize = Math.max(1, maxSize);
+        Iterator<Key> iterator = mKeyMap.keySet().iterator();
+        while (mKeyMap.size() > mMaxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 清空已回调的条码
+     */
+    public synchronized void clear() {
+        mKeyMap.clear();
+    }
+
+    /**
+     * 判断条码是否在冷却时间内已回调过，是则刷新其识别时间
+     */
+    public synchronized boolean contains(ScanResult scanResult, int index) {
+        return find(scanResult, index, SystemClock.uptimeMillis()) != null;
+    }
+
+    /**
+     * 尝试回调条码，冷却时间内已回调过时返回false，否则记录该条码并返回true
+     */
+    public synchronized boolean offer(ScanResult scanResult, int index) {
+        long now = SystemClock.uptimeMillis();
+        if (!put(scanResult, index, now)) {
+            return false;
+        }
+        countUniqueCode(now);
+        return true;
+    }
+
+    /**
+     * 记录条码，冷却时间内已记录过时返回false，与offer()相同但不计入不重复条码的统计，用于SymbologyProfile统计不重复的识别
+     */
+    synchronized boolean record(ScanResult scanResult, int index) {
+        return put(scanResult, index, SystemClock.uptimeMillis());
+    }
+
+    private boolean put(ScanResult scanResult, int index, long now) {
+        if (find(scanResult, index, now) != null) {
+            return false;
+        }
+        Key key = new Key(scanResult.getType(index), scanResult.getDataBytes(index), mProbeKey.mHashCode);
+        key.mLastTime = now;
+        mKeyMap.put(key, key);
+        return true;
+    }
+
+    /**
+     * 上一秒回调的不重复条码个数，超过一秒没有新条码时为0
+     */
+    public synchronized int getUniqueCodeRate() {
+        rollSecond(SystemClock.uptimeMillis());
+        return mUniqueCodeRate;
+    }
+
+    /**
+     * 累计回调的不重复条码个数
+     */
+    public synchronized long getUniqueCodeCount() {
+        return mUniqueCodeCount;
+    }
+
+    private Key find(ScanResult scanResult, int index, long now) {
+        mProbeKey.set(scanResult, index);
+        Key key = mKeyMap.get(mProbeKey);
+        mProbeKey.mScanResult = null;
+        if (key == null) {
+            return null;
+        }
+        if (now - key.mLastTime > mCooldown) {//已过冷却时间
+            mKeyMap.remove(key);
+            return null;
+        }
+        key.mLastTime = now;
+        return key;
+    }
+
+    private void countUniqueCode(long now) {
+        rollSecond(now);
+        mSecondCount++;
+        mUniqueCodeCount++;
+        ScannerMetrics.getInstance().increment(ScannerMetrics.COUNTER_UNIQUE_CODE);
+    }
+
+    private void rollSecond(long now) {
+        long elapsed = now - mSecondStartTime;
+        if (elapsed >= 1000) {
+            mUniqueCodeRate = elapsed >= 2000 ? 0 : mSecondCount;
+            mSecondCount = 0;
+            mSecondStartTime = now;
+        }
+    }
+
+    private static class Key {
+
+        final int mType;
+        final byte[] mData;
+        final int mHashCode;
+        long mLastTime;
+
+        Key(int type, byte[] data, int hashCode) {
+            this.mType = type;
+            this.mData = data;
+            this.mHashCode = hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj instanceof ProbeKey) {
+                return obj.equals(this);
+            }
+            if (!(obj instanceof Key)) return false;
+            Key key = (Key) obj;
+            return mType == key.mType && Arrays.equals(mData, key.mData);
+        }
+    }
+
+    /**
+     * 直接引用ScanResult中的数据进行查询，避免每帧创建数组
+     */
+    private static class ProbeKey {
+
+        ScanResult mScanResult;
+        int mIndex;
+        int mType;
+        int mHashCode;
+
+        void set(ScanResult scanResult, int index) {
+            this.mScanResult = scanResult;
+            this.mIndex = index;
+            this.mType = scanResult.getType(index);
+            int hashCode = 1;
+            int dataLength = scanResult.getDataLength(index);
+            for (int i = 0; i < dataLength; i++) {//与Arrays.hashCode(byte[])一致
+                hashCode = 31 * hashCode + scanResult.getDataByte(index, i);
+            }
+            this.mHashCode = 31 * mType + hashCode;
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key key = (Key) obj;
+            return mType == key.mType && mScanResult != null && mScanResult.dataEquals(mIndex, key.mData);
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+package cn.simonlee.xcodescanner.core;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 图像帧缓冲池，复用固定大小的byte数组，避免每一帧都重新分配内存
+ * 线程安全，可在相机线程获取、在解码线程归还
+ * 设置ShortageListener后，达到上限而获取失败的次数会被记录，之后归还的缓冲区优先交给ShortageListener补还，
+ * 避免相机因缓冲区耗尽而不再回调预览帧
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class FrameBufferPool {
+
+    /**
+     * 单个缓冲区的字节数
+     */
+    private final int mBufferSize;
+
+    /**
+     * 最多分配的缓冲区个数
+     */
+    private final int mMaxCount;
+
+    /**
+     * 空闲的缓冲区
+     */
+    private final ConcurrentLinkedQueue<byte[]> mFreeQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 已分配的缓冲区个数
+     */
+    private final AtomicInteger mAllocatedCount = new AtomicInteger();
+
+    /**
+     * 命中次数，即从池中复用缓冲区的次数
+     */
+    private final AtomicLong mHitCount = new AtomicLong();
+
+    /**
+     * 未命中次数，即池中无空闲缓冲区的次数（包括新分配及达到上限的情况）
+     */
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /**
+     * 获取失败后尚未补还的个数
+     */
+    private final AtomicInteger mShortageCount = new AtomicInteger();
+
+    private volatile ShortageListener mShortageListener;
+
+    /**
+     * @param bufferSize 单个缓冲区的字节数
+     * @param maxCount   最多分配的缓冲区个数
+     */
+    public FrameBufferPool(int bufferSize, int maxCount) {
+        this.mBufferSize = bufferSize;
+        this.mMaxCount = Math.max(1, maxCount);
+    }
+
+    /**
+     * 获取一个缓冲区，池中无空闲时新分配，已达上限时返回null
+     */
+    public byte[] obtain() {
+        byte[] buffer = mFreeQueue.poll();
+        if (buffer != null) {
+            mHitCount.incrementAndGet();
+            return buffer;
+        }
+        mMissCount.incrementAndGet();
+        if (mAllocatedCount.incrementAndGet() > mMaxCount) {
+            mAllocatedCount.decrementAndGet();
+            if (mShortageListener != null) {
+                mShortageCount.incrementAndGet();
+                //计数之前可能已有缓冲区归还至空闲队列，再次检查，防止无人补还
+                buffer = mFreeQueue.poll();
+                if (buffer != null) {
+                    if (decrementShortage()) {
+                        return buffer;
+                    }
+                    //已被归还线程补还，多取的缓冲区放回
+                    mFreeQueue.offer(buffer);
+                }
+            }
+            return null;
+        }
+        ScannerMetrics.getInstance().recordAllocation(mBufferSize);
+        return new byte[mBufferSize];
+    }
+
+    /**
+     * 归还缓冲区，长度不符的数组会被丢弃
+     * 此前有获取失败且尚未补还时，直接交给ShortageListener
+     */
+    public void recycle(byte[] buffer) {
+        if (buffer != null && buffer.length == mBufferSize) {
+            ShortageListener shortageListener = mShortageListener;
+            if (shortageListener != null && decrementShortage()) {
+                shortageListener.onBufferAvailable(buffer);
+            } else {
+                mFreeQueue.offer(buffer);
+            }
+        }
+    }
+
+    /**
+     * 清空空闲缓冲区，已借出的缓冲区归还后仍可复用
+     */
+    public void clear() {
+        mShortageCount.set(0);
+        while (mFreeQueue.poll() != null) {
+            mAllocatedCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 设置缓冲区补还回调，为null时获取失败不再记录
+     */
+    public void setShortageListener(ShortageListener listener) {
+        this.mShortageListener = listener;
+        if (listener == null) {
+            mShortageCount.set(0);
+        }
+    }
+
+    /**
+     * 尚未补还的个数大于0时减1
+     *
+     * @return 是否需要补还
+     */
+    private boolean decrementShortage() {
+        while (true) {
+            int shortageCount = mShortageCount.get();
+            if (shortageCount <= 0) {
+                return false;
+            }
+            if (mShortageCount.compareAndSet(shortageCount, shortageCount - 1)) {
+                return true;
+            }
+        }
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * 命中次数
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * 未命中次数
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * 命中率，取值范围0-1
+     */
+    public float getHitRate() {
+        long hitCount = mHitCount.get();
+        long total = hitCount + mMissCount.get();
+        return total == 0 ? 0 : 1F * hitCount / total;
+    }
+
+    /**
+     * 缓冲区补还回调
+     */
+    public interface ShortageListener {
+        /**
+         * 获取失败后有缓冲区归还时回调，在归还缓冲区的线程中执行，回调后缓冲区由接收方持有
+         */
+        void onBufferAvailable(byte[] buffer);
+    }
+
+}
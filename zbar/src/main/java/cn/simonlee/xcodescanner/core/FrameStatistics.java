@@ -0,0 +1,225 @@
+package cn.simonlee.xcodescanner.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 预览帧识别区域的亮度统计，在解码线程中对每个预览帧只采样一次，供亮度回馈、清晰度门限及画面变化检测共用
+ * 在识别区域内均匀采集SAMPLE_GRID*SAMPLE_GRID个像素点，同时读取其右侧及下方的相邻像素以计算梯度，统计：
+ * 1.亮度直方图、均值、标准差（对比度）及过暗、过曝像素的比例
+ * 2.梯度能量，与亮度方差之比即为清晰度
+ * 3.GRID_SIZE*GRID_SIZE个单元的亮度均值，作为画面特征
+ * 计算完成后不可变，可在任意线程读取
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class FrameStatistics {
+
+    /**
+     * 画面特征每个轴向的单元个数
+     */
+    public static final int GRID_SIZE = 8;
+
+    /**
+     * 画面特征长度
+     */
+    public static final int SIGNATURE_LENGTH = GRID_SIZE * GRID_SIZE;
+
+    /**
+     * 每个轴向的采样点数，为GRID_SIZE的整数倍
+     */
+    public static final int SAMPLE_GRID = 48;
+
+    /**
+     * 直方图的分桶个数，每个桶包含256/HISTOGRAM_BINS个亮度级
+     */
+    public static final int HISTOGRAM_BINS = 32;
+
+    /**
+     * 亮度不大于该值的像素视为过暗
+     */
+    public static final int DARK_CLIP_LEVEL = 16;
+
+    /**
+     * 亮度不小于该值的像素视为过曝
+     */
+    public static final int BRIGHT_CLIP_LEVEL = 250;
+
+    private static final int CELL_SAMPLES = SAMPLE_GRID / GRID_SIZE;
+
+    private static final int BIN_SHIFT = 3;
+
+    private final int[] mHistogram = new int[HISTOGRAM_BINS];
+    private final int[] mSignature = new int[SIGNATURE_LENGTH];
+
+    private int mSampleCount;
+    private int mDarkCount;
+    private int mBrightCount;
+    private long mValueSum;
+    private long mSquareSum;
+    private long mGradientSum;
+
+    private FrameStatistics() {
+    }
+
+    /**
+     * 统计Y800图像中指定区域的亮度，区域宽高均需不小于2
+     *
+     * @param frameData Y800数据，NV21等格式只读取其亮度平面
+     * @param stride    行跨度
+     * @param left      区域的左边
+     * @param top       区域的顶边
+     * @param width     区域的宽
+     * @param height    区域的高
+     */
+    public static FrameStatistics compute(byte[] frameData, int stride, int left, int top, int width, int height) {
+        FrameStatistics statistics = new FrameStatistics();
+        int[] cellSums = new int[SIGNATURE_LENGTH];
+        for (int i = 0; i < SAMPLE_GRID; i++) {
+            int rowOffset = (top + i * (height - 1) / SAMPLE_GRID) * stride + left;
+            int cellOffset = i / CELL_SAMPLES * GRID_SIZE;
+            for (int j = 0; j < SAMPLE_GRID; j++) {
+                int index = rowOffset + j * (width - 1) / SAMPLE_GRID;
+                int value = frameData[index] & 0xff;
+                statistics.accumulate(value, frameData[index + 1] & 0xff, frameData[index + stride] & 0xff);
+                cellSums[cellOffset + j / CELL_SAMPLES] += value;
+            }
+        }
+        statistics.setSignature(cellSums);
+        return statistics;
+    }
+
+    /**
+     * 统计缓冲区中Y800图像指定区域的亮度，从缓冲区起始地址开始读取
+     *
+     * @see #compute(byte[], int, int, int, int, int)
+     */
+    public static FrameStatistics compute(ByteBuffer frameData, int stride, int left, int top, int width, int height) {
+        FrameStatistics statistics = new FrameStatistics();
+        int[] cellSums = new int[SIGNATURE_LENGTH];
+        for (int i = 0; i < SAMPLE_GRID; i++) {
+            int rowOffset = (top + i * (height - 1) / SAMPLE_GRID) * stride + left;
+            int cellOffset = i / CELL_SAMPLES * GRID_SIZE;
+            for (int j = 0; j < SAMPLE_GRID; j++) {
+                int index = rowOffset + j * (width - 1) / SAMPLE_GRID;
+                int value = frameData.get(index) & 0xff;
+                statistics.accumulate(value, frameData.get(index + 1) & 0xff, frameData.get(index + stride) & 0xff);
+                cellSums[cellOffset + j / CELL_SAMPLES] += value;
+            }
+        }
+        statistics.setSignature(cellSums);
+        return statistics;
+    }
+
+    private void accumulate(int value, int right, int below) {
+        mSampleCount++;
+        mHistogram[value >> BIN_SHIFT]++;
+        if (value <= DARK_CLIP_LEVEL) {
+            mDarkCount++;
+        } else if (value >= BRIGHT_CLIP_LEVEL) {
+            mBrightCount++;
+        }
+        mValueSum += value;
+        mSquareSum += value * value;
+        int dx = right - value;
+        int dy = below - value;
+        mGradientSum += dx * dx + dy * dy;
+    }
+
+    private void setSignature(int[] cellSums) {
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            mSignature[i] = cellSums[i] / (CELL_SAMPLES * CELL_SAMPLES);
+        }
+    }
+
+    /**
+     * 采样点个数
+     */
+    public int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * 平均亮度，取值范围0-255
+     */
+    public float getMean() {
+        return mSampleCount == 0 ? 0 : (float) mValueSum / mSampleCount;
+    }
+
+    /**
+     * 亮度方差
+     */
+    public float getVariance() {
+        if (mSampleCount == 0) return 0;
+        double mean = (double) mValueSum / mSampleCount;
+        return (float) Math.max(0, (double) mSquareSum / mSampleCount - mean * mean);
+    }
+
+    /**
+     * 对比度，即亮度的标准差
+     */
+    public float getContrast() {
+        return (float) Math.sqrt(getVariance());
+    }
+
+    /**
+     * 过暗像素的比例
+     */
+    public float getDarkClippedRatio() {
+        return mSampleCount == 0 ? 0 : (float) mDarkCount / mSampleCount;
+    }
+
+    /**
+     * 过曝像素的比例
+     */
+    public float getBrightClippedRatio() {
+        return mSampleCount == 0 ? 0 : (float) mBrightCount / mSampleCount;
+    }
+
+    /**
+     * 亮度的百分位数，取所在分桶的上限
+     *
+     * @param percentile 取值范围0-100
+     */
+    public int getPercentile(int percentile) {
+        int target = (mSampleCount * percentile + 99) / 100;
+        int accumulated = 0;
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            accumulated += mHistogram[i];
+            if (accumulated >= target) {
+                return ((i + 1) << BIN_SHIFT) - 1;
+            }
+        }
+        return 255;
+    }
+
+    /**
+     * 亮度直方图的拷贝
+     */
+    public int[] getHistogram() {
+        return mHistogram.clone();
+    }
+
+    /**
+     * 清晰度，即梯度能量均值与亮度方差之比，模糊会削弱边缘梯度而基本不改变方差，与曝光及对比度无关
+     * 亮度均匀时为0
+     */
+    public float getSharpness() {
+        float variance = getVariance();
+        if (mSampleCount == 0 || variance < 1) {
+            return 0;
+        }
+        return (float) ((double) mGradientSum / mSampleCount / variance);
+    }
+
+    /**
+     * 画面特征，即各单元的亮度均值，按行排列
+     * 注意：返回的是内部数组，不可修改
+     */
+    int[] getSignature() {
+        return mSignature;
+    }
+
+}
@@ -0,0 +1,254 @@
+package cn.simonlee.xcodescanner.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图像帧处理的工具方法，均为纯Java实现，不依赖Android API，可直接在JVM上进行基准测试
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public final class FrameUtils {
+
+    /**
+     * 像素数不小于该值时才进行并行转换，避免线程调度开销大于收益
+     */
+    private static final int PARALLEL_MIN_PIXELS = 1 << 20;
+
+    /**
+     * 并行转换时每个分块的最少行数
+     */
+    private static final int PARALLEL_MIN_TILE_ROWS = 16;
+
+    private static volatile ThreadPoolExecutor sLumaExecutor;
+
+    private FrameUtils() {
+    }
+
+    /**
+     * 将ARGB像素数组转换为Y800（灰度）数据
+     *
+     * @param pixels    ARGB像素数组
+     * @param width     图像的宽
+     * @param height    图像的高
+     * @param frameData 用于接收结果，为null或长度不足时新建
+     * @return Y800数据
+     */
+    public static byte[] argbToLuma(int[] pixels, int width, int height, byte[] frameData) {
+        if (pixels == null) return null;
+        if (frameData == null || frameData.length < width * height) {
+            frameData = new byte[width * height];
+        }
+        argbToLuma(pixels, width, 0, height, frameData);
+        return frameData;
+    }
+
+    /**
+     * 将ARGB像素数组中[rowStart, rowEnd)行转换为Y800数据，其余行不做处理
+     * 各通道取值0-255时Y的取值范围为16-235，无需限幅
+     */
+    public static void argbToLuma(int[] pixels, int width, int rowStart, int rowEnd, byte[] frameData) {
+        int end = rowEnd * width;
+        for (int index = rowStart * width; index < end; index++) {
+            int pixel = pixels[index];
+            frameData[index] = (byte) (((66 * ((pixel >> 16) & 0xff) + 129 * ((pixel >> 8) & 0xff) + 25 * (pixel & 0xff) + 128) >> 8) + 16);
+        }
+    }
+
+    /**
+     * 按行分块并行转换[rowStart, rowEnd)行，调用线程同样参与转换，返回时全部行均已转换完成
+     * 像素数较少或单核设备上直接在调用线程转换
+     *
+     * @see #argbToLuma(int[], int, int, int, byte[])
+     */
+    public static void argbToLumaParallel(final int[] pixels, final int width, final int rowStart, final int rowEnd, final byte[] frameData) {
+        if (rowStart < 0 || rowEnd < rowStart || pixels.length < rowEnd * width || frameData.length < rowEnd * width) {
+            throw new IllegalArgumentException("rowStart = " + rowStart + " , rowEnd = " + rowEnd + " , width = " + width);
+        }
+        final int rowCount = rowEnd - rowStart;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        if (threadCount <= 1 || (long) rowCount * width < PARALLEL_MIN_PIXELS) {
+            argbToLuma(pixels, width, rowStart, rowEnd, frameData);
+            return;
+        }
+        //分块数为线程数的4倍，使各线程的负载更均匀
+        final int tileRows = Math.max(PARALLEL_MIN_TILE_ROWS, (rowCount + threadCount * 4 - 1) / (threadCount * 4));
+        final int tileCount = (rowCount + tileRows - 1) / tileRows;
+        final AtomicInteger nextTile = new AtomicInteger();
+        final CountDownLatch countDownLatch = new CountDownLatch(tileCount);
+        Runnable tileRunnable = new Runnable() {
+            @Override
+            public void run() {
+                int tile;
+                while ((tile = nextTile.getAndIncrement()) < tileCount) {
+                    try {
+                        int tileStart = rowStart + tile * tileRows;
+                        argbToLuma(pixels, width, tileStart, Math.min(rowEnd, tileStart + tileRows), frameData);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                }
+            }
+        };
+        ThreadPoolExecutor executor = getLumaExecutor(threadCount - 1);
+        for (int i = Math.min(threadCount, tileCount) - 1; i > 0; i--) {
+            try {
+                executor.execute(tileRunnable);
+            } catch (RejectedExecutionException e) {
+                break;
+            }
+        }
+        tileRunnable.run();
+        //其余分块由线程池完成，等待期间不响应中断，防止返回后仍有线程写入frameData
+        boolean interrupted = false;
+        while (true) {
+            try {
+                countDownLatch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 获取并行转换所用的线程池，空闲时线程自动退出
+     */
+    private static ThreadPoolExecutor getLumaExecutor(int threadCount) {
+        if (sLumaExecutor == null) {
+            synchronized (FrameUtils.class) {
+                if (sLumaExecutor == null) {
+                    ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                        private final AtomicInteger mThreadIndex = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "FrameUtils-luma-" + mThreadIndex.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    executor.allowCoreThreadTimeOut(true);
+                    sLumaExecutor = executor;
+                }
+            }
+        }
+        return sLumaExecutor;
+    }
+
+    /**
+     * 将Y800图像中的指定区域按整数倍缩小，每个输出像素取factor*factor个像素的平均值
+     *
+     * @param srcData  源图像的Y800数据
+     * @param srcWidth 源图像的宽（行跨度）
+     * @param left     区域的左边
+     * @param top      区域的顶边
+     * @param width    区域的宽
+     * @param height   区域的高
+     * @param factor   缩小倍数
+     * @param dstData  用于接收结果，宽高分别为width/factor、height/factor，为null或长度不足时新建
+     * @return 缩小后的Y800数据
+     */
+    public static byte[] downsample(byte[] srcData, int srcWidth, int left, int top, int width, int height, int factor, byte[] dstData) {
+        int dstWidth = width / factor;
+        int dstHeight = height / factor;
+        if (dstData == null || dstData.length < dstWidth * dstHeight) {
+            dstData = new byte[dstWidth * dstHeight];
+        }
+        int area = factor * factor;
+        int[] rowSum = new int[dstWidth];
+        for (int j = 0; j < dstHeight; j++) {
+            Arrays.fill(rowSum, 0);
+            for (int y = 0; y < factor; y++) {
+                int srcIndex = (top + j * factor + y) * srcWidth + left;
+                for (int i = 0; i < dstWidth; i++) {
+                    int sum = 0;
+                    for (int x = 0; x < factor; x++) {
+                        sum += srcData[srcIndex++] & 0xff;
+                    }
+                    rowSum[i] += sum;
+                }
+            }
+            int dstIndex = j * dstWidth;
+            for (int i = 0; i < dstWidth; i++) {
+                dstData[dstIndex + i] = (byte) (rowSum[i] / area);
+            }
+        }
+        return dstData;
+    }
+
+    /**
+     * 将Y800图像中的指定区域逐行拷贝为紧凑排列的数据，行跨度大于宽度（含填充）的图像也适用
+     *
+     * @param srcData   源图像的Y800数据，NV21等格式只读取其亮度平面
+     * @param srcStride 源图像的行跨度
+     * @param left      区域的左边
+     * @param top       区域的顶边
+     * @param width     区域的宽
+     * @param height    区域的高
+     * @param dstData   用于接收结果，行跨度为width，为null或长度不足时新建
+     * @return 区域的Y800数据
+     */
+    public static byte[] packRegion(byte[] srcData, int srcStride, int left, int top, int width, int height, byte[] dstData) {
+        if (dstData == null || dstData.length < width * height) {
+            dstData = new byte[width * height];
+        }
+        int srcIndex = top * srcStride + left;
+        for (int row = 0, dstIndex = 0; row < height; row++, srcIndex += srcStride, dstIndex += width) {
+            System.arraycopy(srcData, srcIndex, dstData, dstIndex, width);
+        }
+        return dstData;
+    }
+
+    /**
+     * 将缓冲区中Y800图像的指定区域逐行拷贝为紧凑排列的数据，从缓冲区起始地址开始读取，不改变其position
+     *
+     * @see #packRegion(byte[], int, int, int, int, int, byte[])
+     */
+    public static byte[] packRegion(ByteBuffer srcData, int srcStride, int left, int top, int width, int height, byte[] dstData) {
+        if (dstData == null || dstData.length < width * height) {
+            dstData = new byte[width * height];
+        }
+        ByteBuffer buffer = srcData.duplicate();
+        int srcIndex = top * srcStride + left;
+        for (int row = 0, dstIndex = 0; row < height; row++, srcIndex += srcStride, dstIndex += width) {
+            buffer.position(srcIndex);
+            buffer.get(dstData, dstIndex, width);
+        }
+        return dstData;
+    }
+
+    /**
+     * 根据剪裁比例计算识别区域，未设置剪裁（比例为空）时宽高为0
+     *
+     * @param cropRect 用于接收结果{left, top, width, height}，为null时新建
+     */
+    public static int[] getCropRect(int width, int height, float leftRatio, float topRatio, float rightRatio, float bottomRatio, int[] cropRect) {
+        if (cropRect == null) {
+            cropRect = new int[4];
+        }
+        if (leftRatio >= rightRatio || topRatio >= bottomRatio) {
+            cropRect[0] = cropRect[1] = cropRect[2] = cropRect[3] = 0;
+        } else {
+            cropRect[0] = (int) (leftRatio * width);
+            cropRect[1] = (int) (topRatio * height);
+            cropRect[2] = (int) ((rightRatio - leftRatio) * width);
+            cropRect[3] = (int) ((bottomRatio - topRatio) * height);
+        }
+        return cropRect;
+    }
+
+}
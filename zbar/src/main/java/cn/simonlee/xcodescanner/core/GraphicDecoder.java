@@ -5,6 +5,8 @@ import android.graphics.Bitmap;
 import android.graphics.RectF;
 import android.net.Uri;
 
+import java.nio.ByteBuffer;
+
 /**
  * @author Simon Lee
  * @e-mail jmlixiaomeng@163.com
@@ -36,6 +38,16 @@ public interface GraphicDecoder {
      */
     void setDecodeListener(DecodeListener listener);
 
+    /**
+     * 设置解码结果监听，可获取一帧中识别到的全部条码及其位置，可与DecodeListener同时使用
+     */
+    void setScanResultListener(ScanResultListener listener);
+
+    /**
+     * 设置预览帧亮度统计监听，每个交给解码器的预览帧在解码线程中统计一次识别区域的亮度并回调
+     */
+    void setFrameStatisticsListener(FrameStatisticsListener listener);
+
     /**
      * 停止解码，会清空任务队列，并取消延时解码
      */
@@ -70,13 +82,55 @@ public interface GraphicDecoder {
      */
     void decodeForResult(int[] pixels, int width, int height, RectF rectClipRatio, int requestCode);
 
+    /**
+     * 是否需要传入下一帧预览图像，由解码频率调节器根据解码耗时、设备温度等决定
+     * 相机可据此跳过取帧、拷贝及GPU读取，返回true时应随即调用decode()传入该帧
+     */
+    boolean shouldDecode();
+
     /**
      * 传入图片的YUV数组及图像宽高进行解码
      */
     void decode(byte[] frameData, int width, int height, RectF rectClipRatio);
 
+    /**
+     * 传入缓冲池中的YUV数组及图像宽高进行解码
+     * 注意：无论该帧是否被解码，使用完毕后都要通过bufferPool.recycle()归还frameData
+     */
+    void decode(byte[] frameData, int width, int height, RectF rectClipRatio, FrameBufferPool bufferPool);
+
+    /**
+     * 传入直接缓冲区(DirectByteBuffer)中的Y800数据及图像宽高进行解码，数据不经拷贝直接交由zbar读取，适用于Camera2的Image平面及GL读取的缓冲区
+     * 注意：1.从缓冲区起始地址开始读取，忽略position 2.解码为异步执行，releaseListener回调之前不可修改或释放该缓冲区
+     * 3.行跨度大于宽度时，可将行跨度作为width传入，并通过剪裁比例排除填充区域
+     *
+     * @param releaseListener 解码器不再使用该缓冲区时回调，无论该帧是否被解码，可为null
+     */
+    void decode(ByteBuffer frameData, int width, int height, RectF rectClipRatio, BufferReleaseListener releaseListener);
+
     void detach();
 
+    interface BufferReleaseListener {
+        /**
+         * 解码器不再使用该缓冲区，在解码线程或调用decode()的线程回调
+         */
+        void onBufferReleased(ByteBuffer buffer);
+    }
+
+    interface FrameStatisticsListener {
+        /**
+         * 在解码线程回调，不要执行耗时操作，statistics不可变，可长期持有
+         */
+        void onFrameStatistics(FrameStatistics statistics);
+
+        /**
+         * 该帧经zbar解析后回调，被清晰度门限或画面变化检测跳过的帧以decoded为false回调，在解码线程回调
+         *
+         * @param decoded 是否识别到条码
+         */
+        void onFrameDecoded(FrameStatistics statistics, boolean decoded);
+    }
+
     interface DecodeListener {
         /**
          * 解码完成后会进行回调，无论是否解码成功
@@ -84,4 +138,12 @@ public interface GraphicDecoder {
         void decodeComplete(String result, int type, int quality, int requestCode);
     }
 
+    interface ScanResultListener {
+        /**
+         * 解码完成后会进行回调，无论是否解码成功，解码失败时scanResult.getSymbolCount()为0
+         * 注意：scanResult在回调结束后会被回收复用，如需保留请调用scanResult.copy()
+         */
+        void onScanResult(ScanResult scanResult);
+    }
+
 }
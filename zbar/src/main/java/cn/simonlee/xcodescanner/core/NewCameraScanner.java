@@ -19,10 +19,13 @@ import android.os.Message;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
 import android.util.Log;
+import android.util.Range;
+import android.util.Rational;
 import android.util.Size;
 import android.view.Surface;
 import android.view.WindowManager;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Semaphore;
@@ -45,6 +48,12 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
      */
     private String mCameraId;
 
+    /**
+     * 相机支持的曝光补偿范围及步长
+     */
+    private Range<Integer> mExposureRange;
+    private Rational mExposureStep;
+
     /**
      * 相机设备
      */
@@ -113,7 +122,7 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
     /**
      * 实例化线程对应的handler
      */
-    private Handler mCurThreadHandler;
+    private volatile Handler mCurThreadHandler;
 
     /**
      * 子线程对应的handler
@@ -148,7 +157,23 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
     /**
      * 启用亮度回馈标志
      */
-    private boolean isBrightnessFeedbackEnabled;
+    private volatile boolean isBrightnessFeedbackEnabled;
+
+    /**
+     * 亮度回馈，汇总解码器回调的预览帧亮度统计，未被解码器放行的帧由其采样线程另行统计
+     */
+    private final BrightnessFeedback mBrightnessFeedback = new BrightnessFeedback();
+
+    /**
+     * 预览帧亮度统计回调
+     */
+    private GraphicDecoder.FrameStatisticsListener mFrameStatisticsListener;
+
+    /**
+     * 自动闪光灯及曝光补偿控制器，及转到相机所在线程执行调节的回调
+     */
+    private volatile AutoExposureController mAutoExposureController;
+    private AutoExposureController.Actuator mExposureActuator;
 
     public NewCameraScanner(CameraListener cameraListener) {
         this.mCameraListener = cameraListener;
@@ -227,35 +252,43 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        if (mAutoExposureController != null) {//相机关闭后闪光灯及曝光补偿均已复位
+            mAutoExposureController.reset();
+        }
     }
 
     @Override
     public void openFlash() {
-        try {
-            mCameraLock.acquire();
-            try {
-                if (mCaptureSession != null && mPreviewBuilder != null) {
-                    mPreviewBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                    mPreviewBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_TORCH);
-                    mCaptureSession.setRepeatingRequest(mPreviewBuilder.build(), null, mBackgroundHandler);//无限次的重复获取图像
-                }
-            } catch (CameraAccessException e) {
-                e.printStackTrace();
-            }
-            mCameraLock.release();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        setFlashMode(true);
+        notifyFlashChanged(true);
     }
 
     @Override
     public void closeFlash() {
+        setFlashMode(false);
+        notifyFlashChanged(false);
+    }
+
+    /**
+     * 手动开关闪光灯后通知AutoExposureController，使其以用户的操作为当前状态
+     */
+    private void notifyFlashChanged(boolean opened) {
+        AutoExposureController controller = mAutoExposureController;
+        if (controller != null) {
+            controller.notifyFlashChanged(opened);
+        }
+    }
+
+    /**
+     * 打开或关闭闪光灯，不通知AutoExposureController
+     */
+    private void setFlashMode(boolean open) {
         try {
             mCameraLock.acquire();
             try {
                 if (mCaptureSession != null && mPreviewBuilder != null) {
                     mPreviewBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                    mPreviewBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_OFF);
+                    mPreviewBuilder.set(CaptureRequest.FLASH_MODE, open ? CaptureRequest.FLASH_MODE_TORCH : CaptureRequest.FLASH_MODE_OFF);
                     mCaptureSession.setRepeatingRequest(mPreviewBuilder.build(), null, mBackgroundHandler);//无限次的重复获取图像
                 }
             } catch (CameraAccessException e) {
@@ -278,6 +311,27 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
         return false;
     }
 
+    @Override
+    public void setExposureCompensation(float exposureCompensation) {
+        try {
+            mCameraLock.acquire();
+            try {
+                if (mCaptureSession != null && mPreviewBuilder != null && mExposureRange != null && mExposureStep != null
+                        && mExposureStep.floatValue() > 0) {
+                    int index = Math.round(exposureCompensation / mExposureStep.floatValue());
+                    index = Math.max(mExposureRange.getLower(), Math.min(mExposureRange.getUpper(), index));
+                    mPreviewBuilder.set(CaptureRequest.CONTROL_AE_EXPOSURE_COMPENSATION, index);
+                    mCaptureSession.setRepeatingRequest(mPreviewBuilder.build(), null, mBackgroundHandler);//无限次的重复获取图像
+                }
+            } catch (CameraAccessException e) {
+                e.printStackTrace();
+            }
+            mCameraLock.release();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public void detach() {
         Log.d(TAG, getClass().getName() + ".detach()");
@@ -325,12 +379,31 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
 
     @Override
     public void setGraphicDecoder(GraphicDecoder graphicDecoder) {
+        if (mGraphicDecoder != null && mGraphicDecoder != graphicDecoder) {
+            mGraphicDecoder.setFrameStatisticsListener(null);
+        }
         this.mGraphicDecoder = graphicDecoder;
+        if (graphicDecoder != null) {
+            graphicDecoder.setFrameStatisticsListener(getFrameStatisticsListener());
+        }
+    }
+
+    @Override
+    public void setAutoExposureController(AutoExposureController controller) {
+        if (mAutoExposureController != null && mAutoExposureController != controller) {
+            mAutoExposureController.attach(null);
+        }
+        if (controller != null) {
+            controller.reset();
+            controller.attach(getExposureActuator());
+        }
+        this.mAutoExposureController = controller;
     }
 
     @Override
     public void enableBrightnessFeedback(boolean enable) {
         this.isBrightnessFeedbackEnabled = enable;
+        mBrightnessFeedback.reset();
     }
 
     @Override
@@ -404,6 +477,8 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
             Integer facing = cameraCharacteristics.get(CameraCharacteristics.LENS_FACING);
             if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
                 mCameraId = cameraId;
+                mExposureRange = cameraCharacteristics.get(CameraCharacteristics.CONTROL_AE_COMPENSATION_RANGE);
+                mExposureStep = cameraCharacteristics.get(CameraCharacteristics.CONTROL_AE_COMPENSATION_STEP);
                 return cameraCharacteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
             }
         }
@@ -532,31 +607,91 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
         return mSessionStateCallback;
     }
 
+    /**
+     * 解码器在解码线程中统计预览帧识别区域的亮度，亮度回馈直接使用该结果，不在GL线程中另行采样
+     */
+    private GraphicDecoder.FrameStatisticsListener getFrameStatisticsListener() {
+        if (mFrameStatisticsListener == null) {
+            mFrameStatisticsListener = new GraphicDecoder.FrameStatisticsListener() {
+                @Override
+                public void onFrameStatistics(FrameStatistics statistics) {
+                    if (isBrightnessFeedbackEnabled) {
+                        mBrightnessFeedback.record(statistics, mCurThreadHandler);
+                    }
+                }
+
+                @Override
+                public void onFrameDecoded(FrameStatistics statistics, boolean decoded) {
+                    AutoExposureController controller = mAutoExposureController;
+                    if (controller != null) {
+                        controller.onFrameDecoded(statistics, decoded);
+                    }
+                }
+            };
+        }
+        return mFrameStatisticsListener;
+    }
+
+    private AutoExposureController.Actuator getExposureActuator() {
+        if (mExposureActuator == null) {
+            mExposureActuator = new AutoExposureController.Actuator() {
+                @Override
+                public void requestFlash(boolean open) {
+                    Handler handler = mCurThreadHandler;
+                    if (handler != null) {
+                        handler.sendMessage(handler.obtainMessage(HANDLER_AUTO_FLASH, open ? 1 : 0, 0));
+                    }
+                }
+
+                @Override
+                public void requestExposureCompensation(float exposureCompensation) {
+                    Handler handler = mCurThreadHandler;
+                    if (handler != null) {
+                        handler.sendMessage(handler.obtainMessage(HANDLER_AUTO_EXPOSURE, exposureCompensation));
+                    }
+                }
+            };
+        }
+        return mExposureActuator;
+    }
+
     private TextureReader.OnImageAvailableListener getImageAvailableListener() {
         if (mOnImageAvailableListener == null) {
             mOnImageAvailableListener = new TextureReader.OnImageAvailableListener() {
 
+                /**
+                 * 当前帧是否被解码器放行
+                 */
+                private boolean isFrameAdmitted;
+
+                /**
+                 * 未被放行的当前帧是否需要统计亮度
+                 */
+                private boolean isSampleRequired;
+
+                @Override
+                public boolean isFrameRequired() {
+                    isFrameAdmitted = mGraphicDecoder != null && mGraphicDecoder.shouldDecode();
+                    isSampleRequired = false;
+                    if (isBrightnessFeedbackEnabled) {
+                        mBrightnessFeedback.countFrame(mCurThreadHandler);
+                        isSampleRequired = !isFrameAdmitted && mBrightnessFeedback.isSampleRequired();
+                    }
+                    return isFrameAdmitted || isSampleRequired;
+                }
+
                 @Override
-                public void onFrameAvailable(byte[] frameData, int width, int height) {
-                    if (mGraphicDecoder != null) {
+                public void onFrameAvailable(ByteBuffer frameData, int width, int height, GraphicDecoder.BufferReleaseListener releaseListener) {
+                    GraphicDecoder graphicDecoder = mGraphicDecoder;
+                    if (graphicDecoder != null && isFrameAdmitted) {
                         if (mClipRectRatio == null || mClipRectRatio.isEmpty()) {//当未设置图像识别剪裁时，应以View的大小进行设置，防止未显示的图像被误识别
                             setFrameRect(0, 0, mPreviewSize.getWidth(), mPreviewSize.getHeight());
                         }
-                        mGraphicDecoder.decode(frameData, width, height, mClipRectRatio);
-                    }
-                    if (isBrightnessFeedbackEnabled && mCameraListener != null) {//启用亮度回馈
-                        //采集步长，总共采集100个像素点
-                        final int length = width * height;
-                        final int step = Math.max(1, length / 100);
-                        int brightnessTotal = 0;
-                        int brightnessCount = 0;
-                        for (int index = 0; index < length; index += step) {
-                            brightnessTotal += frameData[index] & 0xff - 16;
-                            brightnessCount++;
-                        }
-                        if (mCurThreadHandler != null) {
-                            mCurThreadHandler.sendMessage(mCurThreadHandler.obtainMessage(HANDLER_CHANGED_BRIGHTNESS, brightnessTotal, brightnessCount));
-                        }
+                        //直接缓冲区交由zbar读取，解码器释放后归还TextureReader复用
+                        graphicDecoder.decode(frameData, width, height, mClipRectRatio, releaseListener);
+                    } else if (!isSampleRequired || !mBrightnessFeedback.trySample(frameData, width, height, mClipRectRatio,
+                            mCurThreadHandler, releaseListener)) {//未放行的帧由采样线程统计亮度后归还
+                        releaseListener.onBufferReleased(frameData);
                     }
                 }
             };
@@ -630,9 +765,22 @@ public class NewCameraScanner implements CameraScanner, Handler.Callback {
                 closeCamera();
                 break;
             }
+            case HANDLER_AUTO_FLASH: {//自动开关闪光灯，消息发出后用户可能已关闭自动闪光灯
+                AutoExposureController controller = mAutoExposureController;
+                if (controller != null && controller.isAutoFlashEnabled()) {
+                    setFlashMode(msg.arg1 != 0);
+                }
+                break;
+            }
+            case HANDLER_AUTO_EXPOSURE: {//自动调节曝光补偿
+                if (mAutoExposureController != null) {
+                    setExposureCompensation((Float) msg.obj);
+                }
+                break;
+            }
             case HANDLER_CHANGED_BRIGHTNESS: {//亮度变化
-                if (mCameraListener != null && msg.arg2 != 0) {
-                    mCameraListener.cameraBrightnessChanged(msg.arg1 / msg.arg2);
+                if (mCameraListener != null && isBrightnessFeedbackEnabled) {
+                    mCameraListener.cameraBrightnessChanged(msg.arg1);
                 }
                 break;
             }
@@ -3,6 +3,7 @@ package cn.simonlee.xcodescanner.core;
 import android.Manifest;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.graphics.ImageFormat;
 import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.hardware.Camera;
@@ -67,7 +68,7 @@ public class OldCameraScanner implements CameraScanner, Handler.Callback {
     /**
      * Handler
      */
-    private Handler mCurThreadHandler;
+    private volatile Handler mCurThreadHandler;
 
     /**
      * 相机事件监听回调
@@ -87,7 +88,38 @@ public class OldCameraScanner implements CameraScanner, Handler.Callback {
     /**
      * 启用亮度回馈标志
      */
-    private boolean isBrightnessFeedbackEnabled;
+    private volatile boolean isBrightnessFeedbackEnabled;
+
+    /**
+     * 亮度回馈，汇总解码器回调的预览帧亮度统计，未被解码器放行的帧由其采样线程另行统计
+     */
+    private final BrightnessFeedback mBrightnessFeedback = new BrightnessFeedback();
+
+    /**
+     * 预览帧亮度统计回调
+     */
+    private GraphicDecoder.FrameStatisticsListener mFrameStatisticsListener;
+
+    /**
+     * 自动闪光灯及曝光补偿控制器，及转到相机所在线程执行调节的回调
+     */
+    private volatile AutoExposureController mAutoExposureController;
+    private AutoExposureController.Actuator mExposureActuator;
+
+    /**
+     * 启用帧缓冲池标志
+     */
+    private boolean isFrameBufferPoolEnabled;
+
+    /**
+     * 帧缓冲池，启用后通过setPreviewCallbackWithBuffer复用图像帧数组
+     */
+    private FrameBufferPool mFrameBufferPool;
+
+    /**
+     * 预先提供给相机的缓冲区个数
+     */
+    private static final int FRAME_BUFFER_PRELOAD_COUNT = 3;
 
     public OldCameraScanner(CameraListener cameraListener) {
         this.mCameraListener = cameraListener;
@@ -137,7 +169,12 @@ public class OldCameraScanner implements CameraScanner, Handler.Callback {
                     //开始预览
                     mCamera.startPreview();
                     //设置预览回调
-                    mCamera.setPreviewCallback(getPreviewCallback());
+                    if (isFrameBufferPoolEnabled) {
+                        setupFrameBufferPool(parameters);
+                        mCamera.setPreviewCallbackWithBuffer(getPreviewCallback());
+                    } else {
+                        mCamera.setPreviewCallback(getPreviewCallback());
+                    }
                 } catch (RuntimeException e) {//超时
                     if (mCurThreadHandler != null) {
                         mCurThreadHandler.sendMessage(mCurThreadHandler.obtainMessage(HANDLER_FAIL_TIMEOUT));
@@ -167,30 +204,42 @@ public class OldCameraScanner implements CameraScanner, Handler.Callback {
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        if (mAutoExposureController != null) {//相机关闭后闪光灯及曝光补偿均已复位
+            mAutoExposureController.reset();
+        }
     }
 
     @Override
     public void openFlash() {
-        try {
-            mCameraLock.acquire();
-            if (mCamera != null) {
-                Camera.Parameters parameters = mCamera.getParameters();
-                parameters.setFlashMode(Camera.Parameters.FLASH_MODE_TORCH);
-                mCamera.setParameters(parameters);
-            }
-            mCameraLock.release();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        setFlashMode(true);
+        notifyFlashChanged(true);
     }
 
     @Override
     public void closeFlash() {
+        setFlashMode(false);
+        notifyFlashChanged(false);
+    }
+
+    /**
+     * 手动开关闪光灯后通知AutoExposureController，使其以用户的操作为当前状态
+     */
+    private void notifyFlashChanged(boolean opened) {
+        AutoExposureController controller = mAutoExposureController;
+        if (controller != null) {
+            controller.notifyFlashChanged(opened);
+        }
+    }
+
+    /**
+     * 打开或关闭闪光灯，不通知AutoExposureController
+     */
+    private void setFlashMode(boolean open) {
         try {
             mCameraLock.acquire();
             if (mCamera != null) {
                 Camera.Parameters parameters = mCamera.getParameters();
-                parameters.setFlashMode(Camera.Parameters.FLASH_MODE_OFF);
+                parameters.setFlashMode(open ? Camera.Parameters.FLASH_MODE_TORCH : Camera.Parameters.FLASH_MODE_OFF);
                 mCamera.setParameters(parameters);
             }
             mCameraLock.release();
@@ -208,6 +257,26 @@ public class OldCameraScanner implements CameraScanner, Handler.Callback {
         return false;
     }
 
+    @Override
+    public void setExposureCompensation(float exposureCompensation) {
+        try {
+            mCameraLock.acquire();
+            if (mCamera != null) {
+                Camera.Parameters parameters = mCamera.getParameters();
+                float step = parameters.getExposureCompensationStep();
+                if (step > 0) {
+                    int index = Math.round(exposureCompensation / step);
+                    index = Math.max(parameters.getMinExposureCompensation(), Math.min(parameters.getMaxExposureCompensation(), index));
+                    parameters.setExposureCompensation(index);
+                    mCamera.setParameters(parameters);
+                }
+            }
+            mCameraLock.release();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public void detach() {
         closeCamera();
@@ -247,12 +316,46 @@ public class OldCameraScanner implements CameraScanner, Handler.Callback {
 
     @Override
     public void setGraphicDecoder(GraphicDecoder graphicDecoder) {
+        if (mGraphicDecoder != null && mGraphicDecoder != graphicDecoder) {
+            mGraphicDecoder.setFrameStatisticsListener(null);
+        }
         this.mGraphicDecoder = graphicDecoder;
+        if (graphicDecoder != null) {
+            graphicDecoder.setFrameStatisticsListener(getFrameStatisticsListener());
+        }
+    }
+
+    @Override
+    public void setAutoExposureController(AutoExposureController controller) {
+        if (mAutoExposureController != null && mAutoExposureController != controller) {
+            mAutoExposureController.attach(null);
+        }
+        if (controller != null) {
+            controller.reset();
+            controller.attach(getExposureActuator());
+        }
+        this.mAutoExposureController = controller;
     }
 
     @Override
     public void enableBrightnessFeedback(boolean enable) {
         this.isBrightnessFeedbackEnabled = enable;
+        mBrightnessFeedback.reset();
+    }
+
+    /**
+     * 设置是否启用帧缓冲池，需在openCamera之前调用
+     * 启用后图像帧数组将循环复用，不再为每一帧分配内存
+     */
+    public void enableFrameBufferPool(boolean enable) {
+        this.isFrameBufferPoolEnabled = enable;
+    }
+
+    /**
+     * 获取当前相机会话的帧缓冲池，未启用时返回null。可用于查询命中率
+     */
+    public FrameBufferPool getFrameBufferPool() {
+        return mFrameBufferPool;
     }
 
     @Override
@@ -355,29 +458,114 @@ public class OldCameraScanner implements CameraScanner, Handler.Callback {
         return new Size(curSize.width, curSize.height);
     }
 
+    /**
+     * 初始化帧缓冲池，并预先向相机提供缓冲区
+     * 缓冲区上限需覆盖相机持有的FRAME_BUFFER_PRELOAD_COUNT个、每个解码线程持有的1个及邮箱中等待的1个，
+     * 解码线程数不超过CPU核数（见ZBarDecoder构造方法）；仍然获取失败时由解码器归还的缓冲区补还给相机
+     * 注意：关闭相机时相机持有的缓冲区会被清空，因此每次开启相机都重新创建缓冲池
+     */
+    private void setupFrameBufferPool(Camera.Parameters parameters) {
+        int bufferSize = mSurfaceSize.getWidth() * mSurfaceSize.getHeight() * ImageFormat.getBitsPerPixel(parameters.getPreviewFormat()) / 8;
+        int maxCount = FRAME_BUFFER_PRELOAD_COUNT + Runtime.getRuntime().availableProcessors() + 1;
+        mFrameBufferPool = new FrameBufferPool(bufferSize, maxCount);
+        final Camera camera = mCamera;
+        mFrameBufferPool.setShortageListener(new FrameBufferPool.ShortageListener() {
+            @Override
+            public void onBufferAvailable(byte[] buffer) {
+                try {
+                    camera.addCallbackBuffer(buffer);
+                } catch (RuntimeException e) {//相机已释放
+                    e.printStackTrace();
+                }
+            }
+        });
+        for (int i = 0; i < FRAME_BUFFER_PRELOAD_COUNT; i++) {
+            byte[] buffer = mFrameBufferPool.obtain();
+            if (buffer != null) {
+                mCamera.addCallbackBuffer(buffer);
+            }
+        }
+    }
+
+    /**
+     * 解码器在解码线程中统计预览帧识别区域的亮度，亮度回馈直接使用该结果，不在预览回调线程中另行采样
+     */
+    private GraphicDecoder.FrameStatisticsListener getFrameStatisticsListener() {
+        if (mFrameStatisticsListener == null) {
+            mFrameStatisticsListener = new GraphicDecoder.FrameStatisticsListener() {
+                @Override
+                public void onFrameStatistics(FrameStatistics statistics) {
+                    if (isBrightnessFeedbackEnabled) {
+                        mBrightnessFeedback.record(statistics, mCurThreadHandler);
+                    }
+                }
+
+                @Override
+                public void onFrameDecoded(FrameStatistics statistics, boolean decoded) {
+                    AutoExposureController controller = mAutoExposureController;
+                    if (controller != null) {
+                        controller.onFrameDecoded(statistics, decoded);
+                    }
+                }
+            };
+        }
+        return mFrameStatisticsListener;
+    }
+
+    private AutoExposureController.Actuator getExposureActuator() {
+        if (mExposureActuator == null) {
+            mExposureActuator = new AutoExposureController.Actuator() {
+                @Override
+                public void requestFlash(boolean open) {
+                    Handler handler = mCurThreadHandler;
+                    if (handler != null) {
+                        handler.sendMessage(handler.obtainMessage(HANDLER_AUTO_FLASH, open ? 1 : 0, 0));
+                    }
+                }
+
+                @Override
+                public void requestExposureCompensation(float exposureCompensation) {
+                    Handler handler = mCurThreadHandler;
+                    if (handler != null) {
+                        handler.sendMessage(handler.obtainMessage(HANDLER_AUTO_EXPOSURE, exposureCompensation));
+                    }
+                }
+            };
+        }
+        return mExposureActuator;
+    }
+
     private Camera.PreviewCallback getPreviewCallback() {
         if (mPreviewCallback == null) {
             mPreviewCallback = new Camera.PreviewCallback() {
                 @Override
                 public void onPreviewFrame(byte[] frameData, Camera camera) {
-                    if (mGraphicDecoder != null) {
+                    ScannerMetrics.getInstance().recordFrameArrival();
+                    if (isBrightnessFeedbackEnabled) {
+                        mBrightnessFeedback.countFrame(mCurThreadHandler);
+                    }
+                    FrameBufferPool bufferPool = mFrameBufferPool;
+                    if (isFrameBufferPoolEnabled && bufferPool != null) {//补充一个缓冲区给相机，当前帧交由解码器归还
+                        byte[] buffer = bufferPool.obtain();
+                        if (buffer != null) {
+                            camera.addCallbackBuffer(buffer);
+                        }
+                    } else {
+                        bufferPool = null;
+                    }
+                    if (mGraphicDecoder != null && mGraphicDecoder.shouldDecode()) {//由解码器决定是否放行该帧
                         if (mClipRectRatio == null || mClipRectRatio.isEmpty()) {//当未设置图像识别剪裁时，应以View的大小进行设置，防止未显示的图像被误识别
                             setFrameRect(0, 0, mPreviewSize.getWidth(), mPreviewSize.getHeight());
                         }
-                        mGraphicDecoder.decode(frameData, mSurfaceSize.getWidth(), mSurfaceSize.getHeight(), mClipRectRatio);
-                    }
-                    if (isBrightnessFeedbackEnabled && mCameraListener != null) {//启用亮度回馈
-                        //采集步长，总共采集100个像素点
-                        final int length = mSurfaceSize.getWidth() * mSurfaceSize.getHeight();
-                        final int step = Math.max(1, length / 100);
-                        int brightnessTotal = 0;
-                        int brightnessCount = 0;
-                        for (int index = 0; index < length; index += step) {
-                            brightnessTotal += frameData[index] & 0xff - 16;
-                            brightnessCount++;
+                        if (bufferPool != null) {
+                            mGraphicDecoder.decode(frameData, mSurfaceSize.getWidth(), mSurfaceSize.getHeight(), mClipRectRatio, bufferPool);
+                        } else {
+                            mGraphicDecoder.decode(frameData, mSurfaceSize.getWidth(), mSurfaceSize.getHeight(), mClipRectRatio);
                         }
-                        if (mCurThreadHandler != null) {
-                            mCurThreadHandler.sendMessage(mCurThreadHandler.obtainMessage(HANDLER_CHANGED_BRIGHTNESS, brightnessTotal, brightnessCount));
+                    } else if (!isBrightnessFeedbackEnabled || !mBrightnessFeedback.trySample(frameData, mSurfaceSize.getWidth(),
+                            mSurfaceSize.getHeight(), mClipRectRatio, mCurThreadHandler, bufferPool)) {//未放行的帧由采样线程统计亮度后归还
+                        if (bufferPool != null) {
+                            bufferPool.recycle(frameData);
                         }
                     }
                 }
@@ -399,9 +587,22 @@ public class OldCameraScanner implements CameraScanner, Handler.Callback {
                 closeCamera();
                 break;
             }
+            case HANDLER_AUTO_FLASH: {//自动开关闪光灯，消息发出后用户可能已关闭自动闪光灯
+                AutoExposureController controller = mAutoExposureController;
+                if (controller != null && controller.isAutoFlashEnabled()) {
+                    setFlashMode(msg.arg1 != 0);
+                }
+                break;
+            }
+            case HANDLER_AUTO_EXPOSURE: {//自动调节曝光补偿
+                if (mAutoExposureController != null) {
+                    setExposureCompensation((Float) msg.obj);
+                }
+                break;
+            }
             case HANDLER_CHANGED_BRIGHTNESS: {//亮度变化
-                if (mCameraListener != null && msg.arg2 != 0) {
-                    mCameraListener.cameraBrightnessChanged(msg.arg1 / msg.arg2);
+                if (mCameraListener != null && isBrightnessFeedbackEnabled) {
+                    mCameraListener.cameraBrightnessChanged(msg.arg1);
                 }
                 break;
             }
@@ -0,0 +1,431 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.graphics.Rect;
+
+import net.sourceforge.zbar.ImageScanner;
+
+import java.nio.charset.Charset;
+
+/**
+ * 一帧图像的解码结果，包含该帧中识别到的全部条码及其位置
+ * 采用对象池复用，回调结束后会被回收，如需保留请调用copy()
+ * 注意：位置坐标均相对于图像帧（即传入解码器的预览帧或图片）的左上角
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class ScanResult {
+
+    private static final int MAX_POOL_SIZE = 8;
+
+    private static final Object sPoolLock = new Object();
+    private static ScanResult sPool;
+    private static int sPoolSize;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ScanResult mNext;
+
+    /**
+     * 解码完成的时间，单位纳秒，用于统计回调耗时
+     */
+    long mCompleteTime;
+
+    private int mRequestCode;
+
+    /**
+     * 是否为相机预览帧的解码结果
+     */
+    private boolean isPreviewFrame;
+
+    private int mFrameWidth;
+    private int mFrameHeight;
+
+    /**
+     * 条码个数
+     */
+    private int mSymbolCount;
+
+    /**
+     * 每个条码在mSymbolArray中的起始位置
+     */
+    private int[] mSymbolOffset = new int[8];
+
+    /**
+     * 条码信息，格式同ImageScanner.getResultData()
+     */
+    private int[] mSymbolArray = new int[256];
+
+    /**
+     * 条码数据字节
+     */
+    private byte[] mSymbolData = new byte[1024];
+
+    private ScanResult() {
+        ScannerMetrics.getInstance().recordAllocation(4L * (mSymbolOffset.length + mSymbolArray.length) + mSymbolData.length);
+    }
+
+    /**
+     * 从对象池中获取实例
+     */
+    public static ScanResult obtain() {
+        synchronized (sPoolLock) {
+            if (sPool != null) {
+                ScanResult scanResult = sPool;
+                sPool = scanResult.mNext;
+                scanResult.mNext = null;
+                sPoolSize--;
+                return scanResult;
+            }
+        }
+        return new ScanResult();
+    }
+
+    /**
+     * 回收至对象池，回收后不可再使用
+     */
+    public void recycle() {
+        clear();
+        synchronized (sPoolLock) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                mNext = sPool;
+                sPool = this;
+                sPoolSize++;
+            }
+        }
+    }
+
+    /**
+     * 复制一份解码结果，可长期持有
+     * 按mSymbolOffset逐个复制，已移除的条码不会被复制，条码数据字节重新紧凑排列
+     */
+    public ScanResult copy() {
+        ScanResult scanResult = obtain();
+        scanResult.mFrameWidth = mFrameWidth;
+        scanResult.mFrameHeight = mFrameHeight;
+        scanResult.mRequestCode = mRequestCode;
+        scanResult.isPreviewFrame = isPreviewFrame;
+        int arrayLength = 0;
+        int dataLength = 0;
+        for (int i = 0; i < mSymbolCount; i++) {
+            arrayLength += getSymbolSize(i);
+            dataLength += Math.max(0, getDataLength(i));
+        }
+        scanResult.ensureCapacity(mSymbolCount, arrayLength, dataLength);
+        arrayLength = 0;
+        dataLength = 0;
+        for (int i = 0; i < mSymbolCount; i++) {
+            int symbolSize = getSymbolSize(i);
+            int symbolDataLength = Math.max(0, getDataLength(i));
+            System.arraycopy(mSymbolArray, mSymbolOffset[i], scanResult.mSymbolArray, arrayLength, symbolSize);
+            if (symbolDataLength > 0) {
+                System.arraycopy(mSymbolData, getField(i, ImageScanner.RESULT_DATA_OFFSET), scanResult.mSymbolData, dataLength, symbolDataLength);
+            }
+            scanResult.mSymbolArray[arrayLength + ImageScanner.RESULT_DATA_OFFSET] = dataLength;
+            scanResult.mSymbolOffset[i] = arrayLength;
+            arrayLength += symbolSize;
+            dataLength += symbolDataLength;
+        }
+        scanResult.mSymbolCount = mSymbolCount;
+        return scanResult;
+    }
+
+    /**
+     * 写入解码结果
+     *
+     * @param symbolArray 条码信息，格式同ImageScanner.getResultData()
+     * @param symbolData  条码数据字节
+     * @param symbolCount 条码个数
+     * @param frameWidth  图像帧的宽
+     * @param frameHeight 图像帧的高
+     * @param offsetX     位置坐标在图像帧中的X偏移
+     * @param offsetY     位置坐标在图像帧中的Y偏移
+     * @param requestCode 请求码
+     */
+    void set(int[] symbolArray, byte[] symbolData, int symbolCount, int frameWidth, int frameHeight, int offsetX, int offsetY, int requestCode) {
+        this.mFrameWidth = frameWidth;
+        this.mFrameHeight = frameHeight;
+        this.mRequestCode = requestCode;
+        int arrayLength = 0;
+        int dataLength = 0;
+        for (int i = 0; i < symbolCount; i++) {
+            int offset = arrayLength;
+            arrayLength += ImageScanner.RESULT_HEADER_SIZE + 2 * symbolArray[offset + ImageScanner.RESULT_LOCATION_SIZE];
+            dataLength = Math.max(dataLength, symbolArray[offset + ImageScanner.RESULT_DATA_OFFSET] + symbolArray[offset + ImageScanner.RESULT_DATA_LENGTH]);
+        }
+        ensureCapacity(symbolCount, arrayLength, dataLength);
+        arrayLength = 0;
+        for (int i = 0; i < symbolCount; i++) {
+            mSymbolOffset[i] = arrayLength;
+            arrayLength += ImageScanner.RESULT_HEADER_SIZE + 2 * symbolArray[arrayLength + ImageScanner.RESULT_LOCATION_SIZE];
+        }
+        if (symbolCount > 0) {
+            System.arraycopy(symbolArray, 0, mSymbolArray, 0, arrayLength);
+            System.arraycopy(symbolData, 0, mSymbolData, 0, dataLength);
+        }
+        this.mSymbolCount = symbolCount;
+        if (offsetX != 0 || offsetY != 0) {
+            transformLocation(1, offsetX, offsetY);
+        }
+    }
+
+    /**
+     * 确保数组容量足够，不足时重新分配，原有内容不保留
+     */
+    private void ensureCapacity(int symbolCount, int arrayLength, int dataLength) {
+        if (mSymbolOffset.length < symbolCount) {
+            mSymbolOffset = new int[symbolCount];
+            ScannerMetrics.getInstance().recordAllocation(4L * symbolCount);
+        }
+        if (mSymbolArray.length < arrayLength) {
+            mSymbolArray = new int[arrayLength];
+            ScannerMetrics.getInstance().recordAllocation(4L * arrayLength);
+        }
+        if (mSymbolData.length < dataLength) {
+            mSymbolData = new byte[dataLength];
+            ScannerMetrics.getInstance().recordAllocation(dataLength);
+        }
+    }
+
+    /**
+     * 第index个条码在mSymbolArray中占用的长度
+     */
+    private int getSymbolSize(int index) {
+        return ImageScanner.RESULT_HEADER_SIZE + 2 * getLocationSize(index);
+    }
+
+    /**
+     * 变换位置坐标，用于将缩小或剪裁后图像中的坐标映射回原图像
+     * 变换后的坐标为 原坐标 * scale + offset
+     */
+    void transformLocation(int scale, int offsetX, int offsetY) {
+        for (int i = 0; i < mSymbolCount; i++) {
+            int offset = mSymbolOffset[i];
+            int locationEnd = offset + ImageScanner.RESULT_HEADER_SIZE + 2 * mSymbolArray[offset + ImageScanner.RESULT_LOCATION_SIZE];
+            for (int index = offset + ImageScanner.RESULT_HEADER_SIZE; index < locationEnd; index += 2) {
+                mSymbolArray[index] = mSymbolArray[index] * scale + offsetX;
+                mSymbolArray[index + 1] = mSymbolArray[index + 1] * scale + offsetY;
+            }
+        }
+    }
+
+    /**
+     * 移除指定的条码，其后条码的索引依次前移
+     * 只移除mSymbolOffset中的索引，mSymbolArray及mSymbolData不变，copy()时才紧凑排列
+     */
+    void removeSymbol(int index) {
+        if (index < 0 || index >= mSymbolCount) {
+            throw new IndexOutOfBoundsException("index = " + index + " , symbolCount = " + mSymbolCount);
+        }
+        System.arraycopy(mSymbolOffset, index + 1, mSymbolOffset, index, mSymbolCount - index - 1);
+        mSymbolCount--;
+    }
+
+    /**
+     * 是否包含数据非空的条码
+     */
+    public boolean hasValidSymbol() {
+        return getFirstValidIndex() >= 0;
+    }
+
+    /**
+     * 修改图像帧的尺寸，用于坐标已映射回原图的情况
+     */
+    void setFrameSize(int frameWidth, int frameHeight) {
+        this.mFrameWidth = frameWidth;
+        this.mFrameHeight = frameHeight;
+    }
+
+    void setPreviewFrame(boolean previewFrame) {
+        this.isPreviewFrame = previewFrame;
+    }
+
+    private void clear() {
+        isPreviewFrame = false;
+        mSymbolCount = 0;
+        mFrameWidth = 0;
+        mFrameHeight = 0;
+        mRequestCode = 0;
+    }
+
+    /**
+     * 请求码，实时预览帧为0
+     */
+    public int getRequestCode() {
+        return mRequestCode;
+    }
+
+    /**
+     * 是否为相机预览帧的解码结果，图片解码（decodeForResult）时为false
+     */
+    public boolean isPreviewFrame() {
+        return isPreviewFrame;
+    }
+
+    /**
+     * 图像帧的宽
+     */
+    public int getFrameWidth() {
+        return mFrameWidth;
+    }
+
+    /**
+     * 图像帧的高
+     */
+    public int getFrameHeight() {
+        return mFrameHeight;
+    }
+
+    /**
+     * 识别到的条码个数，为0表示解码失败
+     */
+    public int getSymbolCount() {
+        return mSymbolCount;
+    }
+
+    /**
+     * 条码类型，取值见ZBarDecoder中的常量
+     */
+    public int getType(int index) {
+        return getField(index, ImageScanner.RESULT_TYPE);
+    }
+
+    /**
+     * 条码精度，数值越大越可靠
+     */
+    public int getQuality(int index) {
+        return getField(index, ImageScanner.RESULT_QUALITY);
+    }
+
+    /**
+     * zbar缓存计数，仅在启用缓存时有意义
+     */
+    public int getCount(int index) {
+        return getField(index, ImageScanner.RESULT_COUNT);
+    }
+
+    /**
+     * 条码方向，取值见net.sourceforge.zbar.Orientation
+     */
+    public int getOrientation(int index) {
+        return getField(index, ImageScanner.RESULT_ORIENTATION);
+    }
+
+    /**
+     * 条码数据的字节数
+     */
+    public int getDataLength(int index) {
+        return getField(index, ImageScanner.RESULT_DATA_LENGTH);
+    }
+
+    /**
+     * 条码数据字符串
+     */
+    public String getData(int index) {
+        int dataLength = getDataLength(index);
+        if (dataLength <= 0) return null;
+        return new String(mSymbolData, getField(index, ImageScanner.RESULT_DATA_OFFSET), dataLength, UTF_8);
+    }
+
+    /**
+     * 条码原始数据字节
+     */
+    public byte[] getDataBytes(int index) {
+        int dataLength = getDataLength(index);
+        byte[] dataBytes = new byte[Math.max(0, dataLength)];
+        if (dataLength > 0) {
+            System.arraycopy(mSymbolData, getField(index, ImageScanner.RESULT_DATA_OFFSET), dataBytes, 0, dataLength);
+        }
+        return dataBytes;
+    }
+
+    /**
+     * 条码数据的第position个字节，避免创建新数组
+     */
+    public byte getDataByte(int index, int position) {
+        int dataLength = getDataLength(index);
+        if (position < 0 || position >= dataLength) {
+            throw new IndexOutOfBoundsException("position = " + position + " , dataLength = " + dataLength);
+        }
+        return mSymbolData[getField(index, ImageScanner.RESULT_DATA_OFFSET) + position];
+    }
+
+    /**
+     * 判断条码数据是否与指定字节相同，避免创建新数组
+     */
+    public boolean dataEquals(int index, byte[] dataBytes) {
+        int dataLength = getDataLength(index);
+        if (dataBytes == null || dataBytes.length != dataLength) return false;
+        int dataOffset = getField(index, ImageScanner.RESULT_DATA_OFFSET);
+        for (int i = 0; i < dataLength; i++) {
+            if (mSymbolData[dataOffset + i] != dataBytes[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 位置点个数
+     */
+    public int getLocationSize(int index) {
+        return getField(index, ImageScanner.RESULT_LOCATION_SIZE);
+    }
+
+    /**
+     * 第pointIndex个位置点的X坐标
+     */
+    public int getLocationX(int index, int pointIndex) {
+        return mSymbolArray[mSymbolOffset[index] + ImageScanner.RESULT_HEADER_SIZE + 2 * pointIndex];
+    }
+
+    /**
+     * 第pointIndex个位置点的Y坐标
+     */
+    public int getLocationY(int index, int pointIndex) {
+        return mSymbolArray[mSymbolOffset[index] + ImageScanner.RESULT_HEADER_SIZE + 2 * pointIndex + 1];
+    }
+
+    /**
+     * 获取条码的外接矩形
+     *
+     * @param outRect 用于接收结果
+     * @return 无位置信息时返回false
+     */
+    public boolean getBounds(int index, Rect outRect) {
+        int locationSize = getLocationSize(index);
+        if (locationSize <= 0) return false;
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < locationSize; i++) {
+            int x = getLocationX(index, i);
+            int y = getLocationY(index, i);
+            left = Math.min(left, x);
+            top = Math.min(top, y);
+            right = Math.max(right, x);
+            bottom = Math.max(bottom, y);
+        }
+        outRect.set(left, top, right, bottom);
+        return true;
+    }
+
+    /**
+     * 第一个数据非空的条码索引，没有则返回-1
+     */
+    public int getFirstValidIndex() {
+        for (int i = 0; i < mSymbolCount; i++) {
+            if (getDataLength(i) > 0) return i;
+        }
+        return -1;
+    }
+
+    private int getField(int index, int field) {
+        if (index < 0 || index >= mSymbolCount) {
+            throw new IndexOutOfBoundsException("index = " + index + " , symbolCount = " + mSymbolCount);
+        }
+        return mSymbolArray[mSymbolOffset[index] + field];
+    }
+
+}
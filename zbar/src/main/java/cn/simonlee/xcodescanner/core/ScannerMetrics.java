@@ -0,0 +1,365 @@
+package cn.simonlee.xcodescanner.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 扫码流水线的性能统计，单例模式
+ * 按阶段统计耗时分布（以2为底的对数分桶，单位微秒），并统计丢帧及内存分配
+ * 默认关闭，关闭时各统计方法只读取一次volatile变量，几乎没有开销
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class ScannerMetrics {
+
+    /**
+     * 相邻两帧的到达间隔
+     */
+    public static final int STAGE_FRAME_ARRIVAL = 0;
+    /**
+     * GPU读取图像，仅Camera2
+     */
+    public static final int STAGE_GL_READBACK = 1;
+    /**
+     * 帧在等待解码线程时的耗时
+     */
+    public static final int STAGE_QUEUE_WAIT = 2;
+    /**
+     * zbar解析图像
+     */
+    public static final int STAGE_SCAN_IMAGE = 3;
+    /**
+     * 解码结果的提取与封装
+     */
+    public static final int STAGE_ANALYSIS = 4;
+    /**
+     * 解码完成到主线程回调的耗时
+     */
+    public static final int STAGE_DELIVERY = 5;
+    /**
+     * 预览帧的亮度统计，包括清晰度及画面特征
+     */
+    public static final int STAGE_FRAME_ANALYSIS = 6;
+
+    public static final int STAGE_COUNT = 7;
+
+    /**
+     * 丢弃的帧数
+     */
+    public static final int COUNTER_DROPPED_FRAME = 0;
+    /**
+     * 被更新的帧覆盖的帧数
+     */
+    public static final int COUNTER_SUPERSEDED_FRAME = 1;
+    /**
+     * 被解码频率调节器跳过的帧数
+     */
+    public static final int COUNTER_SKIPPED_FRAME = 2;
+    /**
+     * 内存分配次数
+     */
+    public static final int COUNTER_ALLOCATION = 3;
+    /**
+     * 内存分配字节数
+     */
+    public static final int COUNTER_ALLOCATED_BYTES = 4;
+    /**
+     * 连续扫码时回调的不重复条码个数
+     */
+    public static final int COUNTER_UNIQUE_CODE = 5;
+    /**
+     * 连续扫码时剔除的重复条码个数
+     */
+    public static final int COUNTER_DUPLICATE_CODE = 6;
+    /**
+     * 因模糊被清晰度门限跳过的帧数
+     */
+    public static final int COUNTER_BLURRY_FRAME = 7;
+    /**
+     * 跳过模糊帧估算节省的解析耗时，单位微秒
+     */
+    public static final int COUNTER_SAVED_SCAN_MICROS = 8;
+    /**
+     * 因画面静止被跳过的帧数
+     */
+    public static final int COUNTER_STATIC_FRAME = 9;
+    /**
+     * 经清晰度门限检查的帧数
+     */
+    public static final int COUNTER_SHARPNESS_CHECKED_FRAME = 10;
+
+    public static final int COUNTER_COUNT = 11;
+
+    /**
+     * 分桶个数，第i个桶统计[2^i, 2^(i+1))微秒的样本，第0个桶包含小于1微秒的样本，最后一个桶包含全部更大的样本
+     */
+    public static final int BUCKET_COUNT = 26;
+
+    private static final String[] STAGE_NAMES = {"frameArrival", "glReadback", "queueWait", "scanImage", "analysis", "delivery", "frameAnalysis"};
+    private static final String[] COUNTER_NAMES = {"droppedFrames", "supersededFrames", "skippedFrames", "allocations", "allocatedBytes", "uniqueCodes", "duplicateCodes", "blurryFrames", "savedScanMicros", "staticFrames", "sharpnessCheckedFrames"};
+
+    private static volatile ScannerMetrics instance;
+
+    private volatile boolean isEnabled;
+
+    private final AtomicLongArray mBucketArray = new AtomicLongArray(STAGE_COUNT * BUCKET_COUNT);
+    private final AtomicLongArray mStageTotalArray = new AtomicLongArray(STAGE_COUNT);
+    private final AtomicLongArray mCounterArray = new AtomicLongArray(COUNTER_COUNT);
+
+    /**
+     * 上一帧的到达时间，单位纳秒
+     */
+    private final AtomicLong mLastFrameTime = new AtomicLong();
+
+    /**
+     * 开始统计的时间
+     */
+    private volatile long mStartTime;
+
+    private ScannerMetrics() {
+        mStartTime = System.nanoTime() / 1000000;
+    }
+
+    public static ScannerMetrics getInstance() {
+        if (instance == null) {
+            synchronized (ScannerMetrics.class) {
+                if (instance == null) {
+                    instance = new ScannerMetrics();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 开启或关闭统计，默认关闭。开启时会重置已有数据
+     */
+    public void setEnabled(boolean enabled) {
+        if (enabled && !isEnabled) {
+            reset();
+        }
+        this.isEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * 重置全部数据
+     */
+    public void reset() {
+        for (int i = 0; i < mBucketArray.length(); i++) {
+            mBucketArray.set(i, 0);
+        }
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mStageTotalArray.set(i, 0);
+        }
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            mCounterArray.set(i, 0);
+        }
+        mLastFrameTime.set(0);
+        mStartTime = System.nanoTime() / 1000000;
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     *
+     * @param stage    阶段，取值见STAGE_*
+     * @param duration 耗时，单位纳秒
+     */
+    public void recordStage(int stage, long duration) {
+        if (!isEnabled || duration < 0) {
+            return;
+        }
+        long micros = duration / 1000;
+        int bucket = micros <= 0 ? 0 : Math.min(BUCKET_COUNT - 1, 63 - Long.numberOfLeadingZeros(micros));
+        mBucketArray.incrementAndGet(stage * BUCKET_COUNT + bucket);
+        mStageTotalArray.addAndGet(stage, micros);
+    }
+
+    /**
+     * 记录一帧的到达，统计相邻两帧的间隔
+     */
+    public void recordFrameArrival() {
+        if (!isEnabled) {
+            return;
+        }
+        long curTime = System.nanoTime();
+        long lastTime = mLastFrameTime.getAndSet(curTime);
+        if (lastTime != 0) {
+            recordStage(STAGE_FRAME_ARRIVAL, curTime - lastTime);
+        }
+    }
+
+    /**
+     * 计数
+     *
+     * @param counter 取值见COUNTER_*
+     */
+    public void increment(int counter) {
+        if (isEnabled) {
+            mCounterArray.incrementAndGet(counter);
+        }
+    }
+
+    /**
+     * 累加计数
+     *
+     * @param counter 取值见COUNTER_*
+     * @param delta   增量
+     */
+    public void add(int counter, long delta) {
+        if (isEnabled) {
+            mCounterArray.addAndGet(counter, delta);
+        }
+    }
+
+    /**
+     * 记录一次内存分配
+     *
+     * @param bytes 分配的字节数
+     */
+    public void recordAllocation(long bytes) {
+        if (isEnabled) {
+            mCounterArray.incrementAndGet(COUNTER_ALLOCATION);
+            mCounterArray.addAndGet(COUNTER_ALLOCATED_BYTES, bytes);
+        }
+    }
+
+    /**
+     * 获取当前数据的快照，可在任意线程调用
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.mDuration = System.nanoTime() / 1000000 - mStartTime;
+        for (int i = 0; i < mBucketArray.length(); i++) {
+            snapshot.mBucketArray[i] = mBucketArray.get(i);
+        }
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            snapshot.mStageTotalArray[i] = mStageTotalArray.get(i);
+        }
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            snapshot.mCounterArray[i] = mCounterArray.get(i);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 数据快照，不可变
+     */
+    public static class Snapshot {
+
+        private long mDuration;
+        private final long[] mBucketArray = new long[STAGE_COUNT * BUCKET_COUNT];
+        private final long[] mStageTotalArray = new long[STAGE_COUNT];
+        private final long[] mCounterArray = new long[COUNTER_COUNT];
+
+        private Snapshot() {
+        }
+
+        /**
+         * 统计时长，单位毫秒
+         */
+        public long getDuration() {
+            return mDuration;
+        }
+
+        /**
+         * 阶段的样本数
+         */
+        public long getCount(int stage) {
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                count += mBucketArray[stage * BUCKET_COUNT + i];
+            }
+            return count;
+        }
+
+        /**
+         * 阶段的平均耗时，单位微秒
+         */
+        public long getMean(int stage) {
+            long count = getCount(stage);
+            return count == 0 ? 0 : mStageTotalArray[stage] / count;
+        }
+
+        /**
+         * 阶段耗时的百分位数，取所在分桶的上限，单位微秒
+         *
+         * @param percentile 取值范围0-100
+         */
+        public long getPercentile(int stage, int percentile) {
+            long count = getCount(stage);
+            if (count == 0) return 0;
+            long target = (count * percentile + 99) / 100;
+            long accumulated = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                accumulated += mBucketArray[stage * BUCKET_COUNT + i];
+                if (accumulated >= target) {
+                    return (1L << (i + 1)) - 1;
+                }
+            }
+            return (1L << BUCKET_COUNT) - 1;
+        }
+
+        /**
+         * 阶段的分桶计数，用于上报完整分布
+         */
+        public long[] getBuckets(int stage) {
+            long[] buckets = new long[BUCKET_COUNT];
+            System.arraycopy(mBucketArray, stage * BUCKET_COUNT, buckets, 0, BUCKET_COUNT);
+            return buckets;
+        }
+
+        /**
+         * 计数值
+         *
+         * @param counter 取值见COUNTER_*
+         */
+        public long getCounter(int counter) {
+            return mCounterArray[counter];
+        }
+
+        /**
+         * 每秒的计数值
+         *
+         * @param counter 取值见COUNTER_*
+         */
+        public float getRate(int counter) {
+            return mDuration <= 0 ? 0 : mCounterArray[counter] * 1000F / mDuration;
+        }
+
+        /**
+         * 模糊帧占清晰度门限检查帧数的比例，图片及批量解码不经过清晰度门限，不计入
+         */
+        public float getBlurryFrameRatio() {
+            long checked = mCounterArray[COUNTER_SHARPNESS_CHECKED_FRAME];
+            return checked == 0 ? 0 : (float) mCounterArray[COUNTER_BLURRY_FRAME] / checked;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("ScannerMetrics{duration=").append(mDuration).append("ms");
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                long count = getCount(stage);
+                if (count > 0) {
+                    builder.append(String.format(Locale.US, ", %s[n=%d mean=%dus p50=%dus p95=%dus p99=%dus]", STAGE_NAMES[stage],
+                            count, getMean(stage), getPercentile(stage, 50), getPercentile(stage, 95), getPercentile(stage, 99)));
+                }
+            }
+            for (int counter = 0; counter < COUNTER_COUNT; counter++) {
+                builder.append(String.format(Locale.US, ", %s=%d(%.1f/s)", COUNTER_NAMES[counter], mCounterArray[counter], getRate(counter)));
+            }
+            if (mCounterArray[COUNTER_BLURRY_FRAME] > 0) {
+                builder.append(String.format(Locale.US, ", blurryRatio=%.3f", getBlurryFrameRatio()));
+            }
+            return builder.append('}').toString();
+        }
+    }
+
+}
@@ -0,0 +1,142 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.os.SystemClock;
+
+/**
+ * 画面变化检测，扫码设备长时间对着静止画面时停止解码，画面变化后立即恢复
+ * 以预览帧亮度统计中各单元的亮度均值作为画面特征，见FrameStatistics.getSignature()
+ * 记录最近一次未识别到条码的帧的特征，之后的帧与其相比没有变化时跳过解码，满足以下任一条件即视为变化：
+ * 1.全部单元的平均亮度差超过mMeanThreshold，如整体光线变化
+ * 2.任一单元的亮度差超过mCellThreshold，如条码从画面一角进入
+ * 识别到条码时清除记录，保持全速解码；静止画面每隔mRefreshInterval强制解码一帧，防止漏掉缓慢的变化
+ * 线程安全，可同时被多个解码线程使用
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class SceneChangeDetector {
+
+    /**
+     * 默认的平均亮度差阈值
+     */
+    public static final int DEFAULT_MEAN_THRESHOLD = 4;
+
+    /**
+     * 默认的单元亮度差阈值
+     */
+    public static final int DEFAULT_CELL_THRESHOLD = 24;
+
+    /**
+     * 默认的强制解码间隔，单位毫秒
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 2000;
+
+    private int mMeanThreshold = DEFAULT_MEAN_THRESHOLD;
+    private int mCellThreshold = DEFAULT_CELL_THRESHOLD;
+    private long mRefreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    /**
+     * 最近一次未识别到条码的帧的特征，为null时不跳过
+     */
+    private int[] mReference;
+
+    /**
+     * 最近一次放行解码的时间
+     */
+    private long mLastDecodeTime;
+
+    private long mCheckedFrameCount;
+    private long mStaticFrameCount;
+
+    /**
+     * 设置判定画面变化的阈值，单位为亮度级（0~255）
+     *
+     * @param meanThreshold 全部单元的平均亮度差阈值，默认为4
+     * @param cellThreshold 单个单元的亮度差阈值，默认为24
+     */
+    public synchronized void setThreshold(int meanThreshold, int cellThreshold) {
+        this.mMeanThreshold = Math.max(0, meanThreshold);
+        this.mCellThreshold = Math.max(0, cellThreshold);
+    }
+
+    /**
+     * 设置静止画面的强制解码间隔，单位毫秒，不大于0时静止画面不再解码，默认为2000
+     */
+    public synchronized void setRefreshInterval(long refreshInterval) {
+        this.mRefreshInterval = refreshInterval;
+    }
+
+    /**
+     * 清除记录的画面特征及统计，下一帧必定解码
+     */
+    public synchronized void reset() {
+        mReference = null;
+        mLastDecodeTime = 0;
+        mCheckedFrameCount = mStaticFrameCount = 0;
+    }
+
+    /**
+     * 判断画面是否变化，未变化时计入跳过统计
+     *
+     * @param signature 识别区域的画面特征
+     * @return 是否需要解析该帧
+     */
+    synchronized boolean accept(int[] signature) {
+        mCheckedFrameCount++;
+        long now = SystemClock.uptimeMillis();
+        if (mReference == null || isChanged(mReference, signature)
+                || (mRefreshInterval > 0 && now - mLastDecodeTime >= mRefreshInterval)) {
+            mLastDecodeTime = now;
+            return true;
+        }
+        mStaticFrameCount++;
+        ScannerMetrics.getInstance().increment(ScannerMetrics.COUNTER_STATIC_FRAME);
+        return false;
+    }
+
+    /**
+     * 记录一帧的解析结果，未识别到条码时以该帧作为静止画面的参照
+     *
+     * @param signature 该帧的画面特征
+     * @param decoded   是否识别到条码
+     */
+    synchronized void recordResult(int[] signature, boolean decoded) {
+        if (decoded) {
+            mReference = null;
+        } else {
+            if (mReference == null) {
+                mReference = new int[FrameStatistics.SIGNATURE_LENGTH];
+            }
+            System.arraycopy(signature, 0, mReference, 0, FrameStatistics.SIGNATURE_LENGTH);
+        }
+    }
+
+    private boolean isChanged(int[] reference, int[] signature) {
+        int diffSum = 0;
+        for (int i = 0; i < FrameStatistics.SIGNATURE_LENGTH; i++) {
+            int diff = Math.abs(signature[i] - reference[i]);
+            if (diff > mCellThreshold) {
+                return true;
+            }
+            diffSum += diff;
+        }
+        return diffSum > mMeanThreshold * FrameStatistics.SIGNATURE_LENGTH;
+    }
+
+    /**
+     * 因画面静止被跳过的帧数
+     */
+    public synchronized long getStaticFrameCount() {
+        return mStaticFrameCount;
+    }
+
+    /**
+     * 被跳过的帧占全部已检查帧的比例
+     */
+    public synchronized float getStaticRatio() {
+        return mCheckedFrameCount == 0 ? 0 : (float) mStaticFrameCount / mCheckedFrameCount;
+    }
+
+}
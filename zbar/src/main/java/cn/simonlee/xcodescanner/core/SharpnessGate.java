@@ -0,0 +1,146 @@
+package cn.simonlee.xcodescanner.core;
+
+/**
+ * 清晰度门限，在zbar解析之前跳过因移动或对焦而模糊的预览帧
+ * 清晰度取自预览帧的亮度统计，见FrameStatistics.getSharpness()
+ * 门限自适应：
+ * 1.取近期清晰度峰值（逐帧衰减）的REJECT_RATIO倍，持续模糊时峰值衰减，门限随之降低
+ * 2.不超过识别成功帧清晰度均值的SUCCESS_RATIO倍，保证足以识别的帧不被跳过
+ * 3.连续跳过MAX_CONSECUTIVE_SKIPS帧后强制放行一帧
+ * 线程安全，可同时被多个解码线程使用
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class SharpnessGate {
+
+    /**
+     * 默认门限与近期清晰度峰值之比
+     */
+    public static final float DEFAULT_REJECT_RATIO = 0.4F;
+
+    /**
+     * 门限不超过识别成功帧清晰度均值的倍数
+     */
+    private static final float SUCCESS_RATIO = 0.7F;
+
+    /**
+     * 清晰度峰值的逐帧衰减系数
+     */
+    private static final float PEAK_DECAY = 0.97F;
+
+    /**
+     * 连续跳过的最大帧数
+     */
+    private static final int MAX_CONSECUTIVE_SKIPS = 4;
+
+    /**
+     * 滑动平均的平滑系数
+     */
+    private static final float EMA_ALPHA = 0.2F;
+
+    private float mRejectRatio = DEFAULT_REJECT_RATIO;
+
+    private float mPeakSharpness;
+    private float mSuccessSharpness;
+    private int mConsecutiveSkips;
+
+    /**
+     * 解析一帧的平均耗时，单位微秒，用于估算跳过模糊帧节省的时间
+     */
+    private float mAverageScanTime;
+
+    private long mCheckedFrameCount;
+    private long mSkippedFrameCount;
+    private long mSavedScanTime;
+
+    /**
+     * 设置门限与近期清晰度峰值之比，取值范围0~1，为0时不跳过任何帧，默认为0.4
+     */
+    public synchronized void setRejectRatio(float rejectRatio) {
+        this.mRejectRatio = Math.max(0F, Math.min(1F, rejectRatio));
+    }
+
+    /**
+     * 清空自适应状态及统计
+     */
+    public synchronized void reset() {
+        mPeakSharpness = mSuccessSharpness = mAverageScanTime = 0;
+        mConsecutiveSkips = 0;
+        mCheckedFrameCount = mSkippedFrameCount = mSavedScanTime = 0;
+    }
+
+    /**
+     * 判断一帧是否足够清晰，不够清晰时计入跳过统计
+     *
+     * @param sharpness 识别区域的清晰度
+     * @return 是否需要解析该帧
+     */
+    synchronized boolean accept(float sharpness) {
+        mCheckedFrameCount++;
+        ScannerMetrics.getInstance().increment(ScannerMetrics.COUNTER_SHARPNESS_CHECKED_FRAME);
+        float threshold = getThreshold();
+        mPeakSharpness = Math.max(sharpness, mPeakSharpness * PEAK_DECAY);
+        if (sharpness >= threshold || mConsecutiveSkips >= MAX_CONSECUTIVE_SKIPS) {
+            mConsecutiveSkips = 0;
+            return true;
+        }
+        mConsecutiveSkips++;
+        mSkippedFrameCount++;
+        long savedTime = (long) mAverageScanTime;
+        mSavedScanTime += savedTime;
+        ScannerMetrics.getInstance().increment(ScannerMetrics.COUNTER_BLURRY_FRAME);
+        ScannerMetrics.getInstance().add(ScannerMetrics.COUNTER_SAVED_SCAN_MICROS, savedTime);
+        return false;
+    }
+
+    /**
+     * 记录一帧的解析结果
+     *
+     * @param sharpness 该帧的清晰度
+     * @param decoded   是否识别到条码
+     * @param scanTime  解析耗时，单位纳秒
+     */
+    synchronized void recordResult(float sharpness, boolean decoded, long scanTime) {
+        float micros = scanTime / 1000F;
+        mAverageScanTime = mAverageScanTime == 0 ? micros : mAverageScanTime + EMA_ALPHA * (micros - mAverageScanTime);
+        if (decoded) {
+            mSuccessSharpness = mSuccessSharpness == 0 ? sharpness : mSuccessSharpness + EMA_ALPHA * (sharpness - mSuccessSharpness);
+        }
+    }
+
+    /**
+     * 当前门限
+     */
+    public synchronized float getThreshold() {
+        float threshold = mPeakSharpness * mRejectRatio;
+        if (mSuccessSharpness > 0) {
+            threshold = Math.min(threshold, mSuccessSharpness * SUCCESS_RATIO);
+        }
+        return threshold;
+    }
+
+    /**
+     * 被跳过的帧数
+     */
+    public synchronized long getSkippedFrameCount() {
+        return mSkippedFrameCount;
+    }
+
+    /**
+     * 被跳过的帧占全部已检查帧的比例
+     */
+    public synchronized float getSkipRatio() {
+        return mCheckedFrameCount == 0 ? 0 : (float) mSkippedFrameCount / mCheckedFrameCount;
+    }
+
+    /**
+     * 跳过模糊帧估算节省的解析时间，单位毫秒
+     */
+    public synchronized long getSavedScanTime() {
+        return mSavedScanTime / 1000;
+    }
+
+}
@@ -0,0 +1,350 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ZBarDecoder的图片解码（非预览帧），使用调用方传入的解码工作单元
+ * 1.图片Uri：先以较低分辨率解码识别，失败时在内存允许的范围内逐步提高分辨率，内存不足以解码整张图片时在原分辨率下逐个区域解码识别
+ * 2.Bitmap及像素数组：转换为Y800数据，转换所用的缓冲区以软引用复用
+ * 3.大尺寸图片：交给TiledImageScanner进行金字塔及分块识别
+ * 注意：线程安全，可同时被多个解码线程使用
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+class StillImageDecoder {
+
+    /**
+     * 图片Uri首次解码的目标像素数，据此计算inSampleSize
+     */
+    private static final int URI_TARGET_PIXELS = 2048 * 2048;
+
+    /**
+     * 图片Uri分区域解码时每个区域的边长
+     */
+    private static final int URI_REGION_SIZE = 2048;
+
+    /**
+     * 解码一个像素的峰值内存：Bitmap(4) + 像素数组(4) + Y800(1)
+     */
+    private static final int URI_BYTES_PER_PIXEL = 9;
+
+    /**
+     * 图片解码时复用的Y800缓冲区，以软引用持有，内存不足时可被回收
+     */
+    private final AtomicReference<SoftReference<byte[]>> mLumaBufferReference = new AtomicReference<>();
+
+    /**
+     * 大尺寸图片的识别，在子线程中延迟创建，由this同步
+     */
+    private TiledImageScanner mTiledImageScanner;
+
+    private boolean isDestroyed;
+
+    /**
+     * 指定识别的条码类型
+     */
+    private volatile int[] mSymbolTypeArray;
+
+    /**
+     * 是否对大尺寸图片使用金字塔及分块识别，默认为true
+     */
+    private volatile boolean isTiledDecodeEnabled = true;
+
+    StillImageDecoder(int[] symbolTypeArray) {
+        this.mSymbolTypeArray = symbolTypeArray;
+    }
+
+    /**
+     * 指定解码类型
+     */
+    synchronized void setCodeTypes(int[] symbolTypeArray) {
+        this.mSymbolTypeArray = symbolTypeArray;
+        if (mTiledImageScanner != null) {
+            mTiledImageScanner.setCodeTypes(symbolTypeArray);
+        }
+    }
+
+    void setTiledDecodeEnabled(boolean enabled) {
+        this.isTiledDecodeEnabled = enabled;
+    }
+
+    /**
+     * 获取大尺寸图片识别器，图片像素数未超过LARGE_IMAGE_PIXELS、未开启分块识别或已销毁时返回null
+     */
+    TiledImageScanner getTiledImageScanner(int width, int height) {
+        if (!isTiledDecodeEnabled || (long) width * height <= TiledImageScanner.LARGE_IMAGE_PIXELS) {
+            return null;
+        }
+        synchronized (this) {
+            if (mTiledImageScanner == null && !isDestroyed) {
+                mTiledImageScanner = new TiledImageScanner(mSymbolTypeArray);
+            }
+            return mTiledImageScanner;
+        }
+    }
+
+    /**
+     * 识别图片Uri，返回值不为null
+     * 1.读取图片尺寸，按URI_TARGET_PIXELS计算inSampleSize进行解码识别
+     * 2.未识别到条码时，在内存允许的范围内减半inSampleSize重新解码识别，直到原分辨率
+     * 3.内存不足以解码整张图片时，使用BitmapRegionDecoder在原分辨率下逐个区域解码识别
+     * 解码结果的坐标均为原图中的坐标
+     *
+     * @param future 所属的解码任务，已取消时在安全点抛出CancellationException，可为null
+     */
+    ScanResult decodeUri(ZBarScanner scanner, Context context, Uri uri, int requestCode, DecodeFuture future) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decodeStream(context, uri, options);
+        int imageWidth = options.outWidth;
+        int imageHeight = options.outHeight;
+        ScanResult scanResult = null;
+        if (imageWidth > 0 && imageHeight > 0) {
+            long maxPixels = getMaxDecodePixels();
+            int sampleSize = 1;
+            while ((long) (imageWidth / sampleSize) * (imageHeight / sampleSize) > URI_TARGET_PIXELS) {
+                sampleSize *= 2;
+            }
+            while (scanResult == null) {
+                checkCancelled(future);
+                if ((long) (imageWidth / sampleSize) * (imageHeight / sampleSize) > maxPixels) {//内存不足以解码整张图片，改为分区域解码
+                    scanResult = decodeUriRegion(scanner, context, uri, imageWidth, imageHeight, requestCode, future);
+                    break;
+                }
+                options = new BitmapFactory.Options();
+                options.inSampleSize = sampleSize;
+                try {
+                    Bitmap bitmap = decodeStream(context, uri, options);
+                    if (bitmap == null) {
+                        break;
+                    }
+                    scanResult = scanBitmap(scanner, bitmap, sampleSize, 0, 0, imageWidth, imageHeight, requestCode, future);
+                } catch (OutOfMemoryError e) {//内存不足时改为分区域解码
+                    Log.e(GraphicDecoder.TAG, getClass().getName() + ".decodeUri() : " + e);
+                    maxPixels = 0;
+                    continue;
+                }
+                if (scanResult != null || sampleSize == 1) {
+                    break;
+                }
+                sampleSize /= 2;
+            }
+        }
+        if (scanResult == null) {
+            scanResult = ScanResult.obtain();
+            scanResult.set(null, null, 0, Math.max(0, imageWidth), Math.max(0, imageHeight), 0, 0, requestCode);
+        }
+        return scanResult;
+    }
+
+    /**
+     * 使用BitmapRegionDecoder在原分辨率下逐个区域解码识别，相邻区域重叠1/4，任一区域识别成功即结束
+     */
+    private ScanResult decodeUriRegion(ZBarScanner scanner, Context context, Uri uri, int imageWidth, int imageHeight, int requestCode, DecodeFuture future) {
+        InputStream inputStream = null;
+        BitmapRegionDecoder regionDecoder = null;
+        try {
+            inputStream = context.getContentResolver().openInputStream(uri);
+            if (inputStream == null) return null;
+            regionDecoder = BitmapRegionDecoder.newInstance(inputStream, false);
+            int stride = URI_REGION_SIZE * 3 / 4;
+            Rect region = new Rect();
+            for (int top = 0; top < imageHeight; top += stride) {
+                for (int left = 0; left < imageWidth; left += stride) {
+                    checkCancelled(future);
+                    region.set(left, top, Math.min(imageWidth, left + URI_REGION_SIZE), Math.min(imageHeight, top + URI_REGION_SIZE));
+                    Bitmap bitmap = regionDecoder.decodeRegion(region, null);
+                    if (bitmap != null) {
+                        ScanResult scanResult = scanBitmap(scanner, bitmap, 1, left, top, imageWidth, imageHeight, requestCode, future);
+                        if (scanResult != null) {
+                            return scanResult;
+                        }
+                    }
+                    if (region.right == imageWidth) {
+                        break;
+                    }
+                }
+                if (region.bottom == imageHeight) {
+                    break;
+                }
+            }
+        } catch (IOException | OutOfMemoryError e) {
+            Log.e(GraphicDecoder.TAG, getClass().getName() + ".decodeUriRegion() : " + e);
+        } finally {
+            if (regionDecoder != null) {
+                regionDecoder.recycle();
+            }
+            closeStream(inputStream);
+        }
+        return null;
+    }
+
+    /**
+     * 识别Bitmap，识别后回收该Bitmap，未识别到数据非空的条码时返回null
+     *
+     * @param sampleSize 缩小倍数，用于将坐标映射回原图
+     * @param offsetX    Bitmap在原图中的X偏移
+     * @param offsetY    Bitmap在原图中的Y偏移
+     */
+    private ScanResult scanBitmap(ZBarScanner scanner, Bitmap bitmap, int sampleSize, int offsetX, int offsetY, int imageWidth, int imageHeight, int requestCode, DecodeFuture future) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = getBitmapPixels(bitmap);
+        byte[] frameData = obtainLumaBuffer(width * height);
+        try {
+            FrameUtils.argbToLumaParallel(pixels, width, 0, height, frameData);
+            pixels = null;
+            checkCancelled(future);
+            ScanResult scanResult = null;
+            TiledImageScanner tiledImageScanner = getTiledImageScanner(width, height);
+            if (tiledImageScanner != null) {
+                scanResult = tiledImageScanner.scan(scanner, frameData, width, height, new int[4], requestCode, future);
+            } else {
+                int symbolCount = scanner.scanImage(frameData, width, height, 0, 0, 0, 0);
+                scanner.releaseData();
+                if (symbolCount > 0) {
+                    scanResult = ScanResult.obtain();
+                    scanResult.set(scanner.getResultArray(), scanner.getResultData(), symbolCount, width, height, 0, 0, requestCode);
+                    if (!scanResult.hasValidSymbol()) {
+                        scanResult.recycle();
+                        scanResult = null;
+                    }
+                }
+            }
+            if (scanResult != null) {
+                scanResult.transformLocation(sampleSize, offsetX, offsetY);
+                scanResult.setFrameSize(imageWidth, imageHeight);
+            }
+            return scanResult;
+        } finally {
+            recycleLumaBuffer(frameData);
+        }
+    }
+
+    /**
+     * 将ARGB像素转换为Y800数据，只转换与识别区域相交的行，多核设备上分块并行转换
+     * 注意：返回的是复用的缓冲区，识别区域以外的行为残留数据，使用完毕后通过recycleLumaBuffer()归还
+     *
+     * @param cropRect 识别区域{left, top, width, height}，宽高为0时转换整张图像
+     */
+    byte[] getLumaData(int[] pixels, int width, int height, int[] cropRect) {
+        int rowStart = 0;
+        int rowEnd = height;
+        if (cropRect[2] > 0 && cropRect[3] > 0) {
+            rowStart = Math.max(0, Math.min(cropRect[1], height));
+            rowEnd = Math.max(rowStart, Math.min(cropRect[1] + cropRect[3], height));
+        }
+        byte[] frameData = obtainLumaBuffer(width * height);
+        FrameUtils.argbToLumaParallel(pixels, width, rowStart, rowEnd, frameData);
+        return frameData;
+    }
+
+    /**
+     * 获取图片解码所用的Y800缓冲区，复用的缓冲区不足size时新建
+     * 注意：缓冲区内容为上次使用的残留数据，使用完毕后通过recycleLumaBuffer()归还
+     */
+    private byte[] obtainLumaBuffer(int size) {
+        SoftReference<byte[]> reference = mLumaBufferReference.getAndSet(null);
+        byte[] buffer = reference == null ? null : reference.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new byte[size];
+            ScannerMetrics.getInstance().recordAllocation(size);
+        }
+        return buffer;
+    }
+
+    /**
+     * 归还图片解码所用的Y800缓冲区
+     */
+    void recycleLumaBuffer(byte[] buffer) {
+        if (buffer != null) {
+            mLumaBufferReference.set(new SoftReference<>(buffer));
+        }
+    }
+
+    /**
+     * 读取Bitmap的像素并回收该Bitmap
+     */
+    static int[] getBitmapPixels(Bitmap bitmap) {
+        if (bitmap == null) return null;
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        ScannerMetrics.getInstance().recordAllocation(4L * pixels.length);
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        bitmap.recycle();
+        return pixels;
+    }
+
+    /**
+     * 根据当前可用的堆内存估算可解码的最大像素数
+     */
+    private long getMaxDecodePixels() {
+        Runtime runtime = Runtime.getRuntime();
+        long availableMemory = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return availableMemory * 3 / 4 / URI_BYTES_PER_PIXEL;
+    }
+
+    private Bitmap decodeStream(Context context, Uri uri, BitmapFactory.Options options) {
+        if (uri == null) return null;
+        InputStream inputStream = null;
+        try {
+            inputStream = context.getContentResolver().openInputStream(uri);
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+        }
+        if (inputStream == null) return null;
+        try {
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        } finally {
+            closeStream(inputStream);
+        }
+    }
+
+    private void closeStream(InputStream inputStream) {
+        if (inputStream != null) {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 解码的安全点，解码任务已取消时抛出CancellationException
+     */
+    private static void checkCancelled(DecodeFuture future) {
+        if (future != null && future.isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * 释放大尺寸图片识别器，之后不再创建
+     */
+    synchronized void destroy() {
+        isDestroyed = true;
+        if (mTiledImageScanner != null) {
+            mTiledImageScanner.destroy();
+            mTiledImageScanner = null;
+        }
+    }
+
+}
@@ -0,0 +1,313 @@
+package cn.simonlee.xcodescanner.core;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.SparseArray;
+
+import java.util.Arrays;
+
+/**
+ * 自适应条码类型配置，根据各类型的命中次数收窄预览帧所启用的条码类型
+ * zbar对每条扫描线都会运行全部已启用类型的解码器，只启用实际出现的类型可降低单帧解码耗时
+ * 命中次数统计的是不重复的识别：同一条码（类型及数据均相同）持续处于画面中时只计一次，离开画面超过READ_COOLDOWN后再次识别才重新计数，
+ * 使预热及各类型的占比反映实际扫过的条码，而不是某个条码在画面中停留的帧数
+ * 1.预热：总命中次数不足WARM_UP_HITS时启用全部类型
+ * 2.收窄：预热后只启用命中次数达到阈值的类型
+ * 3.探测：每隔PROBE_INTERVAL帧使用全部类型解码一帧，探测到未启用的类型时随后PROBE_INTERVAL帧均使用全部类型，以便尽快识别
+ * 命中次数保存在SharedPreferences中跨会话累积，总次数超过MAX_TOTAL_HITS时减半，使配置随使用场景逐渐变化
+ * 注意：线程安全，可同时被多个解码线程使用
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class SymbologyProfile {
+
+    private static final String PREFERENCES_NAME = "xcodescanner_symbology_profile";
+    private static final String KEY_HITS = "hits";
+
+    /**
+     * 预热所需的总命中次数
+     */
+    private static final int WARM_UP_HITS = 30;
+
+    /**
+     * 总命中次数的上限，超过时全部减半
+     */
+    private static final int MAX_TOTAL_HITS = 1000;
+
+    /**
+     * 类型被启用所需的最少命中次数及最低占比
+     */
+    private static final int MIN_TYPE_HITS = 3;
+    private static final float MIN_TYPE_SHARE = 0.02F;
+
+    /**
+     * 同一条码两次计数的最小间隔，单位毫秒
+     */
+    private static final long READ_COOLDOWN = 3000;
+
+    /**
+     * 最近识别的条码个数上限
+     */
+    private static final int MAX_RECENT_READS = 64;
+
+    /**
+     * 全类型探测的帧间隔
+     */
+    private static final int PROBE_INTERVAL = 20;
+
+    /**
+     * 每命中多少次保存一次
+     */
+    private static final int SAVE_INTERVAL = 10;
+
+    /**
+     * 解码耗时的平滑系数
+     */
+    private static final float EMA_ALPHA = 0.1F;
+
+    private final SharedPreferences mPreferences;
+
+    /**
+     * 各条码类型的命中次数
+     */
+    private final SparseArray<int[]> mHitArray = new SparseArray<>();
+
+    /**
+     * 最近识别的条码，用于剔除同一条码在连续帧中的重复命中
+     */
+    private final DuplicateFilter mRecentReads = new DuplicateFilter();
+
+    private int mTotalHits;
+    private int mUnsavedHits;
+
+    private volatile boolean isEnabled = true;
+
+    /**
+     * 全部类型及其收窄后的类型，全部类型或命中次数变化时重新计算
+     */
+    private int[] mFullTypes;
+    private int[] mActiveTypes;
+    private boolean isActiveTypesDirty = true;
+
+    /**
+     * 距下次探测的帧数，及剩余的全类型帧数
+     */
+    private int mProbeCountdown = PROBE_INTERVAL;
+    private int mFullSetFrames;
+
+    /**
+     * 全类型帧与收窄帧的平均解码耗时，单位纳秒
+     */
+    private float mFullSetDecodeTime;
+    private float mActiveSetDecodeTime;
+
+    /**
+     * 注意：会读取SharedPreferences，最好在子线程中创建
+     */
+    public SymbologyProfile(Context context) {
+        mPreferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mRecentReads.setCooldown(READ_COOLDOWN);
+        mRecentReads.setMaxSize(MAX_RECENT_READS);
+        load();
+    }
+
+    /**
+     * 设置是否启用自适应，关闭后始终使用全部类型，默认为true
+     */
+    public void setEnabled(boolean enabled) {
+        this.isEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * 获取本帧所启用的条码类型，全类型帧返回fullTypes本身
+     *
+     * @param fullTypes 指定的全部条码类型
+     */
+    synchronized int[] obtainCodeTypes(int[] fullTypes) {
+        if (fullTypes != mFullTypes) {
+            mFullTypes = fullTypes;
+            isActiveTypesDirty = true;
+        }
+        if (!isEnabled || mTotalHits < WARM_UP_HITS) {
+            return fullTypes;
+        }
+        if (mFullSetFrames > 0) {
+            mFullSetFrames--;
+            return fullTypes;
+        }
+        if (--mProbeCountdown <= 0) {
+            mProbeCountdown = PROBE_INTERVAL;
+            return fullTypes;
+        }
+        return getActiveTypes();
+    }
+
+    /**
+     * 记录一帧的解码结果，同一条码在READ_COOLDOWN内重复识别时不计命中
+     *
+     * @param codeTypes  本帧所启用的条码类型
+     * @param decodeTime 本帧的解码耗时，单位纳秒
+     */
+    synchronized void recordResult(int[] codeTypes, ScanResult scanResult, long decodeTime) {
+        boolean isFullSet = codeTypes == mFullTypes;
+        if (isFullSet) {
+            mFullSetDecodeTime = mFullSetDecodeTime == 0 ? decodeTime : mFullSetDecodeTime + EMA_ALPHA * (decodeTime - mFullSetDecodeTime);
+        } else {
+            mActiveSetDecodeTime = mActiveSetDecodeTime == 0 ? decodeTime : mActiveSetDecodeTime + EMA_ALPHA * (decodeTime - mActiveSetDecodeTime);
+        }
+        int symbolCount = scanResult.getSymbolCount();
+        for (int index = 0; index < symbolCount; index++) {
+            if (scanResult.getDataLength(index) <= 0) continue;
+            int type = scanResult.getType(index);
+            if (isFullSet && mTotalHits >= WARM_UP_HITS && indexOf(getActiveTypes(), type) < 0) {//探测到未启用的类型
+                mFullSetFrames = PROBE_INTERVAL;
+            }
+            if (mRecentReads.record(scanResult, index)) {
+                addHit(type);
+            }
+        }
+        if (mUnsavedHits >= SAVE_INTERVAL) {
+            save();
+        }
+    }
+
+    private void addHit(int type) {
+        if (mFullTypes == null) return;
+        int[] hits = mHitArray.get(type);
+        if (hits == null) {
+            hits = new int[1];
+            mHitArray.put(type, hits);
+        }
+        int[] oldActiveTypes = isActiveTypesDirty ? null : mActiveTypes;
+        hits[0]++;
+        mTotalHits++;
+        mUnsavedHits++;
+        if (mTotalHits > MAX_TOTAL_HITS) {
+            mTotalHits = 0;
+            for (int i = 0; i < mHitArray.size(); i++) {
+                int[] typeHits = mHitArray.valueAt(i);
+                typeHits[0] /= 2;
+                mTotalHits += typeHits[0];
+            }
+        }
+        isActiveTypesDirty = true;
+        //启用的类型不变时复用原数组，避免解码工作单元重复配置
+        if (oldActiveTypes != null && Arrays.equals(oldActiveTypes, getActiveTypes())) {
+            mActiveTypes = oldActiveTypes;
+        }
+    }
+
+    /**
+     * 全部类型中命中次数达到阈值的类型，没有时返回全部类型
+     */
+    private int[] getActiveTypes() {
+        if (isActiveTypesDirty) {
+            isActiveTypesDirty = false;
+            int minHits = Math.max(MIN_TYPE_HITS, (int) (mTotalHits * MIN_TYPE_SHARE));
+            int[] activeTypes = new int[mFullTypes.length];
+            int count = 0;
+            for (int type : mFullTypes) {
+                int[] hits = mHitArray.get(type);
+                if (hits != null && hits[0] >= minHits) {
+                    activeTypes[count++] = type;
+                }
+            }
+            mActiveTypes = count == 0 || count == mFullTypes.length ? mFullTypes : Arrays.copyOf(activeTypes, count);
+        }
+        return mActiveTypes;
+    }
+
+    private static int indexOf(int[] array, int value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 当前收窄后启用的条码类型，预热未完成或未收窄时为null
+     */
+    public synchronized int[] getNarrowedTypes() {
+        if (mFullTypes == null || mTotalHits < WARM_UP_HITS) {
+            return null;
+        }
+        int[] activeTypes = getActiveTypes();
+        return activeTypes == mFullTypes ? null : activeTypes.clone();
+    }
+
+    /**
+     * 指定条码类型的命中次数
+     */
+    public synchronized int getHitCount(int symbolType) {
+        int[] hits = mHitArray.get(symbolType);
+        return hits == null ? 0 : hits[0];
+    }
+
+    /**
+     * 收窄带来的加速比，即全类型帧与收窄帧的平均解码耗时之比，样本不足时为1
+     */
+    public synchronized float getSpeedup() {
+        if (mFullSetDecodeTime <= 0 || mActiveSetDecodeTime <= 0) {
+            return 1F;
+        }
+        return mFullSetDecodeTime / mActiveSetDecodeTime;
+    }
+
+    /**
+     * 清空命中次数，重新预热
+     */
+    public synchronized void reset() {
+        mHitArray.clear();
+        mRecentReads.clear();
+        mTotalHits = 0;
+        mFullSetFrames = 0;
+        mProbeCountdown = PROBE_INTERVAL;
+        mFullSetDecodeTime = mActiveSetDecodeTime = 0;
+        isActiveTypesDirty = true;
+        mUnsavedHits = 1;
+        save();
+    }
+
+    /**
+     * 保存命中次数，格式为"type:hits,type:hits"
+     */
+    public synchronized void save() {
+        if (mUnsavedHits <= 0) return;
+        mUnsavedHits = 0;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mHitArray.size(); i++) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(mHitArray.keyAt(i)).append(':').append(mHitArray.valueAt(i)[0]);
+        }
+        mPreferences.edit().putString(KEY_HITS, builder.toString()).apply();
+    }
+
+    private void load() {
+        String hits = mPreferences.getString(KEY_HITS, null);
+        if (hits == null || hits.length() == 0) return;
+        for (String item : hits.split(",")) {
+            int separator = item.indexOf(':');
+            if (separator <= 0) continue;
+            try {
+                int type = Integer.parseInt(item.substring(0, separator));
+                int count = Integer.parseInt(item.substring(separator + 1));
+                if (count > 0) {
+                    mHitArray.put(type, new int[]{count});
+                    mTotalHits += count;
+                }
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -15,6 +15,8 @@ import android.os.Build;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Simon Lee
@@ -23,7 +25,7 @@ import java.nio.FloatBuffer;
  * @createdTime 2018-03-23
  */
 @TargetApi(Build.VERSION_CODES.KITKAT)
-public class TextureReader implements SurfaceTexture.OnFrameAvailableListener {
+public class TextureReader implements SurfaceTexture.OnFrameAvailableListener, GraphicDecoder.BufferReleaseListener {
 
     // 着色器中的自定义变量
     private static final String[] mShaderAttributes = new String[]{
@@ -82,8 +84,20 @@ public class TextureReader implements SurfaceTexture.OnFrameAvailableListener {
     private EGLDisplay mEGLDisplay;
     private EGLSurface mEGLSurface;
 
-    private byte[] mOutPutBytes;
-    private ByteBuffer mOutPutBuffer;
+    /**
+     * GPU读取的直接缓冲区，解码为异步执行，每帧使用一个空闲缓冲区，解码器释放后才可复用
+     * 上限需覆盖每个解码线程持有的1个、邮箱中等待的1个及正在读取的1个，解码线程数不超过CPU核数（见ZBarDecoder构造方法）
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> mFreeBufferQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mAllocatedBufferCount = new AtomicInteger();
+    private final int mMaxBufferCount = Runtime.getRuntime().availableProcessors() + 2;
+
+    /**
+     * 读取的行数及缓冲区大小，着色器将每4个Y值打包为一个RGBA像素，只需读取Y平面所在的行
+     */
+    private final int mReadRows;
+    private final int mBufferSize;
+
     private FloatBuffer mVertexBuffer;
     private FloatBuffer mTextureBuffer;
 
@@ -96,13 +110,23 @@ public class TextureReader implements SurfaceTexture.OnFrameAvailableListener {
     private OnImageAvailableListener mImageAvailableListener;
 
     public interface OnImageAvailableListener {
-        void onFrameAvailable(byte[] frameData, int width, int height);
+        /**
+         * 是否需要读取当前帧，返回false时跳过绘制及GPU读取
+         */
+        boolean isFrameRequired();
+
+        /**
+         * 读取到一帧Y800数据，在GL线程回调
+         * 注意：frameData为直接缓冲区，使用完毕后（如解码器回调之后）必须调用releaseListener归还，否则无法复用
+         */
+        void onFrameAvailable(ByteBuffer frameData, int width, int height, GraphicDecoder.BufferReleaseListener releaseListener);
     }
 
     public TextureReader(int width, int height) {
         this.mWidth = width;
         this.mHeight = height;
-        this.mOutPutBuffer = ByteBuffer.allocate(width * height * 3 / 2);
+        this.mReadRows = (height + 3) / 4;
+        this.mBufferSize = width * mReadRows * 4;
         setupOESTexture();//设置外部纹理
         setupTextureBuffer();//设置纹理Buffer
         initEGL();//初始化EGL
@@ -304,6 +328,30 @@ public class TextureReader implements SurfaceTexture.OnFrameAvailableListener {
         }
         releaseGL();
         releaseEGL();
+        mFreeBufferQueue.clear();
+    }
+
+    @Override
+    public void onBufferReleased(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == mBufferSize) {
+            mFreeBufferQueue.offer(buffer);
+        }
+    }
+
+    /**
+     * 获取一个空闲的直接缓冲区，不足上限时新分配，已达上限时返回null
+     */
+    private ByteBuffer obtainBuffer() {
+        ByteBuffer buffer = mFreeBufferQueue.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (mAllocatedBufferCount.incrementAndGet() > mMaxBufferCount) {
+            mAllocatedBufferCount.decrementAndGet();
+            return null;
+        }
+        ScannerMetrics.getInstance().recordAllocation(mBufferSize);
+        return ByteBuffer.allocateDirect(mBufferSize);
     }
 
     private void releaseGL() {
@@ -326,6 +374,7 @@ public class TextureReader implements SurfaceTexture.OnFrameAvailableListener {
 
     @Override
     public synchronized void onFrameAvailable(SurfaceTexture surfaceTexture) {
+        ScannerMetrics.getInstance().recordFrameArrival();
         if (mOESSurfaceTexture != null) {
             drawTexture();
         }
@@ -333,6 +382,13 @@ public class TextureReader implements SurfaceTexture.OnFrameAvailableListener {
 
     private void drawTexture() {
         mOESSurfaceTexture.updateTexImage();
+        if (mImageAvailableListener == null || !mImageAvailableListener.isFrameRequired()) {//无需读取该帧
+            return;
+        }
+        ByteBuffer outputBuffer = obtainBuffer();
+        if (outputBuffer == null) {//缓冲区均被解码器占用，跳过该帧
+            return;
+        }
         GLES20.glViewport(0, 0, mWidth, mHeight);
 
         //GLBindFrameBuffer
@@ -366,17 +422,11 @@ public class TextureReader implements SurfaceTexture.OnFrameAvailableListener {
         GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
         GLES20.glDisableVertexAttribArray(mGLVertexIndex);
         GLES20.glDisableVertexAttribArray(mGLTextureIndex);
-        if (mImageAvailableListener != null) {
-            GLES20.glReadPixels(0, 0, mWidth, mHeight * 3 / 8, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, mOutPutBuffer);
-//            mOutPutBytes = mOutPutBuffer.array();
-            if (mOutPutBytes == null) {
-                mOutPutBytes = new byte[mWidth * mHeight];
-            }
-            mOutPutBuffer.position(0);
-            mOutPutBuffer.get(mOutPutBytes, 0, mOutPutBytes.length);
-            mOutPutBuffer.clear();
-            mImageAvailableListener.onFrameAvailable(mOutPutBytes, mWidth, mHeight);
-        }
+        long startTime = System.nanoTime();
+        outputBuffer.clear();
+        GLES20.glReadPixels(0, 0, mWidth, mReadRows, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, outputBuffer);
+        ScannerMetrics.getInstance().recordStage(ScannerMetrics.STAGE_GL_READBACK, System.nanoTime() - startTime);
+        mImageAvailableListener.onFrameAvailable(outputBuffer, mWidth, mHeight, this);
 
         //GLUnbindFrameBuffer
         GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
@@ -0,0 +1,314 @@
+package cn.simonlee.xcodescanner.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 大尺寸图片的识别，用于图片解码（非预览帧）
+ * 1.金字塔：将图像缩小至长边不超过MAX_LEVEL_SIZE后逐级识别，适用于占据画面较大的条码
+ * 2.分块：在原分辨率下将图像划分为相互重叠的分块，多线程并行识别，适用于占据画面较小的条码
+ * 任一级或任一分块识别到数据非空的条码即结束，坐标均映射回原图像
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+class TiledImageScanner {
+
+    /**
+     * 像素数超过该值时才使用金字塔及分块识别
+     */
+    static final int LARGE_IMAGE_PIXELS = 1920 * 1080;
+
+    /**
+     * 金字塔首级图像的最大长边
+     */
+    private static final int MAX_LEVEL_SIZE = 1920;
+
+    /**
+     * 金字塔末级图像的最小长边
+     */
+    private static final int MIN_LEVEL_SIZE = 480;
+
+    /**
+     * 分块的边长
+     */
+    private static final int TILE_SIZE = 1280;
+
+    /**
+     * 相邻分块的步长，重叠1/4以防条码被分块边界截断
+     */
+    private static final int TILE_STRIDE = TILE_SIZE * 3 / 4;
+
+    /**
+     * 分块识别所用的解码工作单元，调用线程使用传入的工作单元
+     */
+    private final List<ZBarScanner> mScannerList = new ArrayList<>();
+    private final ConcurrentLinkedQueue<ZBarScanner> mIdleScannerQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 分块识别的线程数，不含调用线程
+     */
+    private final int mThreadCount;
+
+    private volatile int[] mSymbolTypeArray;
+
+    private ThreadPoolExecutor mExecutorService;
+
+    private boolean isDestroyed;
+
+    TiledImageScanner(int[] symbolTypeArray) {
+        this.mSymbolTypeArray = symbolTypeArray;
+        this.mThreadCount = Math.max(0, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * 指定解码类型
+     */
+    void setCodeTypes(int[] symbolTypeArray) {
+        this.mSymbolTypeArray = symbolTypeArray;
+        synchronized (mScannerList) {
+            for (ZBarScanner scanner : mScannerList) {
+                scanner.setCodeTypes(symbolTypeArray);
+            }
+        }
+    }
+
+    /**
+     * 识别图像，未识别到数据非空的条码时返回null
+     *
+     * @param scanner   调用线程所用的解码工作单元
+     * @param frameData 图像的Y800数据，只读取识别区域
+     * @param width     图像的宽
+     * @param height    图像的高
+     * @param cropRect  识别区域{left, top, width, height}，宽高为0时识别整张图像
+     * @param future    已取消时在下一级或下一分块之前放弃识别，可为null
+     */
+    ScanResult scan(ZBarScanner scanner, byte[] frameData, int width, int height, int[] cropRect, int requestCode, Future<?> future) {
+        int left = 0;
+        int top = 0;
+        int right = width;
+        int bottom = height;
+        if (cropRect[2] > 0 && cropRect[3] > 0) {
+            left = Math.max(0, cropRect[0]);
+            top = Math.max(0, cropRect[1]);
+            right = Math.min(width, cropRect[0] + cropRect[2]);
+            bottom = Math.min(height, cropRect[1] + cropRect[3]);
+        }
+        if (right <= left || bottom <= top) {
+            return null;
+        }
+        ScanResult scanResult = scanPyramid(scanner, frameData, width, height, left, top, right - left, bottom - top, requestCode, future);
+        if (scanResult == null && !isCancelled(future)) {
+            scanResult = scanTiles(scanner, frameData, width, height, left, top, right - left, bottom - top, requestCode, future);
+        }
+        return scanResult;
+    }
+
+    /**
+     * 逐级缩小识别区域并识别，从长边不超过MAX_LEVEL_SIZE的一级开始，直到长边小于MIN_LEVEL_SIZE
+     */
+    private ScanResult scanPyramid(ZBarScanner scanner, byte[] frameData, int width, int height, int left, int top, int regionWidth, int regionHeight, int requestCode, Future<?> future) {
+        int regionSize = Math.max(regionWidth, regionHeight);
+        int scale = 2;
+        while (regionSize / scale > MAX_LEVEL_SIZE) {
+            scale *= 2;
+        }
+        byte[] levelData = FrameUtils.downsample(frameData, width, left, top, regionWidth, regionHeight, scale, null);
+        ScannerMetrics.getInstance().recordAllocation(levelData.length);
+        while (true) {
+            int levelWidth = regionWidth / scale;
+            int levelHeight = regionHeight / scale;
+            int symbolCount = scanner.scanImage(levelData, levelWidth, levelHeight, 0, 0, 0, 0);
+            ScanResult scanResult = obtainValidResult(scanner, symbolCount, width, height, requestCode);
+            if (scanResult != null) {
+                scanResult.transformLocation(scale, left, top);
+                scanner.releaseData();
+                return scanResult;
+            }
+            if (Math.max(levelWidth, levelHeight) / 2 < MIN_LEVEL_SIZE || isCancelled(future)) {
+                break;
+            }
+            //由上一级缩小一半得到下一级，复用同一缓冲区
+            levelData = FrameUtils.downsample(levelData, levelWidth, 0, 0, levelWidth, levelHeight, 2, levelData);
+            scale *= 2;
+        }
+        scanner.releaseData();
+        return null;
+    }
+
+    /**
+     * 在原分辨率下将识别区域划分为相互重叠的分块，调用线程与线程池并行识别，任一分块识别成功即停止
+     */
+    private ScanResult scanTiles(ZBarScanner scanner, final byte[] frameData, final int width, final int height, int left, int top, int regionWidth, int regionHeight, final int requestCode, final Future<?> future) {
+        final int[] tileArray = getTileArray(left, top, regionWidth, regionHeight);
+        final int tileCount = tileArray.length / 4;
+        final AtomicInteger nextTile = new AtomicInteger();
+        final AtomicReference<ScanResult> resultReference = new AtomicReference<>();
+        ThreadPoolExecutor executorService = getExecutorService();
+        int helperCount = executorService == null ? 0 : Math.min(mThreadCount, tileCount - 1);
+        final CountDownLatch countDownLatch = new CountDownLatch(helperCount);
+        for (int i = 0; i < helperCount; i++) {
+            try {
+                executorService.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ZBarScanner tileScanner = obtainScanner();
+                        try {
+                            if (tileScanner != null) {
+                                scanTiles(tileScanner, frameData, width, height, tileArray, tileCount, nextTile, resultReference, requestCode, future);
+                            }
+                        } finally {
+                            if (tileScanner != null) {
+                                mIdleScannerQueue.offer(tileScanner);
+                            }
+                            countDownLatch.countDown();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                countDownLatch.countDown();
+            }
+        }
+        scanTiles(scanner, frameData, width, height, tileArray, tileCount, nextTile, resultReference, requestCode, future);
+        //等待其余线程结束，期间不响应中断，防止返回后仍有线程读取frameData
+        boolean interrupted = false;
+        while (true) {
+            try {
+                countDownLatch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return resultReference.get();
+    }
+
+    /**
+     * 依次取出分块进行识别，直到分块全部取完、已有分块识别成功或已取消
+     */
+    private void scanTiles(ZBarScanner scanner, byte[] frameData, int width, int height, int[] tileArray, int tileCount,
+                           AtomicInteger nextTile, AtomicReference<ScanResult> resultReference, int requestCode, Future<?> future) {
+        int tile;
+        while (resultReference.get() == null && !isCancelled(future) && (tile = nextTile.getAndIncrement()) < tileCount) {
+            int index = tile * 4;
+            int symbolCount = scanner.scanImage(frameData, width, height, tileArray[index], tileArray[index + 1], tileArray[index + 2], tileArray[index + 3]);
+            ScanResult scanResult = obtainValidResult(scanner, symbolCount, width, height, requestCode);
+            if (scanResult != null && !resultReference.compareAndSet(null, scanResult)) {
+                scanResult.recycle();
+            }
+        }
+        scanner.releaseData();
+    }
+
+    private static boolean isCancelled(Future<?> future) {
+        return future != null && future.isCancelled();
+    }
+
+    /**
+     * 将识别区域划分为相互重叠的分块，返回{left, top, width, height, ...}
+     */
+    private int[] getTileArray(int left, int top, int regionWidth, int regionHeight) {
+        int columnCount = regionWidth <= TILE_SIZE ? 1 : (regionWidth - TILE_SIZE + TILE_STRIDE - 1) / TILE_STRIDE + 1;
+        int rowCount = regionHeight <= TILE_SIZE ? 1 : (regionHeight - TILE_SIZE + TILE_STRIDE - 1) / TILE_STRIDE + 1;
+        int[] tileArray = new int[columnCount * rowCount * 4];
+        int index = 0;
+        for (int row = 0; row < rowCount; row++) {
+            int tileHeight = Math.min(TILE_SIZE, regionHeight);
+            //最后一行（列）与区域边界对齐
+            int tileTop = top + Math.min(row * TILE_STRIDE, regionHeight - tileHeight);
+            for (int column = 0; column < columnCount; column++) {
+                int tileWidth = Math.min(TILE_SIZE, regionWidth);
+                int tileLeft = left + Math.min(column * TILE_STRIDE, regionWidth - tileWidth);
+                tileArray[index++] = tileLeft;
+                tileArray[index++] = tileTop;
+                tileArray[index++] = tileWidth;
+                tileArray[index++] = tileHeight;
+            }
+        }
+        return tileArray;
+    }
+
+    /**
+     * 包含数据非空的条码时返回解码结果，坐标为所传入图像中的坐标
+     */
+    private ScanResult obtainValidResult(ZBarScanner scanner, int symbolCount, int width, int height, int requestCode) {
+        if (symbolCount <= 0) {
+            return null;
+        }
+        ScanResult scanResult = ScanResult.obtain();
+        scanResult.set(scanner.getResultArray(), scanner.getResultData(), symbolCount, width, height, 0, 0, requestCode);
+        if (scanResult.hasValidSymbol()) {
+            return scanResult;
+        }
+        scanResult.recycle();
+        return null;
+    }
+
+    /**
+     * 获取空闲的解码工作单元，不足线程数时创建新实例
+     */
+    private ZBarScanner obtainScanner() {
+        ZBarScanner scanner = mIdleScannerQueue.poll();
+        if (scanner == null) {
+            synchronized (mScannerList) {
+                if (!isDestroyed && mScannerList.size() < mThreadCount) {
+                    scanner = new ZBarScanner(mSymbolTypeArray);
+                    mScannerList.add(scanner);
+                }
+            }
+        }
+        return scanner;
+    }
+
+    private ThreadPoolExecutor getExecutorService() {
+        if (mThreadCount <= 0) {
+            return null;
+        }
+        synchronized (mScannerList) {
+            if (mExecutorService == null && !isDestroyed) {
+                mExecutorService = new ThreadPoolExecutor(mThreadCount, mThreadCount, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+                mExecutorService.allowCoreThreadTimeOut(true);
+            }
+            return mExecutorService;
+        }
+    }
+
+    /**
+     * 释放全部资源，释放后不可再使用
+     */
+    void destroy() {
+        synchronized (mScannerList) {
+            isDestroyed = true;
+            List<Runnable> pendingList = null;
+            if (mExecutorService != null) {
+                pendingList = mExecutorService.shutdownNow();
+                mExecutorService = null;
+            }
+            for (ZBarScanner scanner : mScannerList) {
+                scanner.destroy();
+            }
+            mScannerList.clear();
+            mIdleScannerQueue.clear();
+            if (pendingList != null) {//未执行的任务直接运行，此时已无法获取工作单元，只会释放等待中的调用线程
+                for (Runnable runnable : pendingList) {
+                    runnable.run();
+                }
+            }
+        }
+    }
+
+}
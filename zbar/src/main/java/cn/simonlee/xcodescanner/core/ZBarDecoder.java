@@ -2,26 +2,25 @@ package cn.simonlee.xcodescanner.core;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.RectF;
 import android.net.Uri;
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.util.Log;
 
-import net.sourceforge.zbar.Config;
-import net.sourceforge.zbar.Image;
-import net.sourceforge.zbar.ImageScanner;
-import net.sourceforge.zbar.Symbol;
-import net.sourceforge.zbar.SymbolSet;
-
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Simon Lee
@@ -29,7 +28,7 @@ import java.util.concurrent.TimeUnit;
  * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
  * @createdTime 2018-03-14
  * 存在的问题：
- * 1.像素太高时会导致二维码无法识别，限制为1920*1080暂无问题
+ * 1.像素太高时会导致二维码无法识别，限制为1920*1080暂无问题。图片解码时通过金字塔及分块识别解决，见TiledImageScanner
  * 2.条码误读为DataBar(RSS-14)格式，此格式不常见，屏蔽即可
  * 3.条码误读为UPC-E格式，此格式常用性一般，按需求决定是否开放，并结合精度进行判断
  * 4.EAN-13格式的条码部分情况下识别出现错误，表现在a.解析成其他格式 b.解析出错误条码，如6920586221399，与算法及分辨率有关，与条码图像无关
@@ -102,17 +101,84 @@ public class ZBarDecoder implements GraphicDecoder, Handler.Callback {
      */
     public static final int CODE128 = 128;
 
-    private Image mZBarImage;
-    private ImageScanner mImageScanner;
+    /**
+     * 指定识别的条码类型
+     */
+    private volatile int[] mSymbolTypeArray;
+
+    /**
+     * 解码调度：解码线程池及解码工作单元、预览帧信箱、按帧序号顺序回调
+     */
+    private final DecodeDispatcher mDispatcher;
+
+    /**
+     * 图片解码：图片Uri逐步提高分辨率及分区域解码、大尺寸图片的金字塔及分块识别
+     */
+    private final StillImageDecoder mStillImageDecoder;
+
+    /**
+     * 设置了识别区域时，是否只将区域内的亮度数据紧凑拷贝后交给zbar，默认为true
+     */
+    private volatile boolean isRegionPackingEnabled = true;
+
+    /**
+     * 进行中的批量解码任务，detach时取消
+     */
+    private final List<BatchDecodeTask> mBatchTaskList = new ArrayList<>();
+
+    /**
+     * 是否已detach，由mBatchTaskList同步
+     */
+    private boolean isDetached;
+
+    /**
+     * 解码频率调节器，根据解码耗时决定是否放行预览帧
+     */
+    private final DecodeGovernor mDecodeGovernor;
+
+    /**
+     * 多帧共识过滤器，为null时不过滤
+     */
+    private ConsensusFilter mConsensusFilter;
+
+    /**
+     * 自适应条码类型配置，为null时始终使用全部类型
+     */
+    private volatile SymbologyProfile mSymbologyProfile;
+
+    /**
+     * 预览帧亮度统计监听
+     */
+    private volatile FrameStatisticsListener mFrameStatisticsListener;
+
+    /**
+     * 清晰度门限，为null时不检查清晰度
+     */
+    private volatile SharpnessGate mSharpnessGate;
+
+    /**
+     * 画面变化检测，为null时不检测
+     */
+    private volatile SceneChangeDetector mSceneChangeDetector;
+
+    /**
+     * 预览帧的自适应扫描密度，为null时使用固定密度
+     */
+    private volatile DensityController mDensityController;
 
-    private final Object decodeLock = new Object();//互斥锁
+    /**
+     * 连续扫码的去重集合
+     */
+    private final DuplicateFilter mDuplicateFilter = new DuplicateFilter();
 
-    private Handler mHandler;
+    /**
+     * 是否为连续扫码模式，默认为false
+     */
+    private volatile boolean isContinuousScanEnabled;
 
     private DecodeListener mDecodeListener;
 
-    private ThreadPoolExecutor mExecutorService;
-    private ArrayBlockingQueue<Runnable> mArrayBlockingQueue;
+    private ScanResultListener mScanResultListener;
 
     private volatile boolean isDecodeEnabled;//解码开关，默认为true
 
@@ -128,44 +194,29 @@ public class ZBarDecoder implements GraphicDecoder, Handler.Callback {
      * @param symbolTypeArray 指定条码类型进行识别，支持的格式EAN8、ISBN10、UPCA、EAN13、ISBN13、I25、UPCE、DATABAR、DATABAR_EXP、CODABAR、CODE39、PDF417、QRCODE、CODE93、CODE128，可根据实际需要进行配置。
      */
     public ZBarDecoder(DecodeListener listener, final int[] symbolTypeArray) {
-        this.isDecodeEnabled = true;
-        this.mDecodeListener = listener;
-        this.mHandler = new Handler(this);
-        mArrayBlockingQueue = new ArrayBlockingQueue<>(5);//等待队列最多插入5条任务
-        mExecutorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, mArrayBlockingQueue);
-        //ImageScanner的构造方法中含有System.loadLibrary()，要避免在主线程中进行IO操作
-        mExecutorService.execute(new Runnable() {
-            @Override
-            public void run() {
-                initZBar(symbolTypeArray);
-            }
-        });
+        this(listener, symbolTypeArray, 1);
     }
 
     /**
-     * 初始化ImageScanner&Image
+     * @param listener        解码监听
+     * @param symbolTypeArray 指定条码类型进行识别，为null时使用默认类型
+     * @param workerCount     解码线程数，默认为1。取值范围1~CPU核心数，多线程时解码结果仍按帧顺序回调
      */
-    private void initZBar(final int[] symbolTypeArray) {
-        mImageScanner = new ImageScanner();
-        setCodeTypes(symbolTypeArray);
-        mZBarImage = new Image("Y800");
+    public ZBarDecoder(DecodeListener listener, final int[] symbolTypeArray, int workerCount) {
+        this.isDecodeEnabled = true;
+        this.mDecodeListener = listener;
+        this.mSymbolTypeArray = symbolTypeArray;
+        workerCount = Math.max(1, Math.min(workerCount, Runtime.getRuntime().availableProcessors()));
+        this.mDecodeGovernor = new DecodeGovernor(workerCount);
+        this.mDispatcher = new DecodeDispatcher(workerCount, symbolTypeArray, this);
+        this.mStillImageDecoder = new StillImageDecoder(symbolTypeArray);
     }
 
     @Override
     public void setCodeTypes(int[] symbolTypeArray) {
-        if (mImageScanner == null) {
-            return;
-        }
-        mImageScanner.setConfig(0, Config.X_DENSITY, 3);
-        mImageScanner.setConfig(0, Config.Y_DENSITY, 3);
-        mImageScanner.setConfig(0, Config.ENABLE, 0);//Disable all the types
-        if (symbolTypeArray == null) {
-            symbolTypeArray = new int[]{EAN8, ISBN10, UPCA, EAN13, ISBN13, I25//, UPCE, DATABAR, PARTIAL
-                    , DATABAR_EXP, CODABAR, CODE39, PDF417, QRCODE, CODE93, CODE128};
-        }
-        for (int symbolType : symbolTypeArray) {
-            mImageScanner.setConfig(symbolType, Config.ENABLE, 1);//enable codeType
-        }
+        this.mSymbolTypeArray = symbolTypeArray;
+        mDispatcher.setCodeTypes(symbolTypeArray);
+        mStillImageDecoder.setCodeTypes(symbolTypeArray);
     }
 
     @Override
@@ -173,13 +224,17 @@ public class ZBarDecoder implements GraphicDecoder, Handler.Callback {
         this.mDecodeListener = listener;
     }
 
+    @Override
+    public void setScanResultListener(ScanResultListener listener) {
+        this.mScanResultListener = listener;
+    }
+
     @Override
     public void stopDecode() {
-        if (mArrayBlockingQueue != null) {
-            mArrayBlockingQueue.clear();
-        }
-        if (mHandler != null) {
-            mHandler.removeMessages(HANDLER_DECODE_DELAY);
+        mDispatcher.clearPendingTask();
+        Handler handler = mDispatcher.getHandler();
+        if (handler != null) {
+            handler.removeMessages(HANDLER_DECODE_DELAY);
         }
         this.isDecodeEnabled = false;
     }
@@ -191,68 +246,223 @@ public class ZBarDecoder implements GraphicDecoder, Handler.Callback {
 
     @Override
     public void startDecodeDelay(int delay) {
-        if (mHandler != null) {
-            mHandler.sendMessageDelayed(mHandler.obtainMessage(HANDLER_DECODE_DELAY), delay);
+        Handler handler = mDispatcher.getHandler();
+        if (handler != null) {
+            handler.sendMessageDelayed(handler.obtainMessage(HANDLER_DECODE_DELAY), delay);
         }
     }
 
     @Override
     public synchronized void decodeForResult(Context context, Uri uri, int requestCode) {
-        if (isDecodeEnabled && mExecutorService != null && mArrayBlockingQueue != null) {
-            mArrayBlockingQueue.clear();
-            mExecutorService.execute(new DecodeRunnable(context.getApplicationContext(), uri, requestCode));
+        if (isDecodeEnabled && mDispatcher.isAttached()) {
+            mDispatcher.clearPendingTask();
+            mDispatcher.submitTask(new DecodeRunnable(context.getApplicationContext(), uri, requestCode));
         }
     }
 
     @Override
     public synchronized void decodeForResult(Bitmap bitmap, RectF clipRectRatio, int requestCode) {
-        if (isDecodeEnabled && mExecutorService != null && mArrayBlockingQueue != null) {
-            mArrayBlockingQueue.clear();
-            mExecutorService.execute(new DecodeRunnable(bitmap, clipRectRatio, requestCode));
+        if (isDecodeEnabled && mDispatcher.isAttached()) {
+            mDispatcher.clearPendingTask();
+            mDispatcher.submitTask(new DecodeRunnable(bitmap, clipRectRatio, requestCode));
         }
     }
 
     @Override
     public synchronized void decodeForResult(int[] pixels, int width, int height, RectF clipRectRatio, int requestCode) {
-        if (isDecodeEnabled && mExecutorService != null && mArrayBlockingQueue != null) {
-            mArrayBlockingQueue.clear();
-            mExecutorService.execute(new DecodeRunnable(pixels, width, height, clipRectRatio, requestCode));
+        if (isDecodeEnabled && mDispatcher.isAttached()) {
+            mDispatcher.clearPendingTask();
+            mDispatcher.submitTask(new DecodeRunnable(pixels, width, height, clipRectRatio, requestCode));
+        }
+    }
+
+    /**
+     * 传入本地图片的Uri进行解码，返回可取消的解码任务
+     * 与decodeForResult(Context, Uri, int)不同：不清空任务队列，不受stopDecode()影响，结果不回调DecodeListener
+     *
+     * @return 解码任务，通过get()获取结果，未识别到条码时结果的getSymbolCount()为0
+     */
+    public DecodeFuture decodeForResult(Context context, Uri uri) {
+        return submitFuture(new DecodeRunnable(context.getApplicationContext(), uri, 0), null, null);
+    }
+
+    /**
+     * 传入本地图片的Uri进行解码，完成后在executor中回调
+     *
+     * @param executor 回调所在的线程，为null时在主线程回调
+     * @param callback 解码回调，主动取消后不再回调
+     */
+    public DecodeFuture decodeForResult(Context context, Uri uri, Executor executor, DecodeFuture.Callback callback) {
+        return submitFuture(new DecodeRunnable(context.getApplicationContext(), uri, 0), executor, callback);
+    }
+
+    /**
+     * 传入Bitmap对象进行解码，返回可取消的解码任务，解码结束或任务被移除前不可回收该bitmap
+     *
+     * @see #decodeForResult(Context, Uri)
+     */
+    public DecodeFuture decodeForResult(Bitmap bitmap, RectF clipRectRatio) {
+        return submitFuture(new DecodeRunnable(bitmap, clipRectRatio, 0), null, null);
+    }
+
+    /**
+     * @see #decodeForResult(Context, Uri, Executor, DecodeFuture.Callback)
+     */
+    public DecodeFuture decodeForResult(Bitmap bitmap, RectF clipRectRatio, Executor executor, DecodeFuture.Callback callback) {
+        return submitFuture(new DecodeRunnable(bitmap, clipRectRatio, 0), executor, callback);
+    }
+
+    /**
+     * 传入图像的像素数组及图像宽高进行解码，返回可取消的解码任务
+     *
+     * @see #decodeForResult(Context, Uri)
+     */
+    public DecodeFuture decodeForResult(int[] pixels, int width, int height, RectF clipRectRatio) {
+        return submitFuture(new DecodeRunnable(pixels, width, height, clipRectRatio, 0), null, null);
+    }
+
+    /**
+     * @see #decodeForResult(Context, Uri, Executor, DecodeFuture.Callback)
+     */
+    public DecodeFuture decodeForResult(int[] pixels, int width, int height, RectF clipRectRatio, Executor executor, DecodeFuture.Callback callback) {
+        return submitFuture(new DecodeRunnable(pixels, width, height, clipRectRatio, 0), executor, callback);
+    }
+
+    /**
+     * 直接提交DecodeFuture任务，结果不经过主线程回调，因此不分配帧序号，耗时的图片解码不会阻塞其后预览帧结果的回调
+     */
+    private DecodeFuture submitFuture(DecodeRunnable decodeRunnable, Executor executor, DecodeFuture.Callback callback) {
+        DecodeFuture decodeFuture = new DecodeFuture(this, decodeRunnable, executor == null ? mDispatcher.getMainExecutor() : executor, callback);
+        decodeRunnable.mFuture = decodeFuture;
+        mDispatcher.submitFuture(decodeRunnable);
+        return decodeFuture;
+    }
+
+    /**
+     * 将被取消的DecodeFuture任务移出等待队列，任务已开始解码时由其在安全点自行放弃
+     */
+    void removeTask(Runnable task) {
+        mDispatcher.removeTask(task);
+    }
+
+    /**
+     * 批量解码图片Uri，不占用预览帧的任务队列，也不受stopDecode()影响
+     * 由单独的线程依次从迭代器中取出图片，交给parallelism个解码线程并行解码，进行中的图片数不超过parallelism，
+     * 解码线程空闲后才取下一张图片，因此内存占用与批量的大小无关
+     *
+     * @param context     上下文
+     * @param uriIterator 图片Uri的迭代器，在批量解码线程中调用，可边遍历边产生
+     * @param parallelism 并行解码的线程数，取值范围1~CPU核心数
+     * @param listener    批量解码监听，在解码线程中回调
+     * @return 批量解码任务，可用于取消；已detach时返回null
+     */
+    public BatchTask decodeBatch(Context context, Iterator<Uri> uriIterator, int parallelism, BatchListener listener) {
+        BatchDecodeTask batchTask = new BatchDecodeTask(context.getApplicationContext(), uriIterator,
+                Math.max(1, Math.min(parallelism, Runtime.getRuntime().availableProcessors())), listener);
+        synchronized (mBatchTaskList) {
+            if (isDetached) {
+                return null;
+            }
+            mBatchTaskList.add(batchTask);
+        }
+        batchTask.start();
+        return batchTask;
+    }
+
+    /**
+     * 批量解码图片文件
+     *
+     * @see #decodeBatch(Context, Iterator, int, BatchListener)
+     */
+    public BatchTask decodeFileBatch(Context context, final Iterator<File> fileIterator, int parallelism, BatchListener listener) {
+        return decodeBatch(context, new Iterator<Uri>() {
+            @Override
+            public boolean hasNext() {
+                return fileIterator.hasNext();
+            }
+
+            @Override
+            public Uri next() {
+                return Uri.fromFile(fileIterator.next());
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }, parallelism, listener);
+    }
+
+    @Override
+    public boolean shouldDecode() {
+        return isDecodeEnabled && mDispatcher.isAttached() && mDecodeGovernor.shouldDecode();
+    }
+
+    /**
+     * 获取解码频率调节器，可用于设置温度状态或关闭频率调节
+     */
+    public DecodeGovernor getDecodeGovernor() {
+        return mDecodeGovernor;
+    }
+
+    @Override
+    public void decode(byte[] frameData, int width, int height, RectF clipRectRatio) {
+        decode(frameData, width, height, clipRectRatio, null);
+    }
+
+    @Override
+    public void decode(byte[] frameData, int width, int height, RectF clipRectRatio, FrameBufferPool bufferPool) {
+        if (isDecodeEnabled && mDispatcher.isAttached()) {
+            mDispatcher.postFrame(new DecodeRunnable(frameData, width, height, clipRectRatio, bufferPool));
+        } else {
+            mDispatcher.countDroppedFrame();
+            if (bufferPool != null) {//未被解码的帧直接归还
+                bufferPool.recycle(frameData);
+            }
         }
     }
 
     @Override
-    public synchronized void decode(byte[] frameData, int width, int height, RectF clipRectRatio) {
-        if (isDecodeEnabled && mExecutorService != null && mArrayBlockingQueue != null && mArrayBlockingQueue.size() < 1) {//等待队列只能有一条任务
-            mExecutorService.execute(new DecodeRunnable(frameData, width, height, clipRectRatio));
+    public void decode(ByteBuffer frameData, int width, int height, RectF clipRectRatio, BufferReleaseListener releaseListener) {
+        if (isDecodeEnabled && mDispatcher.isAttached()) {
+            mDispatcher.postFrame(new DecodeRunnable(frameData, width, height, clipRectRatio, releaseListener));
+        } else {
+            mDispatcher.countDroppedFrame();
+            if (releaseListener != null) {//未被解码的帧直接释放
+                releaseListener.onBufferReleased(frameData);
+            }
         }
     }
 
+    /**
+     * 丢弃的帧数，即解码关闭、解码器已detach或调用stopDecode()时被清空的帧
+     */
+    public long getDroppedFrameCount() {
+        return mDispatcher.getDroppedFrameCount();
+    }
+
+    /**
+     * 被覆盖的帧数，即在等待解码时被更新的帧替换的帧
+     */
+    public long getSupersededFrameCount() {
+        return mDispatcher.getSupersededFrameCount();
+    }
+
     @Override
     public void detach() {
         Log.d(TAG, getClass().getName() + ".detach()");
-        synchronized (ZBarDecoder.this) {
-            if (mExecutorService != null) {
-                mExecutorService.shutdownNow();
-                mExecutorService = null;
-            }
-            if (mArrayBlockingQueue != null) {
-                mArrayBlockingQueue.clear();
-                mArrayBlockingQueue = null;
+        mDispatcher.detach();
+        mStillImageDecoder.destroy();
+        synchronized (mBatchTaskList) {
+            isDetached = true;
+            for (BatchDecodeTask batchTask : mBatchTaskList) {
+                batchTask.cancel();
             }
+            mBatchTaskList.clear();
         }
-        synchronized (decodeLock) {
-            if (mHandler != null) {
-                mHandler.removeCallbacksAndMessages(null);
-                mHandler = null;
-            }
-            if (mZBarImage != null) {
-                mZBarImage.destroy();
-                mZBarImage = null;
-            }
-            if (mImageScanner != null) {
-                mImageScanner.destroy();
-                mImageScanner = null;
-            }
+        SymbologyProfile symbologyProfile = mSymbologyProfile;
+        if (symbologyProfile != null) {
+            symbologyProfile.save();
         }
     }
 
@@ -263,13 +473,15 @@ public class ZBarDecoder implements GraphicDecoder, Handler.Callback {
                 startDecode();
                 break;
             }
-            case HANDLER_DECODE_COMPLETE: {//解码成功
-                if (mDecodeListener != null && isDecodeEnabled) {
-                    Bundle bundle = msg.peekData();
-                    if (bundle != null) {
-                        mDecodeListener.decodeComplete(bundle.getString("result"), bundle.getInt("type"),
-                                bundle.getInt("quality"), bundle.getInt("requestCode"));
+            case HANDLER_DECODE_COMPLETE: {//解码完成
+                if (msg.obj instanceof ScanResult) {
+                    ScanResult scanResult = (ScanResult) msg.obj;
+                    msg.obj = null;
+                    ScannerMetrics.getInstance().recordStage(ScannerMetrics.STAGE_DELIVERY, System.nanoTime() - scanResult.mCompleteTime);
+                    if (isDecodeEnabled) {
+                        dispatchScanResult(scanResult);
                     }
+                    scanResult.recycle();
                 }
                 break;
             }
@@ -277,16 +489,397 @@ public class ZBarDecoder implements GraphicDecoder, Handler.Callback {
         return true;
     }
 
-    private class DecodeRunnable implements Runnable {
+    /**
+     * 设置是否对大尺寸图片（像素数超过1920*1080）使用金字塔及分块识别，仅对decodeForResult()有效，默认为true
+     * 开启后先识别逐级缩小的图像，再在原分辨率下多线程并行识别相互重叠的分块，任一处识别成功即结束
+     */
+    public void setTiledDecodeEnabled(boolean enabled) {
+        mStillImageDecoder.setTiledDecodeEnabled(enabled);
+    }
+
+    /**
+     * 设置识别区域时是否只传入区域内的数据，默认为true
+     * 开启后将识别区域的亮度数据逐行拷贝到解码工作单元复用的紧凑缓冲区中再交给zbar，JNI只需固定（或拷贝）区域大小的数组，
+     * 帧缓冲区在识别之前即可归还；关闭后传入整帧数据并由zbar剪裁。识别结果的坐标均为整帧图像中的坐标
+     */
+    public void setRegionPackingEnabled(boolean enabled) {
+        this.isRegionPackingEnabled = enabled;
+    }
+
+    /**
+     * 设置多帧共识过滤器，仅对预览帧有效，默认为null即不过滤
+     * 设置后DecodeListener只回调已确认的条码，未确认时回调的结果为null；ScanResultListener不受影响
+     * 注意：须在主线程中调用
+     */
+    public void setConsensusFilter(ConsensusFilter consensusFilter) {
+        this.mConsensusFilter = consensusFilter;
+    }
+
+    public ConsensusFilter getConsensusFilter() {
+        return mConsensusFilter;
+    }
+
+    @Override
+    public void setFrameStatisticsListener(FrameStatisticsListener listener) {
+        this.mFrameStatisticsListener = listener;
+    }
+
+    /**
+     * 设置清晰度门限，仅对预览帧有效，默认为null即不检查
+     * 设置后识别区域模糊的预览帧不交给zbar解析，直接丢弃
+     */
+    public void setSharpnessGate(SharpnessGate sharpnessGate) {
+        this.mSharpnessGate = sharpnessGate;
+    }
+
+    public SharpnessGate getSharpnessGate() {
+        return mSharpnessGate;
+    }
+
+    /**
+     * 设置画面变化检测，仅对预览帧有效，默认为null即不检测
+     * 设置后识别区域与上一次未识别到条码的帧相比没有变化的预览帧直接丢弃，适用于长时间对着静止画面的扫码设备
+     */
+    public void setSceneChangeDetector(SceneChangeDetector sceneChangeDetector) {
+        this.mSceneChangeDetector = sceneChangeDetector;
+    }
+
+    public SceneChangeDetector getSceneChangeDetector() {
+        return mSceneChangeDetector;
+    }
+
+    /**
+     * 设置自适应条码类型配置，仅对预览帧有效，默认为null即始终使用全部类型
+     * 设置后根据各类型的命中次数收窄启用的类型并定期使用全部类型探测，加速比通过SymbologyProfile.getSpeedup()获取
+     */
+    public void setSymbologyProfile(SymbologyProfile symbologyProfile) {
+        this.mSymbologyProfile = symbologyProfile;
+    }
+
+    public SymbologyProfile getSymbologyProfile() {
+        return mSymbologyProfile;
+    }
+
+    /**
+     * 设置预览帧的自适应扫描密度，默认为null即固定密度3
+     * 设置后未发现条码时使用粗密度扫描，发现条码后只扫描其周围的区域并加密对应轴向的扫描线，以降低单帧解码耗时
+     */
+    public void setDensityController(DensityController densityController) {
+        this.mDensityController = densityController;
+    }
+
+    public DensityController getDensityController() {
+        return mDensityController;
+    }
+
+    /**
+     * 获取指定的全部条码类型，未指定时为默认类型
+     */
+    private int[] getCodeTypes() {
+        int[] symbolTypeArray = mSymbolTypeArray;
+        return symbolTypeArray == null ? ZBarScanner.DEFAULT_SYMBOL_TYPES : symbolTypeArray;
+    }
+
+    /**
+     * 设置连续扫码模式，仅对预览帧有效，默认为false
+     * 开启后每个不重复的条码（类型及数据均相同视为重复）在冷却时间内只回调一次，重复的条码在解码线程中剔除，不会发送到主线程
+     * DecodeListener对每个新条码各回调一次，ScanResultListener收到的ScanResult只包含新条码，没有新条码的帧不回调
+     * 冷却时间等参数通过getDuplicateFilter()设置
+     */
+    public void setContinuousScanEnabled(boolean enabled) {
+        this.isContinuousScanEnabled = enabled;
+        if (!enabled) {
+            mDuplicateFilter.clear();
+        }
+    }
+
+    public boolean isContinuousScanEnabled() {
+        return isContinuousScanEnabled;
+    }
+
+    /**
+     * 获取连续扫码的去重集合，可用于设置冷却时间、容量，或获取每秒回调的不重复条码个数
+     */
+    public DuplicateFilter getDuplicateFilter() {
+        return mDuplicateFilter;
+    }
+
+    /**
+     * 连续扫码时上一秒回调的不重复条码个数
+     */
+    public int getUniqueCodeRate() {
+        return mDuplicateFilter.getUniqueCodeRate();
+    }
+
+    /**
+     * 回调解码结果，DecodeListener只回调第一个数据非空的条码，设置了共识过滤器时只回调预览帧中已确认的条码
+     */
+    private void dispatchScanResult(ScanResult scanResult) {
+        if (isContinuousScanEnabled && scanResult.isPreviewFrame()) {
+            dispatchContinuousResult(scanResult);
+            return;
+        }
+        if (mDecodeListener != null) {
+            ConsensusFilter consensusFilter = mConsensusFilter;
+            int index = consensusFilter != null && scanResult.isPreviewFrame() ? consensusFilter.filter(scanResult) : scanResult.getFirstValidIndex();
+            if (index < 0) {
+                mDecodeListener.decodeComplete(null, 0, 0, scanResult.getRequestCode());
+            } else {
+                mDecodeListener.decodeComplete(scanResult.getData(index), scanResult.getType(index),
+                        scanResult.getQuality(index), scanResult.getRequestCode());
+            }
+        }
+        if (mScanResultListener != null) {
+            mScanResultListener.onScanResult(scanResult);
+        }
+    }
+
+    /**
+     * 连续扫码时回调解码结果，只回调已确认且冷却时间内未回调过的条码
+     */
+    private void dispatchContinuousResult(ScanResult scanResult) {
+        ConsensusFilter consensusFilter = mConsensusFilter;
+        for (int index = 0; index < scanResult.getSymbolCount(); ) {
+            if ((consensusFilter == null || consensusFilter.accept(scanResult, index)) && mDuplicateFilter.offer(scanResult, index)) {
+                index++;
+            } else {
+                scanResult.removeSymbol(index);
+            }
+        }
+        if (scanResult.getSymbolCount() <= 0) {
+            return;
+        }
+        if (mDecodeListener != null) {
+            for (int index = 0; index < scanResult.getSymbolCount(); index++) {
+                mDecodeListener.decodeComplete(scanResult.getData(index), scanResult.getType(index),
+                        scanResult.getQuality(index), scanResult.getRequestCode());
+            }
+        }
+        if (mScanResultListener != null) {
+            mScanResultListener.onScanResult(scanResult);
+        }
+    }
+
+    /**
+     * 批量解码监听，均在批量解码的线程中回调
+     */
+    public interface BatchListener {
+
+        /**
+         * 一张图片解码完成，无论是否识别成功
+         *
+         * @param index      图片在迭代器中的序号，从0开始，多线程解码时回调顺序与序号不一定一致
+         * @param uri        图片Uri
+         * @param scanResult 解码结果，请求码为图片序号，回调结束后会被回收，如需保留请调用copy()
+         * @param decodeTime 解码耗时（含读取图片），单位纳秒
+         */
+        void onImageDecoded(int index, Uri uri, ScanResult scanResult, long decodeTime);
+
+        /**
+         * 批量解码结束，包括被取消的情况
+         *
+         * @param imageCount 已解码的图片数
+         * @param totalTime  总耗时，单位纳秒
+         */
+        void onBatchComplete(int imageCount, long totalTime);
+    }
+
+    /**
+     * 批量解码任务
+     */
+    public interface BatchTask {
+
+        /**
+         * 取消批量解码，不再取出新的图片，正在解码的图片完成后回调onBatchComplete()
+         */
+        void cancel();
+
+        boolean isCancelled();
+
+        boolean isDone();
+
+        /**
+         * 已解码的图片数
+         */
+        int getDecodedCount();
+    }
+
+    private class BatchDecodeTask implements BatchTask, Runnable {
+
+        private final Context mContext;
+        private final Iterator<Uri> mUriIterator;
+        private final int mParallelism;
+        private final BatchListener mListener;
+
+        /**
+         * 进行中的图片数的许可，取图片前获取，解码完成后释放
+         */
+        private final Semaphore mSemaphore;
+
+        /**
+         * 本批次的解码工作单元，每个解码线程一个，批次结束后释放
+         */
+        private final ConcurrentLinkedQueue<ZBarScanner> mBatchScannerQueue = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger mDecodedCount = new AtomicInteger();
+
+        private volatile boolean isCancelled;
+        private volatile boolean isDone;
+
+        BatchDecodeTask(Context context, Iterator<Uri> uriIterator, int parallelism, BatchListener listener) {
+            this.mContext = context;
+            this.mUriIterator = uriIterator;
+            this.mParallelism = parallelism;
+            this.mListener = listener;
+            this.mSemaphore = new Semaphore(parallelism);
+        }
+
+        void start() {
+            Thread thread = new Thread(this, "ZBarDecoder-batch");
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            ThreadPoolExecutor executorService = new ThreadPoolExecutor(mParallelism, mParallelism, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+            try {
+                int index = 0;
+                while (!isCancelled && mUriIterator.hasNext()) {
+                    mSemaphore.acquireUninterruptibly();//进行中的图片达到上限时等待
+                    if (isCancelled) {
+                        mSemaphore.release();
+                        break;
+                    }
+                    final Uri uri = mUriIterator.next();
+                    final int imageIndex = index++;
+                    executorService.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                decodeImage(imageIndex, uri);
+                            } finally {
+                                mSemaphore.release();
+                            }
+                        }
+                    });
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, getClass().getName() + ".run() : " + e);
+            } finally {
+                //等待进行中的图片全部完成
+                mSemaphore.acquireUninterruptibly(mParallelism);
+                executorService.shutdown();
+                ZBarScanner scanner;
+                while ((scanner = mBatchScannerQueue.poll()) != null) {
+                    scanner.destroy();
+                }
+                synchronized (mBatchTaskList) {
+                    mBatchTaskList.remove(this);
+                }
+                isDone = true;
+                if (mListener != null) {
+                    mListener.onBatchComplete(mDecodedCount.get(), System.nanoTime() - startTime);
+                }
+            }
+        }
+
+        private void decodeImage(int index, Uri uri) {
+            if (isCancelled) return;
+            ZBarScanner scanner = mBatchScannerQueue.poll();
+            if (scanner == null) {
+                scanner = new ZBarScanner(mSymbolTypeArray);
+            }
+            ScanResult scanResult = null;
+            try {
+                long startTime = System.nanoTime();
+                try {
+                    scanResult = mStillImageDecoder.decodeUri(scanner, mContext, uri, index, null);
+                } catch (RuntimeException e) {//单张图片出错不影响其余图片
+                    Log.e(TAG, getClass().getName() + ".decodeImage() : " + e);
+                    scanResult = ScanResult.obtain();
+                    scanResult.set(null, null, 0, 0, 0, 0, 0, index);
+                }
+                long decodeTime = System.nanoTime() - startTime;
+                ScannerMetrics.getInstance().recordStage(ScannerMetrics.STAGE_SCAN_IMAGE, decodeTime);
+                mDecodedCount.incrementAndGet();
+                if (mListener != null) {
+                    mListener.onImageDecoded(index, uri, scanResult, decodeTime);
+                }
+            } finally {
+                if (scanResult != null) {
+                    scanResult.recycle();
+                }
+                mBatchScannerQueue.offer(scanner);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return isCancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return isDone;
+        }
+
+        @Override
+        public int getDecodedCount() {
+            return mDecodedCount.get();
+        }
+    }
+
+    private class DecodeRunnable extends DecodeDispatcher.Task implements ZBarScanner.FrameReleaseListener {
+
+        private boolean isDelivered;
 
         private Uri mUri;
         private Context mContext;
         private int mRequestCode;
 
+        /**
+         * 是否为相机预览帧，只有预览帧参与解码频率调节
+         */
+        private boolean isPreviewFrame;
+
+        /**
+         * 本帧启用的条码类型及解码耗时，用于自适应条码类型配置
+         */
+        private int[] mCodeTypes;
+        private long mDecodeTime;
+
+        /**
+         * 本帧所用的自适应扫描密度，及是否只扫描了跟踪区域
+         */
+        private DensityController mDensityController;
+        private boolean isRegionScan;
+
+        /**
+         * 本帧识别区域的亮度统计，及所用的清晰度门限和画面变化检测
+         */
+        private FrameStatistics mStatistics;
+        private FrameStatisticsListener mStatisticsListener;
+        private SharpnessGate mSharpnessGate;
+        private SceneChangeDetector mSceneChangeDetector;
+
         private Bitmap mBitmap;
         private int[] mPixels;
         private byte[] mYUVFrameData;
 
+        /**
+         * mYUVFrameData是否取自复用的Y800缓冲区
+         */
+        private boolean isLumaBuffer;
+        private FrameBufferPool mBufferPool;
+        private ByteBuffer mDirectFrameData;
+        private BufferReleaseListener mReleaseListener;
+
         private int mWidth;
         private int mHeight;
         private RectF mClipRectRatio;
@@ -313,8 +906,19 @@ public class ZBarDecoder implements GraphicDecoder, Handler.Callback {
             this.mClipRectRatio = clipRectRatio;
         }
 
-        DecodeRunnable(byte[] frameData, int width, int height, RectF clipRectRatio) {
+        DecodeRunnable(byte[] frameData, int width, int height, RectF clipRectRatio, FrameBufferPool bufferPool) {
+            this.isPreviewFrame = true;
             this.mYUVFrameData = frameData;
+            this.mBufferPool = bufferPool;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mClipRectRatio = clipRectRatio;
+        }
+
+        DecodeRunnable(ByteBuffer frameData, int width, int height, RectF clipRectRatio, BufferReleaseListener releaseListener) {
+            this.isPreviewFrame = true;
+            this.mDirectFrameData = frameData;
+            this.mReleaseListener = releaseListener;
             this.mWidth = width;
             this.mHeight = height;
             this.mClipRectRatio = clipRectRatio;
@@ -322,144 +926,307 @@ public class ZBarDecoder implements GraphicDecoder, Handler.Callback {
 
         @Override
         public void run() {
-            synchronized (decodeLock) {
-                //1.获取YUV图像
-                if (mYUVFrameData == null) {
-                    if (mPixels == null) {
-                        if (mBitmap == null) {
-                            mBitmap = getBitmap(mContext, mUri);
+            ScannerMetrics.getInstance().recordStage(ScannerMetrics.STAGE_QUEUE_WAIT, System.nanoTime() - mQueuedTime);
+            ZBarScanner scanner = mDispatcher.obtainScanner();
+            if (scanner == null) {//已detach
+                recycleFrameBuffer();
+                if (mFuture != null) {
+                    mFuture.abandon();
+                } else {
+                    mDispatcher.deliverResult(mSequence, null);
+                }
+                return;
+            }
+            try {
+                checkCancelled();
+                if (isPreviewFrame && !checkPreviewFrame()) {//静止或模糊的帧不解析，在finally中释放帧序号
+                    return;
+                }
+                mCodeTypes = getCodeTypes();
+                SymbologyProfile symbologyProfile = mSymbologyProfile;
+                if (isPreviewFrame && symbologyProfile != null) {
+                    mCodeTypes = symbologyProfile.obtainCodeTypes(mCodeTypes);
+                }
+                scanner.applyCodeTypes(mCodeTypes);
+                if (!isPreviewFrame) {//解码工作单元与预览帧共用，图片解码时恢复固定密度
+                    scanner.setDensity(ZBarScanner.DEFAULT_DENSITY, ZBarScanner.DEFAULT_DENSITY);
+                }
+                int symbolCount;
+                if (mDirectFrameData != null) {
+                    //1&2.直接解析缓冲区中的图像
+                    long startTime = System.nanoTime();
+                    symbolCount = decodeImage(scanner, mDirectFrameData, mWidth, mHeight, mClipRectRatio);
+                    recordDecodeTime(System.nanoTime() - startTime, symbolCount);
+                } else if (mUri != null && mBitmap == null && mPixels == null) {
+                    //1&2.图片Uri：先以较低分辨率解码识别，失败时逐步提高分辨率
+                    long startTime = System.nanoTime();
+                    ScanResult scanResult = mStillImageDecoder.decodeUri(scanner, mContext, mUri, mRequestCode, mFuture);
+                    recordDecodeTime(System.nanoTime() - startTime, scanResult.getSymbolCount());
+                    decodeComplete(scanResult);
+                    return;
+                } else {
+                    //1.获取YUV图像
+                    if (mYUVFrameData == null) {
+                        if (mPixels == null) {
+                            if (mBitmap != null) {
+                                mWidth = mBitmap.getWidth();
+                                mHeight = mBitmap.getHeight();
+                            }
+                            mPixels = StillImageDecoder.getBitmapPixels(mBitmap);
                         }
-                        if (mBitmap != null) {
-                            mWidth = mBitmap.getWidth();
-                            mHeight = mBitmap.getHeight();
+                        mYUVFrameData = getYUVFrameData(mPixels, mWidth, mHeight, mClipRectRatio);
+                        checkCancelled();
+                    }
+                    //2.解析图像，大尺寸图片使用金字塔及分块识别
+                    TiledImageScanner tiledImageScanner;
+                    if (!isPreviewFrame && mYUVFrameData != null && (tiledImageScanner = mStillImageDecoder.getTiledImageScanner(mWidth, mHeight)) != null) {
+                        long startTime = System.nanoTime();
+                        ScanResult scanResult = tiledImageScanner.scan(scanner, mYUVFrameData, mWidth, mHeight, getCropRect(mWidth, mHeight, mClipRectRatio), mRequestCode, mFuture);
+                        checkCancelled();
+                        recordDecodeTime(System.nanoTime() - startTime, scanResult == null ? 0 : scanResult.getSymbolCount());
+                        if (scanResult == null) {
+                            scanResult = ScanResult.obtain();
+                            scanResult.set(null, null, 0, mWidth, mHeight, 0, 0, mRequestCode);
                         }
-                        mPixels = getBitmapPixels(mBitmap);
+                        decodeComplete(scanResult);
+                        return;
                     }
-                    mYUVFrameData = getYUVFrameData(mPixels, mWidth, mHeight);
+                    long startTime = System.nanoTime();
+                    symbolCount = decodeImage(scanner, mYUVFrameData, mWidth, mHeight, mClipRectRatio);
+                    recordDecodeTime(System.nanoTime() - startTime, symbolCount);
                 }
-                //2.解析图像
-                SymbolSet symbolSet = decodeImage(mYUVFrameData, mWidth, mHeight, mClipRectRatio);
                 //3.分析结果
-                analysisResult(symbolSet, mRequestCode);
+                long startTime = System.nanoTime();
+                analysisResult(scanner, symbolCount, mWidth, mHeight, mRequestCode);
+                ScannerMetrics.getInstance().recordStage(ScannerMetrics.STAGE_ANALYSIS, System.nanoTime() - startTime);
+            } catch (CancellationException e) {
+                //DecodeFuture已取消，在安全点放弃解码
+            } catch (RuntimeException e) {
+                if (mFuture == null) {
+                    throw e;
+                }
+                mFuture.fail(e);
+            } finally {
+                mDispatcher.recycleScanner(scanner);
+                recycleFrameBuffer();
+                if (!isDelivered && mFuture != null) {//DecodeFuture任务没有帧序号，只需结束该任务
+                    mFuture.abandon();
+                } else if (!isDelivered) {//解码异常时也要释放帧序号，防止后续结果无法回调
+                    mDispatcher.deliverResult(mSequence, null);
+                }
             }
         }
 
-        private Bitmap getBitmap(Context context, Uri uri) {
-            if (uri == null) return null;
-            InputStream inputStream = null;
-            try {
-                inputStream = context.getContentResolver().openInputStream(uri);
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
+        /**
+         * 解码的安全点，DecodeFuture已取消时抛出CancellationException
+         */
+        private void checkCancelled() {
+            if (mFuture != null && mFuture.isCancelled()) {
+                throw new CancellationException();
             }
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream, null, options);
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+        }
+
+        /**
+         * 预览帧解析前统计识别区域的亮度，回调亮度统计监听，再依次检测画面变化及清晰度，返回是否需要解析该帧
+         */
+        private boolean checkPreviewFrame() {
+            mStatisticsListener = mFrameStatisticsListener;
+            mSceneChangeDetector = ZBarDecoder.this.mSceneChangeDetector;
+            mSharpnessGate = ZBarDecoder.this.mSharpnessGate;
+            if (mStatisticsListener == null && mSceneChangeDetector == null && mSharpnessGate == null) {
+                return true;
+            }
+            int[] cropRect = getCropRect(mWidth, mHeight, mClipRectRatio);
+            int left = Math.max(0, cropRect[0]);
+            int top = Math.max(0, cropRect[1]);
+            int right = cropRect[2] > 0 ? Math.min(mWidth, cropRect[0] + cropRect[2]) : mWidth;
+            int bottom = cropRect[3] > 0 ? Math.min(mHeight, cropRect[1] + cropRect[3]) : mHeight;
+            if (right - left < 2 || bottom - top < 2) {
+                mStatisticsListener = null;
+                mSceneChangeDetector = null;
+                mSharpnessGate = null;
+                return true;
+            }
+            long startTime = System.nanoTime();
+            if (mDirectFrameData != null) {
+                mStatistics = FrameStatistics.compute(mDirectFrameData, mWidth, left, top, right - left, bottom - top);
+            } else {
+                mStatistics = FrameStatistics.compute(mYUVFrameData, mWidth, left, top, right - left, bottom - top);
+            }
+            ScannerMetrics.getInstance().recordStage(ScannerMetrics.STAGE_FRAME_ANALYSIS, System.nanoTime() - startTime);
+            if (mStatisticsListener != null) {
+                mStatisticsListener.onFrameStatistics(mStatistics);
+            }
+            if ((mSceneChangeDetector != null && !mSceneChangeDetector.accept(mStatistics.getSignature()))
+                    || (mSharpnessGate != null && !mSharpnessGate.accept(mStatistics.getSharpness()))) {
+                if (mStatisticsListener != null) {//跳过的帧视为解码失败，否则画面过暗导致的模糊会让曝光调节失去输入
+                    mStatisticsListener.onFrameDecoded(mStatistics, false);
                 }
+                return false;
             }
-            return bitmap;
+            return true;
         }
 
-        private int[] getBitmapPixels(Bitmap bitmap) {
-            if (bitmap == null) return null;
-            int width = bitmap.getWidth();
-            int height = bitmap.getHeight();
-            int[] pixels = new int[width * height];
-            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
-            bitmap.recycle();
-            return pixels;
+        /**
+         * 记录解码耗时，识别到条码时通知调节器全速解码
+         */
+        private void recordDecodeTime(long decodeTime, int symbolCount) {
+            mDecodeTime = decodeTime;
+            ScannerMetrics.getInstance().recordStage(ScannerMetrics.STAGE_SCAN_IMAGE, decodeTime);
+            if (isPreviewFrame) {
+                mDecodeGovernor.recordDecodeTime(decodeTime);
+                if (symbolCount > 0) {
+                    mDecodeGovernor.notifyCandidate();
+                }
+            }
         }
 
-        private byte[] getYUVFrameData(int[] pixels, int width, int height) {
-            if (pixels == null) return null;
-
-            int index = 0;
-            int yIndex = 0;
-            int R, G, B, Y, U, V;
-            byte[] frameData = new byte[width * height];
-
-            for (int j = 0; j < height; j++) {
-                for (int i = 0; i < width; i++) {
-                    R = (pixels[index] & 0xff0000) >> 16;
-                    G = (pixels[index] & 0xff00) >> 8;
-                    B = (pixels[index] & 0xff);
-
-                    Y = ((66 * R + 129 * G + 25 * B + 128) >> 8) + 16;
-//                U = ( ( -38 * R -  74 * G + 112 * B + 128) >> 8) + 128;
-//                V = ( ( 112 * R -  94 * G -  18 * B + 128) >> 8) + 128;
-
-                    frameData[yIndex++] = (byte) (Math.max(0, Math.min(Y, 255)));
-//                if (j % 2 == 0 && index % 2 == 0) {
-//                    yuv420sp[uvIndex++] = (byte)(Math.max(0, Math.min(U, 255)));
-//                    yuv420sp[uvIndex++] = (byte)(Math.max(0, Math.min(V, 255)));
-//                }
-                    index++;
-                }
+        /**
+         * 将帧数据归还缓冲池，或通知调用方释放直接缓冲区
+         */
+        @Override
+        void recycleFrameBuffer() {
+            if (mBufferPool != null) {
+                mBufferPool.recycle(mYUVFrameData);
+                mBufferPool = null;
+                mYUVFrameData = null;
+            }
+            if (isLumaBuffer) {
+                mStillImageDecoder.recycleLumaBuffer(mYUVFrameData);
+                isLumaBuffer = false;
+                mYUVFrameData = null;
+            }
+            if (mReleaseListener != null) {
+                mReleaseListener.onBufferReleased(mDirectFrameData);
+                mReleaseListener = null;
             }
+        }
+
+        /**
+         * 将ARGB像素转换为Y800数据，只转换与识别区域相交的行
+         */
+        private byte[] getYUVFrameData(int[] pixels, int width, int height, RectF clipRectRatio) {
+            if (pixels == null) return null;
+            byte[] frameData = mStillImageDecoder.getLumaData(pixels, width, height, getCropRect(width, height, clipRectRatio));
+            isLumaBuffer = true;
             return frameData;
         }
 
         /**
-         * 使用zbar解析图像，返回一个Symbol集合
+         * 使用zbar解析图像，返回识别到的Symbol个数
          *
+         * @param scanner       解码工作单元
          * @param frameData     图像的byte数组
          * @param width         图像的宽
          * @param height        图像的高
          * @param clipRectRatio 图像区域的剪裁比例
          */
-        private SymbolSet decodeImage(byte[] frameData, int width, int height, RectF clipRectRatio) {
-            if (mZBarImage == null || mImageScanner == null || frameData == null) return null;
-            mZBarImage.setSize(width, height);
-            if (clipRectRatio != null && !clipRectRatio.isEmpty()) {
-                int frameLeft = (int) (clipRectRatio.left * width);
-                int frameTop = (int) (clipRectRatio.top * height);
-                int frameWidth = (int) (clipRectRatio.width() * width);
-                int frameHeight = (int) (clipRectRatio.height() * height);
-                mZBarImage.setCrop(frameLeft, frameTop, frameWidth, frameHeight);
+        private int decodeImage(ZBarScanner scanner, byte[] frameData, int width, int height, RectF clipRectRatio) {
+            return scanner.scanFrame(frameData, width, height, getScanParams(width, height, clipRectRatio), isRegionPackingEnabled, this);
+        }
+
+        /**
+         * 使用zbar解析直接缓冲区中的图像，返回识别到的Symbol个数
+         * 行跨度大于宽度时width即为行跨度，只传入识别区域时按行跨度逐行拷贝
+         */
+        private int decodeImage(ZBarScanner scanner, ByteBuffer frameData, int width, int height, RectF clipRectRatio) {
+            return scanner.scanFrame(frameData, width, height, getScanParams(width, height, clipRectRatio), isRegionPackingEnabled, this);
+        }
+
+        /**
+         * 识别区域已紧凑拷贝，立即归还帧缓冲区
+         */
+        @Override
+        public void onFrameReleased() {
+            recycleFrameBuffer();
+        }
+
+        /**
+         * 计算扫描参数{xDensity, yDensity, cropLeft, cropTop, cropWidth, cropHeight}
+         * 预览帧在设置了自适应扫描密度时由DensityController决定，否则为固定密度及剪裁比例对应的区域
+         */
+        private int[] getScanParams(int width, int height, RectF clipRectRatio) {
+            int[] cropRect = getCropRect(width, height, clipRectRatio);
+            int[] params = new int[DensityController.PARAMS_LENGTH];
+            mDensityController = isPreviewFrame ? ZBarDecoder.this.mDensityController : null;
+            if (mDensityController != null) {
+                isRegionScan = mDensityController.obtainScanParams(width, height, cropRect, params);
+            } else {
+                params[0] = params[1] = ZBarScanner.DEFAULT_DENSITY;
+                System.arraycopy(cropRect, 0, params, 2, 4);
             }
-            mZBarImage.setData(frameData);
-            if (mImageScanner.scanImage(mZBarImage) != 0) {
-                return mImageScanner.getResults();
+            return params;
+        }
+
+        /**
+         * 根据剪裁比例计算识别区域，返回{left, top, width, height}，未设置剪裁时宽高为0
+         */
+        private int[] getCropRect(int width, int height, RectF clipRectRatio) {
+            if (clipRectRatio == null) {
+                return new int[4];
             }
-            return null;
+            return FrameUtils.getCropRect(width, height, clipRectRatio.left, clipRectRatio.top, clipRectRatio.right, clipRectRatio.bottom, null);
         }
 
         /**
-         * 从Symbol集合中获取结果
+         * 将全部解码结果写入ScanResult，ZBarScanner输出的位置坐标均为整帧图像中的坐标
          */
-        private void analysisResult(SymbolSet symbolSet, int requestCode) {
-            if (symbolSet != null && mHandler != null) {
-                for (Symbol symbol : symbolSet) {
-                    String result = symbol.getData();
-                    if (result != null && result.length() > 0) {
-//                  int count = symbol.getCount();
-//                  int[] bounds = symbol.getBounds();
-//                  byte[] dataBytes = symbol.getDataBytes();
-                        int type = symbol.getType();
-                        int quality = symbol.getQuality();
-                        decodeComplete(result, type, quality, requestCode);
-                        return;
-                    }
+        private void analysisResult(ZBarScanner scanner, int symbolCount, int width, int height, int requestCode) {
+            ScanResult scanResult = ScanResult.obtain();
+            scanResult.set(scanner.getResultArray(), scanner.getResultData(), symbolCount, width, height, 0, 0, requestCode);
+            decodeComplete(scanResult);
+        }
+
+        /**
+         * 连续扫码时剔除数据为空及冷却时间内已回调过的条码，返回是否还有剩余条码
+         */
+        private boolean removeDuplicateSymbol(ScanResult scanResult) {
+            for (int index = 0; index < scanResult.getSymbolCount(); ) {
+                if (scanResult.getDataLength(index) <= 0) {
+                    scanResult.removeSymbol(index);
+                } else if (mDuplicateFilter.contains(scanResult, index)) {
+                    scanResult.removeSymbol(index);
+                    ScannerMetrics.getInstance().increment(ScannerMetrics.COUNTER_DUPLICATE_CODE);
+                } else {
+                    index++;
                 }
             }
-            decodeComplete(null, 0, 0, requestCode);
+            return scanResult.getSymbolCount() > 0;
         }
 
-        private void decodeComplete(String result, int type, int quality, int requestCode) {
-            if (mHandler != null) {
-                Message message = mHandler.obtainMessage(HANDLER_DECODE_COMPLETE);
-                Bundle bundle = message.getData();
-                bundle.putString("result", result);
-                bundle.putInt("type", type);
-                bundle.putInt("quality", quality);
-                bundle.putInt("requestCode", requestCode);
-                message.setData(bundle);
-                mHandler.sendMessage(message);
+        private void decodeComplete(ScanResult scanResult) {
+            if (mFuture != null) {//结果交给DecodeFuture，不经过帧序号排序
+                isDelivered = true;
+                mFuture.complete(scanResult);
+                return;
+            }
+            SymbologyProfile symbologyProfile = mSymbologyProfile;
+            if (isPreviewFrame && symbologyProfile != null) {
+                symbologyProfile.recordResult(mCodeTypes, scanResult, mDecodeTime);
+            }
+            if (mDensityController != null) {
+                mDensityController.recordResult(scanResult, isRegionScan);
+            }
+            if (mSharpnessGate != null) {
+                mSharpnessGate.recordResult(mStatistics.getSharpness(), scanResult.getSymbolCount() > 0, mDecodeTime);
+            }
+            if (mSceneChangeDetector != null) {
+                mSceneChangeDetector.recordResult(mStatistics.getSignature(), scanResult.getSymbolCount() > 0);
+            }
+            if (mStatisticsListener != null) {
+                mStatisticsListener.onFrameDecoded(mStatistics, scanResult.getSymbolCount() > 0);
+            }
+            if (isPreviewFrame && isContinuousScanEnabled && !removeDuplicateSymbol(scanResult)) {//没有新条码，无需发送到主线程
+                scanResult.recycle();
+                isDelivered = true;
+                mDispatcher.deliverResult(mSequence, null);
+                return;
             }
+            scanResult.mCompleteTime = System.nanoTime();
+            scanResult.setPreviewFrame(isPreviewFrame);
+            Message message = Message.obtain(null, HANDLER_DECODE_COMPLETE, scanResult);
+            isDelivered = true;
+            mDispatcher.deliverResult(mSequence, message);
         }
 
     }
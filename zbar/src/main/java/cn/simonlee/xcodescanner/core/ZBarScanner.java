@@ -0,0 +1,337 @@
+package cn.simonlee.xcodescanner.core;
+
+import net.sourceforge.zbar.Config;
+import net.sourceforge.zbar.Image;
+import net.sourceforge.zbar.ImageScanner;
+import net.sourceforge.zbar.Symbol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 解码工作单元，每个实例独占一组native的ImageScanner&Image
+ * 同一实例不可被多个线程同时使用，多线程解码时每个线程应持有各自的实例
+ * 不依赖Android API，剪裁、识别区域紧凑拷贝及结果坐标换算均在此完成，ZBarDecoder与JVM上的命令行工具及金样本回归共用同一扫描路径
+ *
+ * @author Simon Lee
+ * @e-mail jmlixiaomeng@163.com
+ * @github https://github.com/Simon-Leeeeeeeee/XCodeScanner
+ * @createdTime 2026-10-18
+ */
+public class ZBarScanner {
+
+    /**
+     * 结果数组的最大长度，防止异常数据导致无限扩容
+     */
+    private static final int MAX_RESULT_LENGTH = 1 << 20;
+
+    /**
+     * 默认的扫描密度，即扫描线的间隔像素数
+     */
+    public static final int DEFAULT_DENSITY = 3;
+
+    /**
+     * 默认识别的条码类型，与ZBarDecoder中的同名常量取值相同
+     */
+    static final int[] DEFAULT_SYMBOL_TYPES = {Symbol.EAN8, Symbol.ISBN10, Symbol.UPCA, Symbol.EAN13, Symbol.ISBN13, Symbol.I25//, UPCE, DATABAR, PARTIAL
+            , Symbol.DATABAR_EXP, Symbol.CODABAR, Symbol.CODE39, Symbol.PDF417, Symbol.QRCODE, Symbol.CODE93, Symbol.CODE128};
+
+    private Image mZBarImage;
+    private ImageScanner mImageScanner;
+
+    /**
+     * 当前启用的条码类型
+     */
+    private int[] mEnabledTypes;
+
+    /**
+     * 当前的扫描密度
+     */
+    private int mXDensity;
+    private int mYDensity;
+
+    /**
+     * 解码结果，每个Symbol依次写入ImageScanner.RESULT_HEADER_SIZE长度的头部及其位置点坐标
+     */
+    private int[] mResultArray = new int[1024];
+
+    /**
+     * 解码结果的数据字节，通过头部的RESULT_DATA_OFFSET&RESULT_DATA_LENGTH定位
+     */
+    private byte[] mResultData = new byte[8192];
+
+    /**
+     * 识别区域的紧凑拷贝
+     */
+    private byte[] mRegionBuffer;
+
+    /**
+     * 注意：ImageScanner的构造方法中含有System.loadLibrary()，要避免在主线程中创建实例
+     *
+     * @param symbolTypeArray 指定条码类型进行识别，为null时使用默认类型
+     */
+    public ZBarScanner(int[] symbolTypeArray) {
+        mImageScanner = new ImageScanner();
+        setCodeTypes(symbolTypeArray);
+        mZBarImage = new Image("Y800");
+    }
+
+    /**
+     * 指定解码类型
+     */
+    synchronized void setCodeTypes(int[] symbolTypeArray) {
+        if (mImageScanner == null) {
+            return;
+        }
+        mXDensity = mYDensity = 0;
+        setDensity(DEFAULT_DENSITY, DEFAULT_DENSITY);
+        mEnabledTypes = null;
+        applyCodeTypes(symbolTypeArray == null ? DEFAULT_SYMBOL_TYPES : symbolTypeArray);
+    }
+
+    /**
+     * 启用指定的条码类型，与当前启用的为同一数组时不做处理
+     */
+    synchronized void applyCodeTypes(int[] codeTypes) {
+        if (mImageScanner == null || codeTypes == mEnabledTypes) {
+            return;
+        }
+        mImageScanner.setConfig(0, Config.ENABLE, 0);//Disable all the types
+        for (int symbolType : codeTypes) {
+            mImageScanner.setConfig(symbolType, Config.ENABLE, 1);//enable codeType
+        }
+        mEnabledTypes = codeTypes;
+    }
+
+    /**
+     * 设置扫描密度，即扫描线的间隔像素数，与当前密度相同时不做处理
+     *
+     * @param xDensity 竖直扫描线的列间隔
+     * @param yDensity 水平扫描线的行间隔
+     */
+    synchronized void setDensity(int xDensity, int yDensity) {
+        if (mImageScanner == null) {
+            return;
+        }
+        if (xDensity != mXDensity) {
+            mImageScanner.setConfig(0, Config.X_DENSITY, xDensity);
+            mXDensity = xDensity;
+        }
+        if (yDensity != mYDensity) {
+            mImageScanner.setConfig(0, Config.Y_DENSITY, yDensity);
+            mYDensity = yDensity;
+        }
+    }
+
+    /**
+     * 默认识别的条码类型的拷贝，不含UPCE及DATABAR
+     */
+    public static int[] getDefaultSymbolTypes() {
+        return DEFAULT_SYMBOL_TYPES.clone();
+    }
+
+    /**
+     * 按扫描参数解析一帧图像，返回识别到的Symbol个数，结果坐标均为整帧图像中的坐标
+     * 识别区域小于整帧且packRegion为true时，先将区域内的数据紧凑拷贝再只解析拷贝，否则整帧传入并设置剪裁
+     *
+     * @param frameData       图像的Y800数据
+     * @param width           图像的宽（行跨度）
+     * @param height          图像的高
+     * @param scanParams      扫描参数{xDensity, yDensity, cropLeft, cropTop, cropWidth, cropHeight}，区域宽或高不大于0时解析整帧，
+     *                        紧凑拷贝时区域会被限制在图像范围内
+     * @param packRegion      是否紧凑拷贝识别区域
+     * @param releaseListener 区域拷贝完成、不再读取frameData时回调，可为null
+     */
+    public int scanFrame(byte[] frameData, int width, int height, int[] scanParams, boolean packRegion, FrameReleaseListener releaseListener) {
+        setDensity(scanParams[0], scanParams[1]);
+        if (packRegion && clampRegion(width, height, scanParams) && frameData.length >= width * height) {
+            byte[] regionData = FrameUtils.packRegion(frameData, width, scanParams[2], scanParams[3], scanParams[4], scanParams[5],
+                    obtainRegionBuffer(scanParams[4] * scanParams[5]));
+            return scanRegion(regionData, scanParams, releaseListener);
+        }
+        return scanImage(frameData, width, height, scanParams[2], scanParams[3], scanParams[4], scanParams[5]);
+    }
+
+    /**
+     * 按扫描参数解析直接缓冲区中的一帧图像，从缓冲区起始地址开始读取
+     *
+     * @see #scanFrame(byte[], int, int, int[], boolean, FrameReleaseListener)
+     */
+    public int scanFrame(ByteBuffer frameData, int width, int height, int[] scanParams, boolean packRegion, FrameReleaseListener releaseListener) {
+        setDensity(scanParams[0], scanParams[1]);
+        if (packRegion && clampRegion(width, height, scanParams) && frameData.capacity() >= width * height) {
+            byte[] regionData = FrameUtils.packRegion(frameData, width, scanParams[2], scanParams[3], scanParams[4], scanParams[5],
+                    obtainRegionBuffer(scanParams[4] * scanParams[5]));
+            return scanRegion(regionData, scanParams, releaseListener);
+        }
+        return scanImage(frameData, width, height, scanParams[2], scanParams[3], scanParams[4], scanParams[5]);
+    }
+
+    /**
+     * 识别区域小于整帧时将其限制在图像范围内，返回是否需要紧凑拷贝
+     */
+    private static boolean clampRegion(int width, int height, int[] scanParams) {
+        if (scanParams[4] <= 0 || scanParams[5] <= 0) {
+            return false;
+        }
+        int left = Math.max(0, scanParams[2]);
+        int top = Math.max(0, scanParams[3]);
+        int right = Math.min(width, scanParams[2] + scanParams[4]);
+        int bottom = Math.min(height, scanParams[3] + scanParams[5]);
+        if (right <= left || bottom <= top || (long) (right - left) * (bottom - top) >= (long) width * height) {
+            return false;
+        }
+        scanParams[2] = left;
+        scanParams[3] = top;
+        scanParams[4] = right - left;
+        scanParams[5] = bottom - top;
+        return true;
+    }
+
+    /**
+     * 解析紧凑拷贝后的识别区域，并将结果坐标加上区域偏移
+     */
+    private int scanRegion(byte[] regionData, int[] scanParams, FrameReleaseListener releaseListener) {
+        if (releaseListener != null) {
+            releaseListener.onFrameReleased();
+        }
+        int symbolCount = scanImage(regionData, scanParams[4], scanParams[5], 0, 0, 0, 0);
+        offsetLocation(symbolCount, scanParams[2], scanParams[3]);
+        return symbolCount;
+    }
+
+    /**
+     * 将结果中全部位置点坐标加上偏移
+     */
+    private void offsetLocation(int symbolCount, int offsetX, int offsetY) {
+        int offset = 0;
+        for (int i = 0; i < symbolCount; i++) {
+            int locationEnd = offset + ImageScanner.RESULT_HEADER_SIZE + 2 * mResultArray[offset + ImageScanner.RESULT_LOCATION_SIZE];
+            for (int index = offset + ImageScanner.RESULT_HEADER_SIZE; index < locationEnd; index += 2) {
+                mResultArray[index] += offsetX;
+                mResultArray[index + 1] += offsetY;
+            }
+            offset = locationEnd;
+        }
+    }
+
+    /**
+     * 使用zbar解析图像，返回识别到的Symbol个数，结果通过getResultArray()&getResultData()获取
+     *
+     * @param frameData  图像的Y800数据
+     * @param width      图像的宽
+     * @param height     图像的高
+     * @param cropLeft   识别区域的左边，宽或高不大于0时识别整张图像
+     * @param cropTop    识别区域的顶边
+     * @param cropWidth  识别区域的宽
+     * @param cropHeight 识别区域的高
+     */
+    synchronized int scanImage(byte[] frameData, int width, int height, int cropLeft, int cropTop, int cropWidth, int cropHeight) {
+        if (mZBarImage == null || mImageScanner == null || frameData == null) return 0;
+        setImageSize(width, height, cropLeft, cropTop, cropWidth, cropHeight);
+        mZBarImage.setData(frameData);
+        return scanImage();
+    }
+
+    /**
+     * 使用zbar解析直接缓冲区中的图像，数据不经拷贝直接交由zbar读取
+     *
+     * @param frameData 图像的Y800数据，必须为DirectByteBuffer，从缓冲区起始地址开始读取
+     * @see #scanImage(byte[], int, int, int, int, int, int)
+     */
+    synchronized int scanImage(ByteBuffer frameData, int width, int height, int cropLeft, int cropTop, int cropWidth, int cropHeight) {
+        if (mZBarImage == null || mImageScanner == null || frameData == null) return 0;
+        setImageSize(width, height, cropLeft, cropTop, cropWidth, cropHeight);
+        mZBarImage.setData(frameData);
+        try {
+            return scanImage();
+        } finally {
+            mZBarImage.setData((ByteBuffer) null);//解除对缓冲区的引用，调用方可立即复用或释放该缓冲区
+        }
+    }
+
+    /**
+     * 获取识别区域紧凑拷贝所用的缓冲区，每个解码工作单元复用同一个，长度不足时扩容
+     * 注意：仅在下次调用之前有效，且只能由使用该工作单元的线程调用
+     */
+    byte[] obtainRegionBuffer(int size) {
+        if (mRegionBuffer == null || mRegionBuffer.length < size) {
+            mRegionBuffer = new byte[size];
+            ScannerMetrics.getInstance().recordAllocation(size);
+        }
+        return mRegionBuffer;
+    }
+
+    /**
+     * 解除对图像数据的引用，以便大尺寸图像及时被回收
+     */
+    synchronized void releaseData() {
+        if (mZBarImage != null) {
+            mZBarImage.setData((byte[]) null);
+        }
+    }
+
+    private void setImageSize(int width, int height, int cropLeft, int cropTop, int cropWidth, int cropHeight) {
+        mZBarImage.setSize(width, height);
+        if (cropWidth > 0 && cropHeight > 0) {
+            mZBarImage.setCrop(cropLeft, cropTop, cropWidth, cropHeight);
+        }
+    }
+
+    /**
+     * 解析图像，并通过一次JNI调用取出全部结果
+     */
+    private int scanImage() {
+        if (mImageScanner.scanImage(mZBarImage) == 0) {
+            return 0;
+        }
+        int count;
+        while ((count = mImageScanner.getResultData(mResultArray, mResultData)) < 0) {//数组容量不足，扩容后重新获取
+            if (mResultArray.length >= MAX_RESULT_LENGTH || mResultData.length >= MAX_RESULT_LENGTH) {
+                return 0;
+            }
+            mResultArray = new int[mResultArray.length * 2];
+            mResultData = new byte[mResultData.length * 2];
+            ScannerMetrics.getInstance().recordAllocation(4L * mResultArray.length + mResultData.length);
+        }
+        return count;
+    }
+
+    /**
+     * 获取最近一次解码结果的Symbol信息，格式同ImageScanner.getResultData()，仅在下次解码之前有效
+     */
+    public int[] getResultArray() {
+        return mResultArray;
+    }
+
+    /**
+     * 获取最近一次解码结果的数据字节，仅在下次解码之前有效
+     */
+    public byte[] getResultData() {
+        return mResultData;
+    }
+
+    /**
+     * 释放native资源，释放后不可再使用
+     */
+    public synchronized void destroy() {
+        if (mZBarImage != null) {
+            mZBarImage.destroy();
+            mZBarImage = null;
+        }
+        if (mImageScanner != null) {
+            mImageScanner.destroy();
+            mImageScanner = null;
+        }
+    }
+
+    /**
+     * 帧数据释放回调
+     */
+    public interface FrameReleaseListener {
+        /**
+         * 识别区域已拷贝完成，不再读取帧数据，在解析线程回调
+         */
+        void onFrameReleased();
+    }
+
+}
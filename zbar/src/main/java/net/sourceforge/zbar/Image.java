@@ -179,6 +179,16 @@ public class Image {
      */
     public native void setData(int[] data);
 
+    /**
+     * Specify image sample data from a direct buffer.  The samples are
+     * referenced in place starting at the buffer's base address (the
+     * position is ignored), so the buffer contents must not change
+     * until scanning completes or new data is set.
+     *
+     * @throws IllegalArgumentException if the buffer is not direct
+     */
+    public native void setData(java.nio.ByteBuffer data);
+
     /**
      * Retrieve the decoded results associated with this image.
      */
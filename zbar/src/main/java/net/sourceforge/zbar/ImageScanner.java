@@ -29,6 +29,19 @@ package net.sourceforge.zbar;
  * Read barcodes from 2-D images.
  */
 public class ImageScanner {
+    /**
+     * Offsets of the per-symbol header written by getResultData().
+     * Each header is followed by RESULT_LOCATION_SIZE (x, y) pairs.
+     */
+    public static final int RESULT_TYPE = 0;
+    public static final int RESULT_QUALITY = 1;
+    public static final int RESULT_COUNT = 2;
+    public static final int RESULT_ORIENTATION = 3;
+    public static final int RESULT_DATA_OFFSET = 4;
+    public static final int RESULT_DATA_LENGTH = 5;
+    public static final int RESULT_LOCATION_SIZE = 6;
+    public static final int RESULT_HEADER_SIZE = 7;
+
     /**
      * C pointer to a zbar_image_scanner_t.
      */
@@ -37,7 +50,11 @@ public class ImageScanner {
     private static native void init();
 
     public ImageScanner() {
-        System.loadLibrary("iconv");
+        try {
+            System.loadLibrary("iconv");
+        } catch (UnsatisfiedLinkError e) {
+            // iconv is part of the C library on desktop Linux
+        }
         System.loadLibrary("zbarjni");
         init();
         peer = create();
@@ -98,6 +115,18 @@ public class ImageScanner {
 
     private native long getResults(long peer);
 
+    /**
+     * Copy all decode results for the last scanned image in a single
+     * call, without creating SymbolSet or Symbol instances.  For each
+     * symbol a RESULT_HEADER_SIZE header and its location points are
+     * appended to symbols, and its raw data bytes to data.
+     *
+     * @returns the number of symbols written, or -1 if the arrays are
+     * too small to hold all results; the results stay available, so
+     * the call may be repeated with larger arrays.
+     */
+    public native int getResultData(int[] symbols, byte[] data);
+
     /**
      * Scan for symbols in provided Image.
      * The image format must currently be "Y800" or "GRAY".
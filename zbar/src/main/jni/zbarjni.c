@@ -22,6 +22,7 @@
  *------------------------------------------------------------------------*/
 #include <inttypes.h>
 #include <assert.h>
+#include <string.h>
 #include <zbar.h>
 #include <jni.h>
 
@@ -330,6 +331,23 @@ Image_cleanupIntArray (zbar_image_t *zimg)
     }
 }
 
+static void
+Image_cleanupDirectBuffer (zbar_image_t *zimg)
+{
+    jobject data = zbar_image_get_userdata(zimg);
+    assert(data);
+
+    JNIEnv *env = NULL;
+    if((*jvm)->AttachCurrentThread(jvm, (void*)&env, NULL))
+        return;
+    assert(env);
+    if(env && data) {
+        /* buffer memory is owned by the direct buffer - only drop the ref */
+        (*env)->DeleteGlobalRef(env, data);
+        zbar_image_set_userdata(zimg, NULL);
+    }
+}
+
 
 JNIEXPORT void JNICALL
 Java_net_sourceforge_zbar_Image_init (JNIEnv *env,
@@ -596,6 +614,26 @@ Java_net_sourceforge_zbar_Image_setData___3I (JNIEnv *env,
     Image_setData(env, obj, data, raw, rawlen, Image_cleanupIntArray);
 }
 
+JNIEXPORT void JNICALL
+Java_net_sourceforge_zbar_Image_setData__Ljava_nio_ByteBuffer_2 (JNIEnv *env,
+                                                                jobject obj,
+                                                                jobject data)
+{
+    void *raw = NULL;
+    unsigned long rawlen = 0;
+    if(data) {
+        raw = (*env)->GetDirectBufferAddress(env, data);
+        jlong capacity = (*env)->GetDirectBufferCapacity(env, data);
+        if(!raw || capacity < 0) {
+            throw_exc(env, "java/lang/IllegalArgumentException",
+                      "data must be a direct buffer");
+            return;
+        }
+        rawlen = capacity;
+    }
+    Image_setData(env, obj, data, raw, rawlen, Image_cleanupDirectBuffer);
+}
+
 JNIEXPORT jlong JNICALL
 Java_net_sourceforge_zbar_Image_getSymbols (JNIEnv *env,
                                             jobject obj,
@@ -685,6 +723,79 @@ Java_net_sourceforge_zbar_ImageScanner_getResults (JNIEnv *env,
     return((intptr_t)zsyms);
 }
 
+/* per-symbol header layout, must match ImageScanner.RESULT_* */
+#define RESULT_TYPE             0
+#define RESULT_QUALITY          1
+#define RESULT_COUNT            2
+#define RESULT_ORIENTATION      3
+#define RESULT_DATA_OFFSET      4
+#define RESULT_DATA_LENGTH      5
+#define RESULT_LOCATION_SIZE    6
+#define RESULT_HEADER_SIZE      7
+
+JNIEXPORT jint JNICALL
+Java_net_sourceforge_zbar_ImageScanner_getResultData (JNIEnv *env,
+                                                      jobject obj,
+                                                      jintArray symbols,
+                                                      jbyteArray data)
+{
+    const zbar_symbol_set_t *zsyms =
+        zbar_image_scanner_get_results(GET_PEER(ImageScanner, obj));
+    if(!zsyms || !symbols || !data)
+        return(0);
+
+    jsize symcap = (*env)->GetArrayLength(env, symbols);
+    jsize datacap = (*env)->GetArrayLength(env, data);
+    jint *ints = (*env)->GetPrimitiveArrayCritical(env, symbols, NULL);
+    if(!ints)
+        return(0);
+    jbyte *bytes = (*env)->GetPrimitiveArrayCritical(env, data, NULL);
+    if(!bytes) {
+        (*env)->ReleasePrimitiveArrayCritical(env, symbols, ints, JNI_ABORT);
+        return(0);
+    }
+
+    int nsyms = 0, symlen = 0, datalen = 0;
+    const zbar_symbol_t *zsym;
+    for(zsym = zbar_symbol_set_first_symbol(zsyms);
+        zsym;
+        zsym = zbar_symbol_next(zsym))
+    {
+        unsigned nloc = zbar_symbol_get_loc_size(zsym);
+        unsigned len = zbar_symbol_get_data_length(zsym);
+        if(symlen + RESULT_HEADER_SIZE + 2 * nloc > symcap ||
+           datalen + len > datacap) {
+            /* caller must retry with larger arrays */
+            nsyms = -1;
+            break;
+        }
+        jint *hdr = ints + symlen;
+        hdr[RESULT_TYPE] = zbar_symbol_get_type(zsym);
+        hdr[RESULT_QUALITY] = zbar_symbol_get_quality(zsym);
+        hdr[RESULT_COUNT] = zbar_symbol_get_count(zsym);
+        hdr[RESULT_ORIENTATION] = zbar_symbol_get_orientation(zsym);
+        hdr[RESULT_DATA_OFFSET] = datalen;
+        hdr[RESULT_DATA_LENGTH] = len;
+        hdr[RESULT_LOCATION_SIZE] = nloc;
+        symlen += RESULT_HEADER_SIZE;
+
+        unsigned i;
+        for(i = 0; i < nloc; i++) {
+            ints[symlen++] = zbar_symbol_get_loc_x(zsym, i);
+            ints[symlen++] = zbar_symbol_get_loc_y(zsym, i);
+        }
+        if(len) {
+            memcpy(bytes + datalen, zbar_symbol_get_data(zsym), len);
+            datalen += len;
+        }
+        nsyms++;
+    }
+
+    (*env)->ReleasePrimitiveArrayCritical(env, data, bytes, 0);
+    (*env)->ReleasePrimitiveArrayCritical(env, symbols, ints, 0);
+    return(nsyms);
+}
+
 JNIEXPORT jint JNICALL
 Java_net_sourceforge_zbar_ImageScanner_scanImage (JNIEnv *env,
                                                   jobject obj,